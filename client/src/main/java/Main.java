@@ -71,6 +71,7 @@ public class Main {
                     case "resign" -> resignGame(facade);
                     case "leave" -> leaveGame(facade);
                     case "highlight" -> highlightMoves(facade, args);
+                    case "analyze" -> analyzeGame(facade);
                     default -> help();
                 }
             }
@@ -124,6 +125,14 @@ public class Main {
         facade.makeMove(move, currGameID);
     }
 
+    private static void analyzeGame(ServerFacade facade) throws Exception {
+        if (!observer) {
+            throw new Exception("Only observers can analyze a game");
+        }
+        facade.requestAnalysis(currGameID);
+        System.out.println("Engine analysis will be shown after every move");
+    }
+
     private static void validateMove(ChessPosition startPos, ChessPosition endPos, Collection<ChessMove> moves) throws Exception {
         for (var move : moves) {
             if (startPos.equals(move.getStartPosition()) && endPos.equals(move.getEndPosition())) {
@@ -351,6 +360,7 @@ public class Main {
     }
 
     private static void logout(ServerFacade facade) throws Exception {
+        facade.unsubscribeLobby();
         facade.logout();
         state = LOGGED_OUT;
     }
@@ -366,6 +376,7 @@ public class Main {
             facade.register(username, password, email);
             facade.login(username, password);
             state = LOGGED_IN;
+            subscribeLobby(facade);
         } catch (Exception e) {
             System.out.println(e.getMessage());
         }
@@ -379,6 +390,16 @@ public class Main {
 
         facade.login(username, password);
         state = LOGGED_IN;
+        subscribeLobby(facade);
+    }
+
+    private static void subscribeLobby(ServerFacade facade) {
+        try {
+            facade.subscribeLobby();
+        } catch (Exception e) {
+//            Listing still works without it, it just asks the server every time
+            System.out.println("Live game list unavailable: " + e.getMessage());
+        }
     }
 
     private static void help() {
@@ -406,6 +427,7 @@ public class Main {
                     move <a-h><1-8> <a-h><1-8> -- make a move (e.g. move e2 e4)
                     resign -- forfeit the game
                     highlight <a-h><1-8> -- highlight the possible moves of a piece
+                    analyze -- show engine analysis after every move (observers only)
                     """;
             default -> helpText = "A strange error has occurred";
         }
@@ -0,0 +1,75 @@
+package client;
+
+import chess.GameData;
+import jakarta.websocket.*;
+import websocket.JsonCodec;
+import websocket.commands.UserGameCommand;
+import websocket.messages.LobbyMessage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps a live copy of the game list from the server's lobby websocket, so listing games doesn't
+ * need a request. The list is ready once the first snapshot arrives.
+ */
+public class LobbyClient extends Endpoint {
+
+    private final Session session;
+    //    Guarded by this
+    private final Map<Integer, GameData> games = new TreeMap<>();
+    private long version = -1;
+
+    public LobbyClient(int port, String authToken) throws Exception {
+        URI uri = new URI(String.format("ws://localhost:%d/ws", port));
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        session = container.connectToServer(this, uri);
+
+        session.addMessageHandler(new MessageHandler.Whole<String>() {
+            public void onMessage(String message) {
+                try {
+                    if (JsonCodec.decodeMessage(message) instanceof LobbyMessage lobby) {
+                        apply(lobby);
+                    }
+                } catch (IllegalArgumentException e) {
+//                    Anything unreadable is ignored, and listing falls back to asking the server
+                }
+            }
+        });
+        session.getBasicRemote().sendText(JsonCodec.encode(
+                new UserGameCommand(UserGameCommand.CommandType.SUBSCRIBE_LOBBY, authToken, null)));
+    }
+
+    private synchronized void apply(LobbyMessage lobby) {
+        if (lobby.getEvent() == LobbyMessage.Event.SNAPSHOT) {
+            games.clear();
+        } else if (version < 0) {
+//            Nothing to apply an event to until the snapshot arrives
+            return;
+        }
+        for (var game : lobby.getGames()) {
+            games.put(game.gameID(), new GameData(game.gameID(), game.whiteUsername(), null,
+                    game.blackUsername(), null, game.gameName(), null));
+        }
+        version = Math.max(version, lobby.getVersion());
+    }
+
+    /**
+     * @return every game in ID order, or null if the first snapshot hasn't arrived yet
+     */
+    public synchronized List<GameData> games() {
+        return version < 0 ? null : new ArrayList<>(games.values());
+    }
+
+    public void close() throws IOException {
+        session.close();
+    }
+
+    @Override
+    public void onOpen(Session session, EndpointConfig endpointConfig) {
+    }
+}
@@ -1,8 +1,8 @@
 package client;
 
 import chess.*;
-import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import websocket.JsonCodec;
 import websocket.commands.MakeMoveCommand;
 import websocket.commands.UserGameCommand;
 
@@ -20,14 +20,29 @@ public class ServerFacade {
     private final String serverUrl;
     private String authToken;
     private final int port;
+    private final boolean binaryWebsocket;
     private static WsClient wsClient = null;
     private static String username;
+    //    The last game list and the ETag it came with, reused while the list hasn't changed
+    private List<GameData> lastGames = List.of();
+    private String lastGamesETag;
+    //    Pushes game list changes once subscribed, so listing doesn't have to ask the server
+    private LobbyClient lobby;
 
     public static final int LOGGED_IN = 1;
 
     public ServerFacade(int port) {
+        this(port, false);
+    }
+
+    /**
+     * @param port            the server's port
+     * @param binaryWebsocket whether to use the compact binary websocket protocol instead of JSON
+     */
+    public ServerFacade(int port, boolean binaryWebsocket) {
         serverUrl = String.format("http://localhost:%d", port);
         this.port = port;
+        this.binaryWebsocket = binaryWebsocket;
     }
 
     public int login(String username, String password) throws Exception {
@@ -36,7 +51,7 @@ public class ServerFacade {
 
         throwIfException(response);
 
-        var authData = new Gson().fromJson(response.body(), AuthData.class);
+        var authData = JsonCodec.GSON.fromJson(response.body(), AuthData.class);
         authToken = authData.authToken();
         ServerFacade.username = username;
         return LOGGED_IN;
@@ -58,22 +73,64 @@ public class ServerFacade {
 
         throwIfException(response);
 
-        var authData = new Gson().fromJson(response.body(), AuthData.class);
+        var authData = JsonCodec.GSON.fromJson(response.body(), AuthData.class);
         ServerFacade.username = username;
         authToken = authData.authToken();
     }
 
-    public List<GameData> listGames() throws Exception {
-        HttpRequest request = buildRequest("GET", "/game", null, new String[]{"authorization", authToken});
-        var response = sendRequest(request);
+    private record GamePage(List<GameData> games, Integer nextCursor) {
+    }
+
+    /**
+     * Subscribes to the server's lobby, so {@link #listGames()} can answer from pushed updates
+     */
+    public void subscribeLobby() throws Exception {
+        unsubscribeLobby();
+        lobby = new LobbyClient(port, authToken);
+    }
 
+    public void unsubscribeLobby() throws IOException {
+        if (lobby != null) {
+            lobby.close();
+            lobby = null;
+        }
+    }
+
+    public List<GameData> listGames() throws Exception {
+        var pushed = lobby == null ? null : lobby.games();
+        if (pushed != null) {
+            return pushed;
+        }
+//        Ask for the first page only if it changed; if it hasn't, neither has the rest of the list
+        HttpRequest.Builder first = HttpRequest.newBuilder(URI.create(serverUrl + "/game")).GET()
+                .header("authorization", authToken);
+        if (lastGamesETag != null) {
+            first.header("If-None-Match", lastGamesETag);
+        }
+        var response = sendRequest(first.build());
+        if (response.statusCode() == 304) {
+            return new ArrayList<>(lastGames);
+        }
         throwIfException(response);
+        var etag = response.headers().firstValue("ETag").orElse(null);
 
-        var mapType = new TypeToken<Map<String, ArrayList<GameData>>>() {
-        }.getType();
+        var games = new ArrayList<GameData>();
+        var page = JsonCodec.GSON.fromJson(response.body(), GamePage.class);
+        games.addAll(page.games());
+//        The server lists games a page at a time, so keep asking until there are no more
+        while (page.nextCursor() != null) {
+            HttpRequest request = buildRequest("GET", "/game?after=" + page.nextCursor(), null,
+                    new String[]{"authorization", authToken});
+            response = sendRequest(request);
+
+            throwIfException(response);
 
-        @SuppressWarnings("unchecked") var gamesString = (Map<String, ArrayList<GameData>>) new Gson().fromJson(response.body(), mapType);
-        return gamesString.get("games");
+            page = JsonCodec.GSON.fromJson(response.body(), GamePage.class);
+            games.addAll(page.games());
+        }
+        lastGames = List.copyOf(games);
+        lastGamesETag = etag;
+        return games;
     }
 
     public int createGame(String gameName) throws Exception {
@@ -84,7 +141,7 @@ public class ServerFacade {
 
         var mapType = new TypeToken<Map<String, Integer>>() {
         }.getType();
-        @SuppressWarnings("unchecked") var body = (Map<String, Integer>) new Gson().fromJson(response.body(), mapType);
+        @SuppressWarnings("unchecked") var body = (Map<String, Integer>) JsonCodec.GSON.fromJson(response.body(), mapType);
         return body.get("gameID");
     }
 
@@ -113,24 +170,23 @@ public class ServerFacade {
 
     public void makeMove(ChessMove move, int gameID) throws IOException {
         var command = new MakeMoveCommand(UserGameCommand.CommandType.MAKE_MOVE, authToken, gameID, move);
-        String message = new Gson().toJson(command);
-
-        wsClient.send(message);
+        wsClient.send(command);
     }
 
     public void leaveGame(int gameID) throws IOException {
         var command = new UserGameCommand(UserGameCommand.CommandType.LEAVE, authToken, gameID);
-        String message = new Gson().toJson(command);
-
-        wsClient.send(message);
+        wsClient.send(command);
         wsClient.close();
     }
 
     public void resignGame(int gameID) throws IOException {
         var command = new UserGameCommand(UserGameCommand.CommandType.RESIGN, authToken, gameID);
-        String message = new Gson().toJson(command);
+        wsClient.send(command);
+    }
 
-        wsClient.send(message);
+    public void requestAnalysis(int gameID) throws IOException {
+        var command = new UserGameCommand(UserGameCommand.CommandType.SUBSCRIBE_ANALYSIS, authToken, gameID);
+        wsClient.send(command);
     }
 
     public ChessBoard getBoard() {
@@ -143,15 +199,13 @@ public class ServerFacade {
 
     private void startWebsocket(int gameID, ChessGame.TeamColor playerColor) throws Exception {
 //        Create websocket connection
-        wsClient = new WsClient(port, playerColor);
-        var message = new UserGameCommand(UserGameCommand.CommandType.CONNECT, authToken, gameID);
-        var command = new Gson().toJson(message);
-        wsClient.send(command);
+        wsClient = new WsClient(port, playerColor, binaryWebsocket);
+        wsClient.connect(authToken, gameID);
     }
 
     private void throwIfException(HttpResponse<String> response) throws Exception {
         if (!isSuccessful(response.statusCode())) {
-            var body = new Gson().fromJson(response.body(), Map.class);
+            var body = JsonCodec.GSON.fromJson(response.body(), Map.class);
             throw new Exception((String) body.get("message"));
         }
     }
@@ -170,7 +224,7 @@ public class ServerFacade {
 
     private HttpRequest.BodyPublisher makeRequestBody(Object request) {
         if (request != null) {
-            return HttpRequest.BodyPublishers.ofString(new Gson().toJson(request));
+            return HttpRequest.BodyPublishers.ofString(JsonCodec.GSON.toJson(request));
         } else {
             return HttpRequest.BodyPublishers.noBody();
         }
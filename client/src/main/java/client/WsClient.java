@@ -1,37 +1,83 @@
 package client;
 
-import chess.ChessGame;
-import com.google.gson.Gson;
+import chess.*;
 import jakarta.websocket.*;
+import websocket.BinaryCodec;
+import websocket.JsonCodec;
+import websocket.MoveDeltas;
+import websocket.commands.ConnectCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.AnalysisMessage;
 import websocket.messages.LoadBoardMessage;
+import websocket.messages.MoveAppliedMessage;
+import websocket.messages.ServerMessage;
 import websocket.messages.ServerErrorMessage;
 import websocket.messages.ServerNotificationMessage;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
 
 public class WsClient extends Endpoint {
 
     public Session session;
     private final ChessGame.TeamColor playerColor;
     private ChessGame game;
+    private String authToken;
+    private int gameID;
+    //    Whether to talk to the server with BinaryCodec frames instead of JSON
+    private final boolean binary;
 
     public WsClient(int port, ChessGame.TeamColor teamColor) throws Exception {
+        this(port, teamColor, false);
+    }
+
+    public WsClient(int port, ChessGame.TeamColor teamColor, boolean binary) throws Exception {
         this.playerColor = teamColor;
+        this.binary = binary;
         URI uri = new URI(String.format("ws://localhost:%d/ws", port));
         WebSocketContainer container = ContainerProvider.getWebSocketContainer();
         session = container.connectToServer(this, uri);
 
         this.session.addMessageHandler(new MessageHandler.Whole<String>() {
             public void onMessage(String message) {
-                parseMessage(message);
+                try {
+                    handleMessage(JsonCodec.decodeMessage(message));
+                } catch (IllegalArgumentException e) {
+                    System.out.print("\nReceived a message that couldn't be read: " + e.getMessage() + "\n[GAME] >> ");
+                }
+            }
+        });
+        this.session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+            public void onMessage(ByteBuffer message) {
+                try {
+                    handleMessage(BinaryCodec.decodeMessage(message));
+                } catch (IllegalArgumentException e) {
+                    System.out.print("\nReceived a message that couldn't be read: " + e.getMessage() + "\n[GAME] >> ");
+                }
             }
         });
     }
 
-    public void send(String message) throws IOException {
-        session.getBasicRemote().sendText(message);
+    /**
+     * Joins a game's updates, asking for move deltas rather than the whole game after every move, and
+     * for binary frames if this client sends them
+     *
+     * @param authToken the user's auth token
+     * @param gameID    the game to join
+     */
+    public void connect(String authToken, int gameID) throws IOException {
+        this.authToken = authToken;
+        this.gameID = gameID;
+        send(new ConnectCommand(UserGameCommand.CommandType.CONNECT, authToken, gameID, null, null, true, binary));
+    }
+
+    public void send(UserGameCommand command) throws IOException {
+        if (binary) {
+            session.getBasicRemote().sendBinary(BinaryCodec.encode(command));
+        } else {
+            session.getBasicRemote().sendText(JsonCodec.encode(command));
+        }
     }
 
     public void close() throws IOException {
@@ -42,24 +88,63 @@ public class WsClient extends Endpoint {
     public void onOpen(Session session, EndpointConfig endpointConfig) {
     }
 
-    private void parseMessage(String message) {
-        var gson = new Gson();
-        HashMap<String, String> map = new Gson().fromJson(message, HashMap.class);
-        if (map.get("serverMessageType").equals("LOAD_GAME")) {
-            LoadBoardMessage loadBoardMessage = gson.fromJson(message, LoadBoardMessage.class);
-            this.game = loadBoardMessage.getGame();
-            System.out.println("\n");
-            DrawBoard.drawBoard(game.getBoard(), playerColor, null, null);
-            System.out.print("[GAME] >> ");
-        } else if (map.get("serverMessageType").equals("NOTIFICATION")) {
-            ServerNotificationMessage command = gson.fromJson(message, ServerNotificationMessage.class);
-            System.out.print("\n" + command.getMessage() + "\n[GAME] >> ");
-        } else if (map.get("serverMessageType").equals("ERROR")) {
-            ServerErrorMessage command = gson.fromJson(message, ServerErrorMessage.class);
-            System.out.print("\n" + command.getErrorMessage() + "\n[GAME] >> ");
+    private void handleMessage(ServerMessage message) {
+        switch (message) {
+            case LoadBoardMessage loadBoardMessage -> {
+                this.game = loadBoardMessage.getGame();
+                drawGame();
+            }
+            case MoveAppliedMessage moveApplied -> applyMove(moveApplied);
+            case ServerNotificationMessage command -> System.out.print("\n" + command.getMessage() + "\n[GAME] >> ");
+            case ServerErrorMessage command -> System.out.print("\n" + command.getErrorMessage() + "\n[GAME] >> ");
+            case AnalysisMessage analysis -> System.out.print("\n" + formatAnalysis(analysis) + "\n[GAME] >> ");
+            case null, default -> {
+            }
+        }
+    }
+
+    private void drawGame() {
+        System.out.println("\n");
+        DrawBoard.drawBoard(game.getBoard(), playerColor, null, null);
+        System.out.print("[GAME] >> ");
+    }
+
+    private void applyMove(MoveAppliedMessage moveApplied) {
+        switch (MoveDeltas.apply(game, moveApplied)) {
+            case APPLIED -> drawGame();
+            case ALREADY_APPLIED -> {
+            }
+//            A move was missed or the local game disagrees with the server, so start over from the server's copy
+            case OUT_OF_SYNC -> {
+                try {
+                    send(new UserGameCommand(UserGameCommand.CommandType.SYNC, authToken, gameID));
+                } catch (IOException e) {
+                    System.out.print("\nLost connection to the server\n[GAME] >> ");
+                }
+            }
         }
     }
 
+    private String formatAnalysis(AnalysisMessage analysis) {
+        String score;
+        if (Search.isMate(analysis.getScore())) {
+            int plies = Search.MATE - Math.abs(analysis.getScore());
+            score = (analysis.getScore() > 0 ? "WHITE" : "BLACK") + " mates in " + (plies + 1) / 2;
+        } else {
+            score = String.format("%+.2f", analysis.getScore() / 100.0);
+        }
+        if (analysis.getBestMove() == null) {
+            return String.format("Analysis: %s", score);
+        }
+        return String.format("Analysis (depth %d): %s, best move %s %s", analysis.getDepth(), score,
+                formatPosition(analysis.getBestMove().getStartPosition()),
+                formatPosition(analysis.getBestMove().getEndPosition()));
+    }
+
+    private String formatPosition(ChessPosition position) {
+        return "" + (char) ('a' + position.getColumn() - 1) + position.getRow();
+    }
+
     public ChessGame getGame() {
         return game;
     }
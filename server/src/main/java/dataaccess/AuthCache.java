@@ -0,0 +1,115 @@
+package dataaccess;
+
+import chess.AuthData;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers recent auth token lookups, including tokens that turned out not to exist.
+ * <p>
+ * Lookups are a single read from a concurrent map, so checking a token never takes a lock.
+ * Entries expire after a fixed time, and tokens that weren't found expire sooner so a client
+ * can't be locked out for long by a stale miss. When the cache is full, expired entries are
+ * dropped first and then arbitrary ones.
+ * <p>
+ * Deleting a token leaves a tombstone that no later {@link #put} can replace until it expires, so
+ * a lookup that read the token just before it was deleted can't bring it back.
+ */
+public class AuthCache {
+
+    /**
+     * A cached lookup. {@code authData} is null for a token that doesn't exist, and
+     * {@code deleted} marks a token that was deleted while it was cached.
+     */
+    public record Entry(AuthData authData, long expiresAt, boolean deleted) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier clock;
+
+    public AuthCache(int maxEntries, Duration ttl, Duration negativeTtl) {
+        this(maxEntries, ttl, negativeTtl, System::nanoTime);
+    }
+
+    /**
+     * @param maxEntries  how many tokens to remember at most
+     * @param ttl         how long a token that exists is remembered
+     * @param negativeTtl how long a token that doesn't exist is remembered
+     * @param clock       the current time in nanoseconds
+     */
+    public AuthCache(int maxEntries, Duration ttl, Duration negativeTtl, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * @return the cached lookup, or null if the token isn't cached or its entry has expired
+     */
+    public Entry get(String authToken) {
+        var entry = entries.get(authToken);
+        if (entry == null) {
+            return null;
+        }
+        if (clock.getAsLong() - entry.expiresAt() >= 0) {
+            entries.remove(authToken, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Remembers the result of looking a token up. Does nothing if the token has been deleted.
+     *
+     * @param authData what the token belongs to, or null if it doesn't exist
+     */
+    public void put(String authToken, AuthData authData) {
+        long now = clock.getAsLong();
+        if (entries.size() >= maxEntries && !entries.containsKey(authToken)) {
+            makeRoom(now);
+        }
+        var entry = new Entry(authData, now + (authData == null ? negativeTtlNanos : ttlNanos), false);
+        entries.compute(authToken, (token, old) -> isTombstone(old, now) ? old : entry);
+    }
+
+    /**
+     * Remembers that a token was deleted, for as long as a token that exists would be cached
+     */
+    public void delete(String authToken) {
+        entries.put(authToken, new Entry(null, clock.getAsLong() + ttlNanos, true));
+    }
+
+    public void invalidate(String authToken) {
+        entries.remove(authToken);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static boolean isTombstone(Entry entry, long now) {
+        return entry != null && entry.deleted() && now - entry.expiresAt() < 0;
+    }
+
+    private void makeRoom(long now) {
+        entries.values().removeIf(entry -> now - entry.expiresAt() >= 0);
+//        Tombstones are kept until they expire, since dropping one early reopens the race it guards
+        var iterator = entries.values().iterator();
+        while (entries.size() >= maxEntries && iterator.hasNext()) {
+            if (!iterator.next().deleted()) {
+                iterator.remove();
+            }
+        }
+    }
+}
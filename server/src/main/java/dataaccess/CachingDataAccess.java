@@ -0,0 +1,281 @@
+package dataaccess;
+
+import chess.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps games in memory in front of another {@link DataAccess}.
+ * <p>
+ * A game is loaded from the underlying store the first time it is read, and from then on every
+ * read is served from memory, so a move doesn't deserialize the same game several times. In
+ * {@link Mode#WRITE_THROUGH} updates are written to the store before returning. In
+ * {@link Mode#WRITE_BEHIND} a copy goes on a {@link GameUpdateQueue} instead, which writes the
+ * newest copy of each game in batches. The cached game is only replaced once the write or the
+ * queueing succeeded; if it failed, the game is dropped from memory and read again next time.
+ * <p>
+ * At most {@code maxGames} games are kept. Past that, the games read longest ago are dropped, apart
+ * from games with changes still waiting to be written. Auth token lookups go through an
+ * {@link AuthCache}, which remembers deleted tokens so a racing lookup can't revive them. Users
+ * pass straight through.
+ */
+public class CachingDataAccess implements DataAccess {
+
+    public enum Mode {
+        WRITE_THROUGH,
+        WRITE_BEHIND
+    }
+
+    private final DataAccess delegate;
+    private final Mode mode;
+    private final Map<Integer, Cached> games = new ConcurrentHashMap<>();
+    private final int maxGames;
+    private final GameUpdateQueue updates;
+    private final AuthCache authCache;
+
+    private static final class Cached {
+        final GameData game;
+        volatile long lastRead = System.nanoTime();
+
+        Cached(GameData game) {
+            this.game = game;
+        }
+    }
+
+    private record Candidate(int gameID, Cached cached, long lastRead) {
+    }
+
+    public CachingDataAccess(DataAccess delegate, Mode mode) {
+        this(delegate, mode, new GameUpdateQueue(delegate, 64, 1024),
+                new AuthCache(10_000, Duration.ofMinutes(1), Duration.ofSeconds(5)));
+    }
+
+    public CachingDataAccess(DataAccess delegate, Mode mode, GameUpdateQueue updates, AuthCache authCache) {
+        this(delegate, mode, updates, authCache, 10_000);
+    }
+
+    /**
+     * @param maxGames how many games to keep in memory, not counting games with unwritten changes
+     */
+    public CachingDataAccess(DataAccess delegate, Mode mode, GameUpdateQueue updates, AuthCache authCache, int maxGames) {
+        this.delegate = delegate;
+        this.mode = mode;
+        this.updates = updates;
+        this.authCache = authCache;
+        this.maxGames = maxGames;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        updates.clear();
+        games.clear();
+        authCache.clear();
+        delegate.clear();
+    }
+
+    @Override
+    public void createUser(UserData user) throws DataAccessException {
+        delegate.createUser(user);
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        return delegate.getUser(username);
+    }
+
+    @Override
+    public int createGame(GameData gameData) throws DataAccessException {
+//        The store hands out game IDs, so new games are always written straight away
+        int gameID = delegate.createGame(gameData);
+        cache(gameID, new GameData(gameID, gameData.whiteUsername(), gameData.whiteAuthToken(),
+                gameData.blackUsername(), gameData.blackAuthToken(), gameData.gameName(), gameData.game()));
+        return gameID;
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        var cached = games.get(gameID);
+        if (cached != null) {
+            cached.lastRead = System.nanoTime();
+            return cached.game;
+        }
+//        A game dropped from memory may still have changes waiting that are newer than the store
+        var queued = updates.queued(gameID);
+        var loaded = queued != null ? copy(queued) : delegate.getGame(gameID);
+        if (loaded == null) {
+            return null;
+        }
+//        An update that landed while this was loading is newer, so keep that one
+        var existing = games.putIfAbsent(gameID, new Cached(loaded));
+        if (existing != null) {
+            return existing.game;
+        }
+        makeRoom();
+        return loaded;
+    }
+
+    @Override
+    public HashSet<GameData> listGames() throws DataAccessException {
+        var byID = new HashMap<Integer, GameData>();
+        for (var game : delegate.listGames()) {
+            byID.put(game.gameID(), game);
+        }
+//        Cached games may have changes that haven't been written yet
+        for (var cached : games.values()) {
+            byID.replace(cached.game.gameID(), cached.game);
+        }
+        return new HashSet<>(byID.values());
+    }
+
+    @Override
+    public GamePage listGames(GameQuery query) throws DataAccessException {
+//        Seats can change without the store knowing yet, and the store filters open games on its own copy
+        if (query.openOnly()) {
+            updates.flush();
+        }
+        var page = delegate.listGames(query);
+        var listed = new ArrayList<ReturnGameData>();
+        for (var game : page.games()) {
+            var entry = games.get(game.gameID());
+            var cached = entry == null ? null : entry.game;
+            var summary = cached == null ? game
+                    : new ReturnGameData(cached.gameID(), cached.whiteUsername(), cached.blackUsername(), cached.gameName());
+            if (query.matches(summary)) {
+                listed.add(summary);
+            }
+        }
+        return new GamePage(listed, page.nextCursor());
+    }
+
+    @Override
+    public void updateGame(int gameID, GameData gameData) throws DataAccessException {
+        try {
+            if (mode == Mode.WRITE_THROUGH) {
+                delegate.updateGame(gameID, gameData);
+            } else {
+//                Callers keep changing the cached game in place, so save a copy of it as it is now
+                updates.add(gameID, copy(gameData));
+            }
+        } catch (DataAccessException | RuntimeException e) {
+//            The caller may have already changed the cached game in place, so it can't be trusted either
+            games.remove(gameID);
+            throw e;
+        }
+        cache(gameID, gameData);
+    }
+
+    private static GameData copy(GameData gameData) {
+        return new GameData(gameData.gameID(), gameData.whiteUsername(), gameData.whiteAuthToken(),
+                gameData.blackUsername(), gameData.blackAuthToken(), gameData.gameName(), new ChessGame(gameData.game()));
+    }
+
+    private void cache(int gameID, GameData gameData) {
+        games.put(gameID, new Cached(gameData));
+        makeRoom();
+    }
+
+    /**
+     * Drops the games read longest ago until a tenth of the room is free again, skipping games with
+     * changes that haven't been written
+     */
+    private void makeRoom() {
+        if (games.size() <= maxGames) {
+            return;
+        }
+        synchronized (this) {
+            int target = maxGames - maxGames / 10;
+//            Read times keep changing, so sort on a snapshot of them
+            var oldestFirst = new ArrayList<Candidate>();
+            games.forEach((gameID, cached) -> oldestFirst.add(new Candidate(gameID, cached, cached.lastRead)));
+            oldestFirst.sort(Comparator.comparingLong(Candidate::lastRead));
+            for (var candidate : oldestFirst) {
+                if (games.size() <= target) {
+                    break;
+                }
+                if (updates.queued(candidate.gameID()) == null) {
+//                    Only if it wasn't replaced in the meantime
+                    games.remove(candidate.gameID(), candidate.cached());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return how many games are held in memory
+     */
+    public int cachedGames() {
+        return games.size();
+    }
+
+    @Override
+    public void createAuth(AuthData authData) throws DataAccessException {
+        delegate.createAuth(authData);
+        authCache.put(authData.authToken(), authData);
+    }
+
+    @Override
+    public HashSet<AuthData> getAuth(String authToken) throws DataAccessException {
+        var result = new HashSet<AuthData>();
+        if (authToken == null) {
+            return result;
+        }
+        AuthData found = null;
+        var cached = authCache.get(authToken);
+        if (cached != null) {
+            found = cached.authData();
+        } else {
+            for (var authData : delegate.getAuth(authToken)) {
+                if (authData != null && authToken.equals(authData.authToken())) {
+                    found = authData;
+                }
+            }
+            authCache.put(authToken, found);
+        }
+        if (found != null) {
+            result.add(found);
+        }
+        return result;
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+//        The tombstone goes in first, so a lookup that already read the token can't cache it again
+        authCache.delete(authToken);
+        try {
+            delegate.deleteAuth(authToken);
+        } catch (DataAccessException | RuntimeException e) {
+            authCache.invalidate(authToken);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes every queued game change to the underlying store
+     *
+     * @return how many games were written
+     */
+    public int flush() throws DataAccessException {
+        return updates.flush();
+    }
+
+    /**
+     * @return how many games have changes that haven't been written yet
+     */
+    public int pendingWrites() {
+        return updates.depth();
+    }
+
+    public GameUpdateQueue updates() {
+        return updates;
+    }
+}
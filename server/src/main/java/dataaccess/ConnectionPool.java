@@ -0,0 +1,257 @@
+package dataaccess;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps database connections open and lends them out, so a query doesn't pay for a new TCP
+ * connection and login every time.
+ * <p>
+ * Borrowed connections are wrapped so that {@code close()} hands them back instead of closing
+ * them. At most {@code maxSize} connections exist at once, and a borrower waits up to the borrow
+ * timeout for one to come back. Connections that sat idle for a while are checked with
+ * {@link Connection#isValid} before they are lent again. Connections kept longer than the leak
+ * threshold are reported along with where they were borrowed, and {@link #maintain()}, which
+ * the owner runs periodically, keeps {@code minIdle} connections ready and closes extra ones
+ * nobody has needed for a minute.
+ */
+public class ConnectionPool {
+
+    /**
+     * Opens a new connection to the database
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * A snapshot of the pool's counters
+     */
+    public record Stats(int active, int idle, long created, long borrows, long timeouts, long validationFailures,
+                        long leaks, Duration averageWait, Duration maxWait) {
+    }
+
+    private static final long VALIDATE_AFTER_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private record Idle(Connection connection, long returnedAt) {
+    }
+
+    private record Borrowed(long borrowedAt, Throwable borrowedFrom, AtomicBoolean reported) {
+    }
+
+    private final ConnectionFactory factory;
+    private final int minIdle;
+    private final long borrowTimeoutNanos;
+    private final long leakThresholdNanos;
+    private final Semaphore permits;
+    private final BlockingDeque<Idle> idle = new LinkedBlockingDeque<>();
+    private final Map<Connection, Borrowed> borrowed = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * @param factory       opens new connections
+     * @param minIdle       how many idle connections to keep ready
+     * @param maxSize       how many connections may exist at once
+     * @param borrowTimeout how long to wait for a connection before giving up
+     * @param leakThreshold how long a connection may be kept before it is reported, or zero to never report
+     */
+    public ConnectionPool(ConnectionFactory factory, int minIdle, int maxSize, Duration borrowTimeout, Duration leakThreshold) {
+        this.factory = factory;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.borrowTimeoutNanos = borrowTimeout.toNanos();
+        this.leakThresholdNanos = leakThreshold.toNanos();
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Lends out a connection. Closing it returns it to the pool.
+     *
+     * @throws SQLException if no connection came free in time or a new one couldn't be opened
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                timeouts.increment();
+                throw new SQLException("timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted waiting for a database connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        borrows.increment();
+
+        try {
+            var connection = takeIdle();
+            if (connection == null) {
+                connection = open();
+            }
+            borrowed.put(connection, new Borrowed(System.nanoTime(),
+                    leakThresholdNanos > 0 ? new Throwable("connection borrowed here") : null, new AtomicBoolean()));
+            return lend(connection);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private Connection takeIdle() {
+        Idle next;
+        while ((next = idle.pollFirst()) != null) {
+            var connection = next.connection();
+            if (System.nanoTime() - next.returnedAt() < VALIDATE_AFTER_NANOS || isValid(connection)) {
+                return connection;
+            }
+            validationFailures.increment();
+            closeQuietly(connection);
+        }
+        return null;
+    }
+
+    private Connection open() throws SQLException {
+        var connection = factory.open();
+        created.increment();
+        return connection;
+    }
+
+    private Connection lend(Connection connection) {
+        var returned = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close" -> {
+                            if (returned.compareAndSet(false, true)) {
+                                giveBack(connection);
+                            }
+                            return null;
+                        }
+                        case "isClosed" -> {
+                            if (returned.get()) {
+                                return true;
+                            }
+                        }
+                        default -> {
+                            if (returned.get()) {
+                                throw new SQLException("connection has already been returned to the pool");
+                            }
+                        }
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private void giveBack(Connection connection) {
+        borrowed.remove(connection);
+        try {
+//            Put the connection back the way the next borrower expects to find it
+            if (closed || connection.isClosed()) {
+                closeQuietly(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            idle.offerFirst(new Idle(connection, System.nanoTime()));
+        } catch (SQLException e) {
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Reports leaked connections, closes connections idle for too long and opens new ones up to {@code minIdle}
+     */
+    public void maintain() {
+        long now = System.nanoTime();
+        if (leakThresholdNanos > 0) {
+            for (var entry : borrowed.values()) {
+                if (now - entry.borrowedAt() > leakThresholdNanos && entry.reported().compareAndSet(false, true)) {
+                    leaks.increment();
+                    System.err.println("Possible connection leak: a connection has been borrowed for "
+                            + TimeUnit.NANOSECONDS.toSeconds(now - entry.borrowedAt()) + "s");
+                    entry.borrowedFrom().printStackTrace();
+                }
+            }
+        }
+
+        while (idle.size() > minIdle) {
+            var oldest = idle.peekLast();
+            if (oldest == null || now - oldest.returnedAt() < IDLE_TIMEOUT_NANOS || !idle.removeLastOccurrence(oldest)) {
+                break;
+            }
+            closeQuietly(oldest.connection());
+        }
+
+        while (idle.size() < minIdle && permits.tryAcquire()) {
+            try {
+                idle.offerLast(new Idle(open(), System.nanoTime()));
+            } catch (SQLException e) {
+                System.err.println("Unable to open a pooled connection: " + e.getMessage());
+                break;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Closes every idle connection. Borrowed connections are closed as they come back.
+     */
+    public void close() {
+        closed = true;
+        Idle next;
+        while ((next = idle.pollFirst()) != null) {
+            closeQuietly(next.connection());
+        }
+    }
+
+    public Stats stats() {
+        long borrowCount = borrows.sum();
+        return new Stats(borrowed.size(), idle.size(), created.sum(), borrowCount, timeouts.sum(),
+                validationFailures.sum(), leaks.sum(),
+                Duration.ofNanos(borrowCount == 0 ? 0 : waitNanos.sum() / borrowCount), Duration.ofNanos(maxWaitNanos.get()));
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+//            It is being thrown away either way
+        }
+    }
+}
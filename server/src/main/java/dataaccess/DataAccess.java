@@ -2,7 +2,10 @@ package dataaccess;
 
 import chess.*;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Map;
 
 public interface DataAccess {
     void clear() throws DataAccessException;
@@ -17,8 +20,38 @@ public interface DataAccess {
 
     HashSet<GameData> listGames() throws DataAccessException;
 
+    /**
+     * Lists one page of games without their boards. Stores that can read just the listing should override this.
+     */
+    default GamePage listGames(GameQuery query) throws DataAccessException {
+        var games = new ArrayList<ReturnGameData>();
+        for (var game : listGames()) {
+            var summary = new ReturnGameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName());
+            if (query.matches(summary)) {
+                games.add(summary);
+            }
+        }
+        games.sort(Comparator.comparingInt(ReturnGameData::gameID));
+        if (games.size() <= query.limit()) {
+            return new GamePage(games, null);
+        }
+        var page = new ArrayList<>(games.subList(0, query.limit()));
+        return new GamePage(page, page.getLast().gameID());
+    }
+
     void updateGame(int gameID, GameData gameData) throws DataAccessException;
 
+    /**
+     * Writes several games at once. Stores that can batch writes should override this.
+     *
+     * @param games the new state of each game, by game ID
+     */
+    default void updateGames(Map<Integer, GameData> games) throws DataAccessException {
+        for (var entry : games.entrySet()) {
+            updateGame(entry.getKey(), entry.getValue());
+        }
+    }
+
     void createAuth(AuthData authData) throws DataAccessException;
 
     HashSet<AuthData> getAuth(String authToken) throws DataAccessException;
@@ -1,13 +1,22 @@
 package dataaccess;
 
 import java.sql.*;
+import java.time.Duration;
 import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class DatabaseManager {
     private static String databaseName;
     private static String dbUsername;
     private static String dbPassword;
     private static String connectionUrl;
+    //    Connector/J keeps server-side prepared statements open per connection and reuses them, and sends batches as
+    //    multi-statement round trips
+    private static final String CONNECTION_OPTIONS = "?useServerPrepStmts=true&cachePrepStmts=true"
+            + "&prepStmtCacheSize=250&prepStmtCacheSqlLimit=2048&rewriteBatchedStatements=true";
+    //    Replaced whenever the connection properties change, so no connection opened with the old ones is lent out
+    private static volatile ConnectionPool pool;
 
     /*
      * Load the database information for the db.properties file.
@@ -40,18 +49,42 @@ public class DatabaseManager {
      * // execute SQL statements.
      * }
      * </code>
+     * Connections come from a pool, so closing one hands it back to be reused rather than closing it.
      */
     static Connection getConnection() throws DataAccessException {
         try {
-            //do not wrap the following line with a try-with-resources
-            var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
-            conn.setCatalog(databaseName);
-            return conn;
+            return pool.borrow();
         } catch (SQLException ex) {
             throw new DataAccessException("failed to get connection", ex);
         }
     }
 
+    /**
+     * @return the connection pool's current counters
+     */
+    public static ConnectionPool.Stats poolStats() {
+        return pool.stats();
+    }
+
+    /**
+     * Periodically reports leaked connections and keeps idle ones ready, until the scheduler is shut down
+     */
+    public static void startPoolMaintenance(ScheduledExecutorService scheduler, Duration period) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                pool.maintain();
+            } catch (RuntimeException e) {
+                System.err.println("Connection pool maintenance failed: " + e.getMessage());
+            }
+        }, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static Connection openConnection() throws SQLException {
+        var conn = DriverManager.getConnection(connectionUrl + CONNECTION_OPTIONS, dbUsername, dbPassword);
+        conn.setCatalog(databaseName);
+        return conn;
+    }
+
     private static void loadPropertiesFromResources() {
         try (var propStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("db.properties")) {
             if (propStream == null) {
@@ -73,5 +106,14 @@ public class DatabaseManager {
         var host = props.getProperty("db.host");
         var port = Integer.parseInt(props.getProperty("db.port"));
         connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+
+        var old = pool;
+        pool = new ConnectionPool(DatabaseManager::openConnection,
+                Integer.getInteger("chess.db.minIdle", 2), Integer.getInteger("chess.db.maxConnections", 32),
+                Duration.ofMillis(Long.getLong("chess.db.borrowTimeoutMillis", 5_000)),
+                Duration.ofMillis(Long.getLong("chess.db.leakThresholdMillis", 30_000)));
+        if (old != null) {
+            old.close();
+        }
     }
 }
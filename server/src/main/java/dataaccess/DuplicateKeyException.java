@@ -0,0 +1,14 @@
+package dataaccess;
+
+/**
+ * Indicates a write was refused because it would break a uniqueness constraint
+ */
+public class DuplicateKeyException extends DataAccessException {
+    public DuplicateKeyException(String message) {
+        super(message);
+    }
+
+    public DuplicateKeyException(String message, Throwable ex) {
+        super(message, ex);
+    }
+}
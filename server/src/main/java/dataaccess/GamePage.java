@@ -0,0 +1,14 @@
+package dataaccess;
+
+import chess.ReturnGameData;
+
+import java.util.List;
+
+/**
+ * One page of the game list
+ *
+ * @param games      the games on this page, in game ID order
+ * @param nextCursor what to pass as {@link GameQuery#after()} for the next page, or null if this is the last page
+ */
+public record GamePage(List<ReturnGameData> games, Integer nextCursor) {
+}
@@ -0,0 +1,35 @@
+package dataaccess;
+
+import chess.ReturnGameData;
+
+/**
+ * Which page of the game list to fetch. Games are listed in game ID order.
+ *
+ * @param after      only list games with a higher ID than this, which is the previous page's cursor
+ * @param limit      how many games to list at most
+ * @param openOnly   only list games with an open seat
+ * @param namePrefix only list games whose name starts with this, or null for any name
+ */
+public record GameQuery(int after, int limit, boolean openOnly, String namePrefix) {
+
+    /**
+     * Every game, in one page
+     */
+    public static final GameQuery ALL = new GameQuery(0, Integer.MAX_VALUE, false, null);
+
+    public GameQuery {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+    }
+
+    public boolean matches(ReturnGameData game) {
+        if (game.gameID() <= after) {
+            return false;
+        }
+        if (openOnly && game.whiteUsername() != null && game.blackUsername() != null) {
+            return false;
+        }
+        return namePrefix == null || (game.gameName() != null && game.gameName().startsWith(namePrefix));
+    }
+}
@@ -0,0 +1,162 @@
+package dataaccess;
+
+import chess.GameData;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects game updates and writes them to a {@link DataAccess} in batches.
+ * <p>
+ * Only the newest state of each game is kept, so a game that changes many times between flushes
+ * is written once. A flush hands everything queued to {@link DataAccess#updateGames(Map)} in one
+ * call. Flushes run periodically once {@link #start} is called, and early once {@code batchSize}
+ * games are waiting. When {@code capacity} games are waiting, a caller queueing another game
+ * flushes on its own thread first, which slows writers down to the speed of the database.
+ */
+public class GameUpdateQueue {
+
+    private final DataAccess delegate;
+    private final int batchSize;
+    private final int capacity;
+    private final Map<Integer, GameData> pending = new ConcurrentHashMap<>();
+    //    The batch being written, which is neither queued nor in the store until the write finishes
+    private volatile Map<Integer, GameData> inFlight = Map.of();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile Executor executor;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong gamesWritten = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+
+    /**
+     * @param delegate  where games are written
+     * @param batchSize how many waiting games start a flush without waiting for the next period
+     * @param capacity  how many games may wait before callers have to flush themselves
+     */
+    public GameUpdateQueue(DataAccess delegate, int batchSize, int capacity) {
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Queues a game's state to be written, replacing any state of it already waiting
+     *
+     * @throws DataAccessException if the queue was full and flushing it failed
+     */
+    public void add(int gameID, GameData gameData) throws DataAccessException {
+        if (pending.size() >= capacity && !pending.containsKey(gameID)) {
+            flush();
+        }
+        pending.put(gameID, gameData);
+        if (pending.size() >= batchSize && executor != null && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Forgets everything waiting to be written
+     */
+    public void clear() {
+        pending.clear();
+    }
+
+    /**
+     * Writes everything queued in one batch. Flushes run one at a time, so an older state of a game
+     * can never be written after a newer one.
+     *
+     * @return how many games were written
+     * @throws DataAccessException if the batch failed; its games stay queued unless they changed since
+     */
+    public synchronized int flush() throws DataAccessException {
+        flushScheduled.set(false);
+        var batch = new ConcurrentHashMap<Integer, GameData>();
+        inFlight = batch;
+        for (var gameID : pending.keySet()) {
+//            Add to the batch before leaving the queue, so the game is always one or the other
+            var gameData = pending.get(gameID);
+            if (gameData != null) {
+                batch.put(gameID, gameData);
+                pending.remove(gameID, gameData);
+            }
+        }
+        if (batch.isEmpty()) {
+            inFlight = Map.of();
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        try {
+            delegate.updateGames(batch);
+        } catch (DataAccessException | RuntimeException e) {
+            batch.forEach(pending::putIfAbsent);
+            throw e;
+        } finally {
+            inFlight = Map.of();
+        }
+        long elapsed = System.nanoTime() - start;
+        lastFlushNanos = elapsed;
+        maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+        flushes.incrementAndGet();
+        gamesWritten.addAndGet(batch.size());
+        return batch.size();
+    }
+
+    /**
+     * Flushes periodically on a scheduler, which also runs the early flushes for full batches
+     *
+     * @param scheduler the scheduler to run on
+     * @param interval  how long an update may wait before it is written
+     */
+    public void start(ScheduledExecutorService scheduler, Duration interval) {
+        executor = scheduler;
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (DataAccessException | RuntimeException e) {
+            System.err.println("Game update flush failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the newest state of a game that is queued or being written, or null if it has none
+     */
+    public GameData queued(int gameID) {
+        var gameData = pending.get(gameID);
+        return gameData != null ? gameData : inFlight.get(gameID);
+    }
+
+    /**
+     * @return how many games are waiting to be written
+     */
+    public int depth() {
+        return pending.size();
+    }
+
+    public long flushes() {
+        return flushes.get();
+    }
+
+    public long gamesWritten() {
+        return gamesWritten.get();
+    }
+
+    public Duration lastFlushTime() {
+        return Duration.ofNanos(lastFlushNanos);
+    }
+
+    public Duration maxFlushTime() {
+        return Duration.ofNanos(maxFlushNanos);
+    }
+}
@@ -2,16 +2,18 @@ package dataaccess;
 
 import chess.AuthData;
 import chess.GameData;
+import chess.ReturnGameData;
 import chess.UserData;
 
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.TreeMap;
 
 public class MemoryDataAccess implements DataAccess {
     private final HashMap<String, UserData> users = new HashMap<>();
     private final HashMap<String, AuthData> authTokens = new HashMap<>();
-    private final HashMap<Integer, GameData> games = new HashMap<>();
+    private final TreeMap<Integer, GameData> games = new TreeMap<>();
 
     @Override
     public void clear() throws DataAccessException {
@@ -39,10 +41,12 @@ public class MemoryDataAccess implements DataAccess {
         if (games.isEmpty()) {
             gameID = 1;
         } else {
-            gameID = games.keySet().stream().max(Comparator.naturalOrder()).orElse(0) + 1;
+            gameID = games.lastKey() + 1;
         }
         try {
-            games.put(gameID, gameData);
+//            Store the assigned ID with the game, the same as the database does
+            games.put(gameID, new GameData(gameID, gameData.whiteUsername(), gameData.whiteAuthToken(),
+                    gameData.blackUsername(), gameData.blackAuthToken(), gameData.gameName(), gameData.game()));
         } catch (Exception e) {
             throw new DataAccessException(e.getMessage());
         }
@@ -51,6 +55,9 @@ public class MemoryDataAccess implements DataAccess {
 
     @Override
     public void createUser(UserData user) throws DataAccessException {
+        if (users.containsKey(user.username())) {
+            throw new DuplicateKeyException("Duplicate entry '" + user.username() + "' for key 'users.users_username'");
+        }
         try {
             users.put(user.username(), user);
         } catch (Exception e) {
@@ -76,6 +83,27 @@ public class MemoryDataAccess implements DataAccess {
         }
     }
 
+    @Override
+    public GamePage listGames(GameQuery query) throws DataAccessException {
+        try {
+            var page = new ArrayList<ReturnGameData>();
+//            Games are kept in ID order, so a page starts right at the cursor
+            for (var game : games.tailMap(query.after(), false).values()) {
+                var summary = new ReturnGameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName());
+                if (!query.matches(summary)) {
+                    continue;
+                }
+                if (page.size() == query.limit()) {
+                    return new GamePage(page, page.getLast().gameID());
+                }
+                page.add(summary);
+            }
+            return new GamePage(page, null);
+        } catch (Exception e) {
+            throw new DataAccessException(e.getMessage());
+        }
+    }
+
     @Override
     public void updateGame(int gameID, GameData gameData) throws DataAccessException {
         try {
@@ -0,0 +1,145 @@
+package dataaccess;
+
+import chess.*;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Times every call to another {@link DataAccess} and counts the ones that fail.
+ * <p>
+ * Each operation's histogram and error counter are looked up once here, so a call only pays for
+ * two clock reads and a couple of atomic increments.
+ */
+public class MeteredDataAccess implements DataAccess {
+
+    private record Operation(Histogram latency, Counter errors) {
+
+        static Operation of(MetricsRegistry registry, String name) {
+            return new Operation(registry.histogram("chess_db_call_seconds", "Time spent in each data access call", "op", name),
+                    registry.counter("chess_db_errors_total", "Data access calls that threw", "op", name));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T run() throws DataAccessException;
+    }
+
+    @FunctionalInterface
+    private interface VoidCall {
+        void run() throws DataAccessException;
+    }
+
+    private final DataAccess delegate;
+    private final Operation clear;
+    private final Operation createUser;
+    private final Operation getUser;
+    private final Operation createGame;
+    private final Operation getGame;
+    private final Operation listGames;
+    private final Operation listGamePage;
+    private final Operation updateGame;
+    private final Operation updateGames;
+    private final Operation createAuth;
+    private final Operation getAuth;
+    private final Operation deleteAuth;
+
+    public MeteredDataAccess(DataAccess delegate, MetricsRegistry registry) {
+        this.delegate = delegate;
+        clear = Operation.of(registry, "clear");
+        createUser = Operation.of(registry, "createUser");
+        getUser = Operation.of(registry, "getUser");
+        createGame = Operation.of(registry, "createGame");
+        getGame = Operation.of(registry, "getGame");
+        listGames = Operation.of(registry, "listGames");
+        listGamePage = Operation.of(registry, "listGamePage");
+        updateGame = Operation.of(registry, "updateGame");
+        updateGames = Operation.of(registry, "updateGames");
+        createAuth = Operation.of(registry, "createAuth");
+        getAuth = Operation.of(registry, "getAuth");
+        deleteAuth = Operation.of(registry, "deleteAuth");
+    }
+
+    private static <T> T time(Operation operation, Call<T> call) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return call.run();
+        } catch (DataAccessException | RuntimeException e) {
+            operation.errors().increment();
+            throw e;
+        } finally {
+            operation.latency().recordSince(start);
+        }
+    }
+
+    private static void run(Operation operation, VoidCall call) throws DataAccessException {
+        time(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        run(clear, delegate::clear);
+    }
+
+    @Override
+    public void createUser(UserData user) throws DataAccessException {
+        run(createUser, () -> delegate.createUser(user));
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        return time(getUser, () -> delegate.getUser(username));
+    }
+
+    @Override
+    public int createGame(GameData gameData) throws DataAccessException {
+        return time(createGame, () -> delegate.createGame(gameData));
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        return time(getGame, () -> delegate.getGame(gameID));
+    }
+
+    @Override
+    public HashSet<GameData> listGames() throws DataAccessException {
+        return time(listGames, delegate::listGames);
+    }
+
+    @Override
+    public GamePage listGames(GameQuery query) throws DataAccessException {
+        return time(listGamePage, () -> delegate.listGames(query));
+    }
+
+    @Override
+    public void updateGame(int gameID, GameData gameData) throws DataAccessException {
+        run(updateGame, () -> delegate.updateGame(gameID, gameData));
+    }
+
+    @Override
+    public void updateGames(Map<Integer, GameData> games) throws DataAccessException {
+        run(updateGames, () -> delegate.updateGames(games));
+    }
+
+    @Override
+    public void createAuth(AuthData authData) throws DataAccessException {
+        run(createAuth, () -> delegate.createAuth(authData));
+    }
+
+    @Override
+    public HashSet<AuthData> getAuth(String authToken) throws DataAccessException {
+        return time(getAuth, () -> delegate.getAuth(authToken));
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        run(deleteAuth, () -> delegate.deleteAuth(authToken));
+    }
+}
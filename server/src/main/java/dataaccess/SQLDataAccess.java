@@ -1,35 +1,29 @@
 package dataaccess;
 
-import chess.AuthData;
-import chess.ChessGame;
-import chess.GameData;
-import chess.UserData;
-import com.google.gson.Gson;
+import chess.*;
+import websocket.JsonCodec;
 
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
-import java.util.HashSet;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SQLDataAccess implements DataAccess {
+
+    /**
+     * How many moves may be logged after a game's snapshot before a new snapshot is written
+     */
+    private final int snapshotInterval = Integer.getInteger("chess.db.snapshotPlies", 20);
+
     public SQLDataAccess() throws DataAccessException {
         DatabaseManager.createDatabase();
         setup();
     }
 
-    private void executeStatement(String statement, String[] injections) throws DataAccessException {
-        try (var conn = DatabaseManager.getConnection()) {
-            try (var preparedStatement = conn.prepareStatement(statement)) {
-                for (int i = 1; i < (injections.length + 1); i++) {
-                    preparedStatement.setString(i, injections[i - 1]);
-                }
-                preparedStatement.execute();
-            }
-        } catch (SQLException e) {
-            throw new DataAccessException(e.getMessage());
-        }
-    }
-
     private void executeStatement(String statement) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
             try (var preparedStatement = conn.prepareStatement(statement)) {
@@ -43,232 +37,464 @@ public class SQLDataAccess implements DataAccess {
     private void setup() throws DataAccessException {
 //        Change the current database to the chess database
         DatabaseManager.createDatabase();
-//        Create the tables with the necessary components
-        var makeUserTable = """
-                CREATE TABLE IF NOT EXISTS users (
-                    userID INT AUTO_INCREMENT PRIMARY KEY NOT NULL,
-                    username VARCHAR(50) NOT NULL,
-                    password VARCHAR(255) NOT NULL,
-                    email VARCHAR(255) NOT NULL
-                )""";
-        var makeGameTable = """
-                CREATE TABLE IF NOT EXISTS games (
-                    gameID INT AUTO_INCREMENT PRIMARY KEY NOT NULL,
-                    gameName varchar(255) NOT NULL,
-                    whiteUser varchar(50) DEFAULT NULL,
-                    whiteAuthToken VARCHAR(255) DEFAULT NULL,
-                    blackUser varchar(50) DEFAULT NULL,
-                    blackAuthToken VARCHAR(255) DEFAULT NULL,
-                    gameString LONGTEXT NOT NULL
-                )""";
-        var makeAuthTable = """
-                CREATE TABLE IF NOT EXISTS authData (
-                	authToken VARCHAR(255) PRIMARY KEY NOT NULL,
-                	username VARCHAR(50) NOT NULL
-                )""";
-
-        executeStatement(makeUserTable);
-        executeStatement(makeGameTable);
-        executeStatement(makeAuthTable);
+//        Create the tables and bring them up to the current schema
+        SchemaMigrator.migrate(SchemaMigrator.MIGRATIONS);
     }
 
     @Override
     public void clear() throws DataAccessException {
-        executeStatement("TRUNCATE games");
-        executeStatement("TRUNCATE users");
-        executeStatement("TRUNCATE authData");
+        var event = SqlEvent.start("clear", "TRUNCATE");
+        try {
+            executeStatement("TRUNCATE games");
+            executeStatement("TRUNCATE game_moves");
+            executeStatement("TRUNCATE users");
+            executeStatement("TRUNCATE authData");
+        } catch (DataAccessException e) {
+            event.failed = true;
+            throw e;
+        } finally {
+            event.commit();
+        }
+        saved.clear();
     }
 
     @Override
     public void createUser(UserData user) throws DataAccessException {
-        var newUser = "INSERT INTO users (username, password, email) VALUES (?, ?, ?)";
-        executeStatement(newUser, new String[]{user.username(), user.password(), user.email()});
+        var event = SqlEvent.start("createUser", "INSERT");
+        try (var conn = DatabaseManager.getConnection()) {
+            try (var preparedStatement = conn.prepareStatement("INSERT INTO users (username, password, email) VALUES (?, ?, ?)")) {
+                preparedStatement.setString(1, user.username());
+                preparedStatement.setString(2, user.password());
+                preparedStatement.setString(3, user.email());
+                event.rows = preparedStatement.executeUpdate();
+            }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            event.failed = true;
+//            The unique index on username is what actually keeps two accounts from sharing a name
+            throw new DuplicateKeyException(e.getMessage(), e);
+        } catch (SQLException e) {
+            event.failed = true;
+            throw new DataAccessException(e.getMessage());
+        } finally {
+            event.commit();
+        }
     }
 
     @Override
     public UserData getUser(String username) throws DataAccessException {
+        var event = SqlEvent.start("getUser", "SELECT");
         try (var conn = DatabaseManager.getConnection()) {
-            try (var preparedStatement = conn.prepareStatement("SELECT * FROM users WHERE username=?;")) {
+            try (var preparedStatement = conn.prepareStatement("SELECT password, email FROM users WHERE username=?")) {
                 preparedStatement.setString(1, username);
                 var rs = preparedStatement.executeQuery();
                 if (rs.next()) {
-                    String password = rs.getString(3);
-                    String email = rs.getString(4);
+                    event.rows = 1;
+                    String password = rs.getString("password");
+                    String email = rs.getString("email");
                     return new UserData(username, password, email);
                 }
                 return null;
             }
         } catch (SQLException e) {
+            event.failed = true;
             throw new DataAccessException(e.getMessage());
+        } finally {
+            event.commit();
+        }
+    }
+
+    private static final String GAME_COLUMNS =
+            "gameID, gameName, whiteUser, whiteAuthToken, blackUser, blackAuthToken, gameString, snapshot, snapshotPly";
+
+    /**
+     * What was last saved for a game, so an update only has to write what changed
+     *
+     * @param plies       how many moves the game had
+     * @param logged      how many moves the move log holds, or -1 if that hasn't been read yet
+     * @param snapshotPly how many moves the game's snapshot includes
+     */
+    private record Saved(int gameID, int plies, int logged, int snapshotPly, boolean resigned, String gameName,
+                         String whiteUser, String whiteAuthToken, String blackUser, String blackAuthToken) {
+
+        static Saved of(GameData gameData, int logged, int snapshotPly) {
+            return new Saved(gameData.gameID(), gameData.game().getMoveHistory().size(), logged, snapshotPly,
+                    gameData.game().isResigned(), gameData.gameName(), gameData.whiteUsername(),
+                    gameData.whiteAuthToken(), gameData.blackUsername(), gameData.blackAuthToken());
+        }
+
+        boolean sameSeats(GameData gameData) {
+            return Objects.equals(gameName, gameData.gameName())
+                    && Objects.equals(whiteUser, gameData.whiteUsername())
+                    && Objects.equals(whiteAuthToken, gameData.whiteAuthToken())
+                    && Objects.equals(blackUser, gameData.blackUsername())
+                    && Objects.equals(blackAuthToken, gameData.blackAuthToken());
         }
     }
 
+    private final Map<Integer, Saved> saved = new ConcurrentHashMap<>();
+
     @Override
     public int createGame(GameData gameData) throws DataAccessException {
-        var serializer = new Gson();
-        var gameString = serializer.toJson(gameData.game());
-        var gameName = gameData.gameName();
-        var whiteUser = gameData.whiteUsername();
-        var whiteAuthToken = gameData.whiteAuthToken();
-        var blackUser = gameData.blackUsername();
-        var blackAuthToken = gameData.blackAuthToken();
-
-        var gameID = 0;
+        var game = gameData.game();
+        String whiteUser = blankToNull(gameData.whiteUsername());
+        String blackUser = blankToNull(gameData.blackUsername());
 
+        var event = SqlEvent.start("createGame", "INSERT");
         try (var conn = DatabaseManager.getConnection()) {
-            try (var preparedStatement = conn.prepareStatement(
-                    "INSERT INTO games (gameName, gameString) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
-                preparedStatement.setString(1, gameName);
-                preparedStatement.setString(2, gameString);
-                preparedStatement.execute();
+            int gameID;
+            try (var preparedStatement = conn.prepareStatement("INSERT INTO games (gameName, whiteUser, whiteAuthToken, "
+                    + "blackUser, blackAuthToken, gameString, snapshot, snapshotPly) VALUES (?, ?, ?, ?, ?, '', ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                preparedStatement.setString(1, gameData.gameName());
+                preparedStatement.setString(2, whiteUser);
+                preparedStatement.setString(3, whiteUser == null ? null : gameData.whiteAuthToken());
+                preparedStatement.setString(4, blackUser);
+                preparedStatement.setString(5, blackUser == null ? null : gameData.blackAuthToken());
+                preparedStatement.setBytes(6, snapshot(game));
+                preparedStatement.setInt(7, game.getMoveHistory().size());
+                event.rows = preparedStatement.executeUpdate();
 
                 ResultSet rs = preparedStatement.getGeneratedKeys();
-                if (rs.next()) {
-                    gameID = rs.getInt(1);
-                }
+                gameID = rs.next() ? rs.getInt(1) : 0;
             }
-            if (whiteUser != null && !whiteUser.isBlank()) {
-                try (var preparedStatement = conn.prepareStatement("UPDATE games SET whiteUser = ?, whiteAuthToken = ? WHERE gameID = ?;")) {
-                    preparedStatement.setString(1, whiteUser);
-                    preparedStatement.setString(2, whiteAuthToken);
-                    preparedStatement.setInt(3, gameID);
-                    preparedStatement.execute();
+            saved.put(gameID, Saved.of(new GameData(gameID, whiteUser, whiteUser == null ? null : gameData.whiteAuthToken(),
+                    blackUser, blackUser == null ? null : gameData.blackAuthToken(), gameData.gameName(), game),
+                    0, game.getMoveHistory().size()));
+            return gameID;
+        } catch (SQLException e) {
+            event.failed = true;
+            throw new DataAccessException(e.getMessage());
+        } finally {
+            event.commit();
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    /**
+     * Loads a game from its latest snapshot, then replays the moves logged since
+     */
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        var event = SqlEvent.start("getGame", "SELECT");
+        try (var conn = DatabaseManager.getConnection()) {
+            GameData gameData;
+            try (var preparedStatement = conn.prepareStatement("SELECT " + GAME_COLUMNS + " FROM games WHERE gameID=?")) {
+                preparedStatement.setInt(1, gameID);
+                var rs = preparedStatement.executeQuery();
+                if (!rs.next()) {
+                    return null;
                 }
+                gameData = readGame(rs);
+                event.rows = 1;
             }
-            if (blackUser != null && !blackUser.isBlank()) {
-                try (var preparedStatement = conn.prepareStatement("UPDATE games SET blackUser = ?, blackAuthToken = ? WHERE gameID = ?;")) {
-                    preparedStatement.setString(1, blackUser);
-                    preparedStatement.setString(2, blackAuthToken);
-                    preparedStatement.setInt(3, gameID);
-                    preparedStatement.execute();
+            int snapshotPly = gameData.game().getMoveHistory().size();
+            int logged = -1;
+            try (var preparedStatement = conn.prepareStatement(
+                    "SELECT ply, move FROM game_moves WHERE gameID=? AND ply>=? ORDER BY ply")) {
+                preparedStatement.setInt(1, gameID);
+                preparedStatement.setInt(2, snapshotPly);
+                var rs = preparedStatement.executeQuery();
+                while (rs.next()) {
+                    replay(gameData, rs.getInt("ply"), rs.getInt("move"));
+                    logged = rs.getInt("ply") + 1;
+                    event.rows++;
                 }
             }
+            saved.put(gameID, Saved.of(gameData, logged, snapshotPly));
+            return gameData;
         } catch (SQLException e) {
+            event.failed = true;
             throw new DataAccessException(e.getMessage());
+        } finally {
+            event.commit();
         }
-        return gameID;
     }
 
     @Override
-    public GameData getGame(int gameID) throws DataAccessException {
+    public HashSet<GameData> listGames() throws DataAccessException {
+        var games = new HashMap<Integer, GameData>();
+        var snapshotPlies = new HashMap<Integer, Integer>();
+        var logged = new HashMap<Integer, Integer>();
+
+        var event = SqlEvent.start("listGames", "SELECT");
         try (var conn = DatabaseManager.getConnection()) {
-            try (var preparedStatement = conn.prepareStatement("SELECT * FROM games WHERE gameID=?")) {
-                preparedStatement.setInt(1, gameID);
+            try (var preparedStatement = conn.prepareStatement("SELECT " + GAME_COLUMNS + " FROM games")) {
                 var rs = preparedStatement.executeQuery();
-                if (rs.next()) {
-                    String gameName = rs.getString(2);
-                    String whiteUser = rs.getString(3);
-                    String whiteAuthToken = rs.getString(4);
-                    String blackUser = rs.getString(5);
-                    String blackAuthToken = rs.getString(6);
-                    String gameString = rs.getString(7);
-                    ChessGame game = new Gson().fromJson(gameString, ChessGame.class);
-
-                    return new GameData(gameID, whiteUser, whiteAuthToken, blackUser, blackAuthToken, gameName, game);
+                while (rs.next()) {
+                    var gameData = readGame(rs);
+                    games.put(gameData.gameID(), gameData);
+                    snapshotPlies.put(gameData.gameID(), gameData.game().getMoveHistory().size());
+                    event.rows++;
+                }
+            }
+//            The moves every game has had since its snapshot, in one query
+            try (var preparedStatement = conn.prepareStatement("SELECT m.gameID, m.ply, m.move FROM game_moves m "
+                    + "JOIN games g ON m.gameID = g.gameID AND m.ply >= g.snapshotPly ORDER BY m.gameID, m.ply")) {
+                var rs = preparedStatement.executeQuery();
+                while (rs.next()) {
+                    var gameData = games.get(rs.getInt("gameID"));
+                    if (gameData != null) {
+                        replay(gameData, rs.getInt("ply"), rs.getInt("move"));
+                        logged.put(gameData.gameID(), rs.getInt("ply") + 1);
+                    }
+                    event.rows++;
                 }
-                return null;
             }
         } catch (SQLException e) {
+            event.failed = true;
             throw new DataAccessException(e.getMessage());
+        } finally {
+            event.commit();
         }
+        for (var gameData : games.values()) {
+            saved.put(gameData.gameID(), Saved.of(gameData, logged.getOrDefault(gameData.gameID(), -1),
+                    snapshotPlies.get(gameData.gameID())));
+        }
+        return new HashSet<>(games.values());
     }
 
+    /**
+     * Reads just the listing columns for one page, so listing never loads a board
+     */
     @Override
-    public HashSet<GameData> listGames() throws DataAccessException {
-        var games = new HashSet<GameData>();
+    public GamePage listGames(GameQuery query) throws DataAccessException {
+        var sql = new StringBuilder("SELECT gameID, gameName, whiteUser, blackUser FROM games WHERE gameID > ?");
+        if (query.openOnly()) {
+            sql.append(" AND (whiteUser IS NULL OR blackUser IS NULL)");
+        }
+        if (query.namePrefix() != null) {
+            sql.append(" AND gameName LIKE ? ESCAPE '!'");
+        }
+//        Fetch one extra row to find out whether there is another page
+        sql.append(" ORDER BY gameID LIMIT ?");
 
+        var event = SqlEvent.start("listGamePage", "SELECT");
         try (var conn = DatabaseManager.getConnection()) {
-            try (var preparedStatement = conn.prepareStatement("SELECT * FROM games")) {
+            try (var preparedStatement = conn.prepareStatement(sql.toString())) {
+                int parameter = 1;
+                preparedStatement.setInt(parameter++, query.after());
+                if (query.namePrefix() != null) {
+                    preparedStatement.setString(parameter++, query.namePrefix().replaceAll("[!%_]", "!$0") + "%");
+                }
+                preparedStatement.setLong(parameter, (long) query.limit() + 1);
                 var rs = preparedStatement.executeQuery();
+
+                var games = new ArrayList<ReturnGameData>();
                 while (rs.next()) {
-                    int gameID = rs.getInt(1);
-                    String gameName = rs.getString(2);
-                    String whiteUser = rs.getString(3);
-                    String whiteAuthToken = rs.getString(4);
-                    String blackUser = rs.getString(5);
-                    String blackAuthToken = rs.getString(6);
-                    String gameString = rs.getString(7);
-                    ChessGame game = new Gson().fromJson(gameString, ChessGame.class);
-
-                    games.add(new GameData(gameID, whiteUser, whiteAuthToken, blackUser, blackAuthToken, gameName, game));
+                    event.rows++;
+                    if (games.size() == query.limit()) {
+                        return new GamePage(games, games.getLast().gameID());
+                    }
+                    games.add(new ReturnGameData(rs.getInt("gameID"), rs.getString("whiteUser"),
+                            rs.getString("blackUser"), rs.getString("gameName")));
                 }
-                return games;
+                return new GamePage(games, null);
             }
         } catch (SQLException e) {
+            event.failed = true;
             throw new DataAccessException(e.getMessage());
+        } finally {
+            event.commit();
+        }
+    }
+
+    private static GameData readGame(ResultSet rs) throws SQLException {
+        var snapshot = rs.getBytes("snapshot");
+//        Games saved before the move log existed only have their JSON
+        ChessGame game = snapshot != null ? CompactGame.read(ByteBuffer.wrap(snapshot))
+                : JsonCodec.GSON.fromJson(rs.getString("gameString"), ChessGame.class);
+        return new GameData(rs.getInt("gameID"), rs.getString("whiteUser"), rs.getString("whiteAuthToken"),
+                rs.getString("blackUser"), rs.getString("blackAuthToken"), rs.getString("gameName"), game);
+    }
+
+    private static void replay(GameData gameData, int ply, int move) throws SQLException {
+        var game = gameData.game();
+//        Skip moves the game already has, which a game loaded from its old JSON can
+        if (ply != game.getMoveHistory().size()) {
+            return;
         }
+        try {
+            game.makeMove(ChessMove.unpack(move));
+        } catch (InvalidMoveException e) {
+            throw new SQLException("move " + ply + " of game " + gameData.gameID() + " can't be replayed: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] snapshot(ChessGame game) {
+        var buffer = ByteBuffer.allocate(CompactGame.size(game));
+        CompactGame.write(game, buffer);
+        return buffer.array();
     }
 
+    private static final String UPDATE_SEATS = "UPDATE games SET gameID=?, gameName=?, whiteUser=?, whiteAuthToken=?, "
+            + "blackUser=?, blackAuthToken=? WHERE gameID=?";
+    private static final String UPDATE_SNAPSHOT = "UPDATE games SET gameID=?, gameName=?, whiteUser=?, whiteAuthToken=?, "
+            + "blackUser=?, blackAuthToken=?, gameString='', snapshot=?, snapshotPly=? WHERE gameID=?";
+    private static final String APPEND_MOVE = "INSERT INTO game_moves (gameID, ply, move) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE move=VALUES(move)";
+
     @Override
     public void updateGame(int gameID, GameData gameData) throws DataAccessException {
-        String statement = "UPDATE games SET gameID=?, gameName=?, whiteUser=?, whiteAuthToken = ?, " +
-                "blackUser=?, blackAuthToken = ?, gameString=? WHERE gameID = ?;";
+        updateGames(Map.of(gameID, gameData));
+    }
+
+    /**
+     * Saves all the games in a single transaction, so either all of them are saved or none are.
+     * <p>
+     * New moves are appended to the {@code game_moves} log, so saving a move is one small INSERT.
+     * The game's row is only rewritten when its seats change, and its snapshot every
+     * {@code snapshotInterval} moves or when the game changed in some way other than a new move.
+     * Only moves the log doesn't have yet are appended, whichever of those happened; the first save
+     * of a game read without any logged moves looks up how far its log goes.
+     */
+    @Override
+    public void updateGames(Map<Integer, GameData> games) throws DataAccessException {
+        if (games.isEmpty()) {
+            return;
+        }
+        var written = new ArrayList<Saved>();
+        var event = SqlEvent.start("updateGames", "UPDATE");
         try (var conn = DatabaseManager.getConnection()) {
-            try (var preparedStatement = conn.prepareStatement(statement)) {
-                int newGameID = gameData.gameID();
-                String newGameName = gameData.gameName();
-                String newWhiteUser = gameData.whiteUsername();
-                String newWhiteAuthToken = gameData.whiteAuthToken();
-                String newBlackUser = gameData.blackUsername();
-                String newBlackAuthToken = gameData.blackAuthToken();
-                String newGame = new Gson().toJson(gameData.game());
-
-                preparedStatement.setInt(1, newGameID);
-                preparedStatement.setString(2, newGameName);
-                preparedStatement.setString(3, newWhiteUser);
-                preparedStatement.setString(4, newWhiteAuthToken);
-                preparedStatement.setString(5, newBlackUser);
-                preparedStatement.setString(6, newBlackAuthToken);
-                preparedStatement.setString(7, newGame);
-                preparedStatement.setInt(8, gameID);
+            conn.setAutoCommit(false);
+            try (var seats = conn.prepareStatement(UPDATE_SEATS);
+                 var snapshots = conn.prepareStatement(UPDATE_SNAPSHOT);
+                 var truncate = conn.prepareStatement("DELETE FROM game_moves WHERE gameID=? AND ply>=?");
+                 var append = conn.prepareStatement(APPEND_MOVE);
+                 var maxPly = conn.prepareStatement("SELECT COALESCE(MAX(ply) + 1, 0) FROM game_moves WHERE gameID=?")) {
+                for (var entry : games.entrySet()) {
+                    int gameID = entry.getKey();
+                    var gameData = entry.getValue();
+                    var history = gameData.game().getMoveHistory();
+                    var previous = saved.get(gameID);
+                    int logged = previous != null && previous.gameID() == gameData.gameID() ? previous.logged() : -1;
+                    if (logged < 0) {
+                        logged = loggedPlies(maxPly, gameData.gameID());
+                    }
+//                    Anything the log can't express gets a snapshot: a different ID, moves taken back, a
+//                    resignation, or a change with no new move at all
+                    if (previous != null && (previous.gameID() != gameData.gameID() || history.size() <= previous.plies()
+                            || gameData.game().isResigned() != previous.resigned())) {
+                        previous = null;
+                    }
 
-                preparedStatement.execute();
+                    boolean snapshot = previous == null || history.size() - previous.snapshotPly() >= snapshotInterval;
+                    if (snapshot) {
+                        bindSeats(snapshots, gameData);
+                        snapshots.setBytes(7, snapshot(gameData.game()));
+                        snapshots.setInt(8, history.size());
+                        snapshots.setInt(9, gameID);
+                        snapshots.addBatch();
+                        truncate.setInt(1, gameID);
+                        truncate.setInt(2, gameID == gameData.gameID() ? history.size() : 0);
+                        truncate.addBatch();
+                    } else if (!previous.sameSeats(gameData)) {
+                        bindSeats(seats, gameData);
+                        seats.setInt(7, gameID);
+                        seats.addBatch();
+                    }
+
+//                    Moves taken back are deleted by the truncate above, so the log never runs ahead of the game
+                    for (int ply = Math.min(logged, history.size()); ply < history.size(); ply++) {
+                        append.setInt(1, gameData.gameID());
+                        append.setInt(2, ply);
+                        append.setInt(3, history.get(ply).pack());
+                        append.addBatch();
+                    }
+                    written.add(Saved.of(gameData, history.size(), snapshot ? history.size() : previous.snapshotPly()));
+                }
+                event.rows = SqlEvent.rows(seats.executeBatch()) + SqlEvent.rows(snapshots.executeBatch())
+                        + SqlEvent.rows(truncate.executeBatch()) + SqlEvent.rows(append.executeBatch());
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
         } catch (SQLException e) {
+            event.failed = true;
             throw new DataAccessException(e.getMessage());
+        } finally {
+            event.commit();
+        }
+        saved.keySet().removeAll(games.keySet());
+        for (var game : written) {
+            saved.put(game.gameID(), game);
         }
     }
 
+    /**
+     * @return how many moves a game's log holds, counting from the first
+     */
+    private static int loggedPlies(PreparedStatement maxPly, int gameID) throws SQLException {
+        maxPly.setInt(1, gameID);
+        var rs = maxPly.executeQuery();
+        return rs.next() ? rs.getInt(1) : 0;
+    }
+
+    private static void bindSeats(PreparedStatement preparedStatement, GameData gameData) throws SQLException {
+        preparedStatement.setInt(1, gameData.gameID());
+        preparedStatement.setString(2, gameData.gameName());
+        preparedStatement.setString(3, gameData.whiteUsername());
+        preparedStatement.setString(4, gameData.whiteAuthToken());
+        preparedStatement.setString(5, gameData.blackUsername());
+        preparedStatement.setString(6, gameData.blackAuthToken());
+    }
+
     @Override
     public void createAuth(AuthData authData) throws DataAccessException {
+        var event = SqlEvent.start("createAuth", "INSERT");
         try (var conn = DatabaseManager.getConnection()) {
             try (var preparedStatement = conn.prepareStatement("INSERT INTO authData (authToken, username) VALUES (?, ?)")) {
                 preparedStatement.setString(1, authData.authToken());
                 preparedStatement.setString(2, authData.username());
-                preparedStatement.execute();
+                event.rows = preparedStatement.executeUpdate();
             }
         } catch (SQLException e) {
+            event.failed = true;
             throw new DataAccessException(e.getMessage());
+        } finally {
+            event.commit();
         }
     }
 
     @Override
     public HashSet<AuthData> getAuth(String authToken) throws DataAccessException {
+        var event = SqlEvent.start("getAuth", "SELECT");
         try (var conn = DatabaseManager.getConnection()) {
-            try (var preparedStatement = conn.prepareStatement("SELECT * FROM authData WHERE authToken=?")) {
+            try (var preparedStatement = conn.prepareStatement("SELECT username FROM authData WHERE authToken=?")) {
                 preparedStatement.setString(1, authToken);
                 var rs = preparedStatement.executeQuery();
                 var authDatas = new HashSet<AuthData>();
                 while (rs.next()) {
-                    String username = rs.getString(2);
+                    String username = rs.getString("username");
                     authDatas.add(new AuthData(authToken, username));
                 }
+                event.rows = authDatas.size();
                 return authDatas;
             }
         } catch (SQLException e) {
+            event.failed = true;
             throw new DataAccessException(e.getMessage());
+        } finally {
+            event.commit();
         }
     }
 
     @Override
     public void deleteAuth(String authToken) throws DataAccessException {
+        var event = SqlEvent.start("deleteAuth", "DELETE");
         try (var conn = DatabaseManager.getConnection()) {
             try (var preparedStatement = conn.prepareStatement("DELETE FROM authData WHERE authToken=?")) {
                 preparedStatement.setString(1, authToken);
-                preparedStatement.execute();
+                event.rows = preparedStatement.executeUpdate();
             }
         } catch (SQLException e) {
+            event.failed = true;
             throw new DataAccessException(e.getMessage());
+        } finally {
+            event.commit();
         }
     }
 }
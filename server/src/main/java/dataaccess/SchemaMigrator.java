@@ -0,0 +1,162 @@
+package dataaccess;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date at startup.
+ * <p>
+ * Each migration has a version number, and the {@code schema_version} table records which ones
+ * have run, so every migration runs once per database in version order. A MySQL named lock keeps
+ * two servers starting at once from migrating together. MySQL commits schema changes as it goes,
+ * so a migration that failed partway is simply run again; statements that add a column or index
+ * which already exists are skipped. A query among a migration's statements is a check: if it
+ * returns any rows, the migration stops there and the rows are reported, so data that needs a
+ * person to look at it is never changed or thrown away.
+ */
+final class SchemaMigrator {
+
+    record Migration(int version, String description, String... statements) {
+    }
+
+    private static final int DUPLICATE_COLUMN = 1060;
+    private static final int DUPLICATE_INDEX = 1061;
+    private static final String LOCK_NAME = "chess_schema_migration";
+
+    static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "create tables", """
+                    CREATE TABLE IF NOT EXISTS users (
+                        userID INT AUTO_INCREMENT PRIMARY KEY NOT NULL,
+                        username VARCHAR(50) NOT NULL,
+                        password VARCHAR(255) NOT NULL,
+                        email VARCHAR(255) NOT NULL
+                    )""", """
+                    CREATE TABLE IF NOT EXISTS games (
+                        gameID INT AUTO_INCREMENT PRIMARY KEY NOT NULL,
+                        gameName varchar(255) NOT NULL,
+                        whiteUser varchar(50) DEFAULT NULL,
+                        whiteAuthToken VARCHAR(255) DEFAULT NULL,
+                        blackUser varchar(50) DEFAULT NULL,
+                        blackAuthToken VARCHAR(255) DEFAULT NULL,
+                        gameString LONGTEXT NOT NULL
+                    )""", """
+                    CREATE TABLE IF NOT EXISTS authData (
+                    	authToken VARCHAR(255) PRIMARY KEY NOT NULL,
+                    	username VARCHAR(50) NOT NULL
+                    )"""),
+            new Migration(2, "make usernames unique",
+//                    Usernames used to be unique only by convention, and accounts sharing one have to be renamed by hand
+                    "SELECT username FROM users GROUP BY username HAVING COUNT(*) > 1",
+                    "ALTER TABLE users ADD UNIQUE INDEX users_username (username)"),
+            new Migration(3, "log moves and snapshot games", """
+                    CREATE TABLE IF NOT EXISTS game_moves (
+                        gameID INT NOT NULL,
+                        ply INT NOT NULL,
+                        move SMALLINT UNSIGNED NOT NULL,
+                        PRIMARY KEY (gameID, ply)
+                    )""",
+//                    Existing games keep their JSON in gameString until they are next saved
+                    "ALTER TABLE games ADD COLUMN snapshot BLOB DEFAULT NULL",
+                    "ALTER TABLE games ADD COLUMN snapshotPly INT NOT NULL DEFAULT 0"),
+//            These were once part of migration 2, so databases that ran it before they were taken out already have them
+            new Migration(4, "index auth usernames and seat tokens",
+                    "ALTER TABLE authData ADD INDEX authData_username (username)",
+                    "ALTER TABLE games ADD INDEX games_whiteAuthToken (whiteAuthToken)",
+                    "ALTER TABLE games ADD INDEX games_blackAuthToken (blackAuthToken)")
+    );
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Runs every migration the database hasn't had yet
+     *
+     * @return the schema version the database is now at
+     */
+    static int migrate(List<Migration> migrations) throws DataAccessException {
+        try (var conn = DatabaseManager.getConnection()) {
+            lock(conn);
+            try {
+                execute(conn, """
+                        CREATE TABLE IF NOT EXISTS schema_version (
+                            version INT PRIMARY KEY NOT NULL,
+                            description VARCHAR(255) NOT NULL,
+                            appliedAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+                        )""");
+                int current = currentVersion(conn);
+                for (var migration : migrations) {
+                    if (migration.version() <= current) {
+                        continue;
+                    }
+                    for (var statement : migration.statements()) {
+                        try {
+                            var blockers = execute(conn, statement);
+                            if (!blockers.isEmpty()) {
+                                throw new SQLException("migration " + migration.version() + " (" + migration.description()
+                                        + ") is blocked by " + String.join(", ", blockers));
+                            }
+                        } catch (SQLException e) {
+                            if (e.getErrorCode() != DUPLICATE_COLUMN && e.getErrorCode() != DUPLICATE_INDEX) {
+                                throw e;
+                            }
+                        }
+                    }
+                    try (var preparedStatement = conn.prepareStatement(
+                            "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                        preparedStatement.setInt(1, migration.version());
+                        preparedStatement.setString(2, migration.description());
+                        preparedStatement.execute();
+                    }
+                    current = migration.version();
+                }
+                return current;
+            } finally {
+                unlock(conn);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessException("schema migration failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static int currentVersion(Connection conn) throws SQLException {
+        try (var preparedStatement = conn.prepareStatement("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            var rs = preparedStatement.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void lock(Connection conn) throws SQLException {
+        try (var preparedStatement = conn.prepareStatement("SELECT GET_LOCK(?, 30)")) {
+            preparedStatement.setString(1, LOCK_NAME);
+            var rs = preparedStatement.executeQuery();
+            if (!rs.next() || rs.getInt(1) != 1) {
+                throw new SQLException("timed out waiting for another server to finish migrating");
+            }
+        }
+    }
+
+    private static void unlock(Connection conn) throws SQLException {
+        try (var preparedStatement = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            preparedStatement.setString(1, LOCK_NAME);
+            preparedStatement.execute();
+        }
+    }
+
+    /**
+     * @return the first column of every row the statement returned, if it was a query
+     */
+    private static List<String> execute(Connection conn, String statement) throws SQLException {
+        var rows = new ArrayList<String>();
+        try (var preparedStatement = conn.prepareStatement(statement)) {
+            if (preparedStatement.execute()) {
+                var rs = preparedStatement.getResultSet();
+                while (rs.next()) {
+                    rows.add(rs.getString(1));
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,56 @@
+package dataaccess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for one {@link SQLDataAccess} call, from borrowing a connection to
+ * reading the last row. Off unless a recording turns it on, such as with the server's
+ * {@code chess.jfc} profile.
+ */
+@Name("chess.Sql")
+@Label("SQL Call")
+@Category({"Chess", "Persistence"})
+@Description("A SQLDataAccess call and the rows it read or wrote")
+@Enabled(false)
+@StackTrace(false)
+final class SqlEvent extends Event {
+
+    @Label("Operation")
+    @Description("The DataAccess method")
+    String operation;
+
+    @Label("Statement Type")
+    String statementType;
+
+    @Label("Rows")
+    @Description("Rows read, or rows written for statements that change the database")
+    long rows;
+
+    @Label("Failed")
+    boolean failed;
+
+    static SqlEvent start(String operation, String statementType) {
+        var event = new SqlEvent();
+        event.operation = operation;
+        event.statementType = statementType;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Counts the rows a batch changed. Drivers that don't know a count report a negative one.
+     */
+    static long rows(int[] counts) {
+        long rows = 0;
+        for (int count : counts) {
+            rows += Math.max(count, 0);
+        }
+        return rows;
+    }
+}
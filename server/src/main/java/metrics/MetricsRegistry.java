@@ -0,0 +1,156 @@
+package metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Every metric the server keeps, by name and labels, written out in the Prometheus text format.
+ * <p>
+ * Looking a metric up takes a map lookup, so hot paths should look theirs up once and keep it.
+ * Counters and histograms are created on first use; a component that keeps its own can register
+ * it instead, or register a function that reads a count it already keeps. Histograms are written as summaries in seconds, with the 50th, 90th, 99th and 99.9th
+ * percentiles, and a separate {@code _max} gauge.
+ */
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private enum Type {
+        COUNTER,
+        GAUGE,
+        SUMMARY
+    }
+
+    private record Family(Type type, String help, Map<String, Object> series) {
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param labels alternating label names and values
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).series().computeIfAbsent(labelText(labels), key -> new Counter());
+    }
+
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, Type.SUMMARY).series().computeIfAbsent(labelText(labels), key -> new Histogram());
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).series().put(labelText(labels), value);
+    }
+
+    /**
+     * Adds a histogram that another component keeps up to date
+     */
+    public void register(String name, String help, Histogram histogram, String... labels) {
+        family(name, help, Type.SUMMARY).series().put(labelText(labels), histogram);
+    }
+
+    /**
+     * Adds a counter that another component keeps up to date
+     */
+    public void register(String name, String help, Counter counter, String... labels) {
+        family(name, help, Type.COUNTER).series().put(labelText(labels), counter);
+    }
+
+    /**
+     * Adds a counter read from a count another component keeps, which must only go up
+     */
+    public void counter(String name, String help, LongSupplier count, String... labels) {
+        family(name, help, Type.COUNTER).series().put(labelText(labels), count);
+    }
+
+    private Family family(String name, String help, Type type) {
+        var family = families.computeIfAbsent(name, key -> new Family(type, help, new ConcurrentSkipListMap<>()));
+        if (family.type() != type) {
+            throw new IllegalArgumentException(name + " is already a " + family.type().name().toLowerCase(Locale.ROOT));
+        }
+        return family;
+    }
+
+    /**
+     * @return every metric in the Prometheus text exposition format
+     */
+    public String scrape() {
+        var out = new StringBuilder();
+        for (var entry : families.entrySet()) {
+            var name = entry.getKey();
+            var family = entry.getValue();
+            header(out, name, family.help(), family.type().name().toLowerCase(Locale.ROOT));
+            for (var series : family.series().entrySet()) {
+                var labels = series.getKey();
+                switch (series.getValue()) {
+                    case Counter counter -> line(out, name, labels, counter.count());
+                    case LongSupplier count -> line(out, name, labels, count.getAsLong());
+                    case DoubleSupplier gauge -> line(out, name, labels, gauge.getAsDouble());
+                    case Histogram histogram -> {
+                        for (var quantile : QUANTILES) {
+                            line(out, name, withLabel(labels, "quantile", Double.toString(quantile)),
+                                    seconds(histogram.percentile(quantile)));
+                        }
+                        line(out, name + "_sum", labels, seconds(histogram.sum()));
+                        line(out, name + "_count", labels, histogram.count());
+                    }
+                    default -> throw new IllegalStateException("Unknown metric " + series.getValue());
+                }
+            }
+            if (family.type() == Type.SUMMARY) {
+                header(out, name + "_max", "Largest value of " + name, "gauge");
+                for (var series : family.series().entrySet()) {
+                    line(out, name + "_max", series.getKey(), seconds(((Histogram) series.getValue()).max()));
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void line(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static String labelText(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        var text = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return text.append('}').toString();
+    }
+
+    private static String withLabel(String labels, String name, String value) {
+        var label = name + "=\"" + value + "\"";
+        return labels.isEmpty() ? "{" + label + "}" : labels.substring(0, labels.length() - 1) + "," + label + "}";
+    }
+
+    private static String escape(String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,147 @@
+package metrics;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * Times the stages of one request as it passes through the server.
+ * <p>
+ * The trace of the request being handled lives in a thread local, so code anywhere along the way
+ * can call {@link #mark} without the trace being passed down to it. A mark charges the time since
+ * the previous mark to the named stage, and marking a stage again adds to it. Marks on a thread
+ * with no trace do nothing, which is how requests that weren't sampled skip the work.
+ */
+public final class Trace {
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+    private static final int MAX_STAGES = 16;
+
+    private final Tracer tracer;
+    private final long start;
+    private long last;
+    private final String[] stages = new String[MAX_STAGES];
+    private final long[] nanos = new long[MAX_STAGES];
+    private int count;
+
+    Trace(Tracer tracer, long start) {
+        this.tracer = tracer;
+        this.start = start;
+        this.last = start;
+    }
+
+    static void attach(Trace trace) {
+        if (trace == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(trace);
+        }
+    }
+
+    /**
+     * Charges the time since the last mark to a stage of the current request
+     */
+    public static void mark(String stage) {
+        var trace = CURRENT.get();
+        if (trace != null) {
+            trace.record(stage, trace.tracer.now());
+        }
+    }
+
+    /**
+     * Ends the current request's trace and logs it if it was slow
+     *
+     * @param name   what the request was, such as its route or command
+     * @param detail extra {@code key=value} pairs for the log line, or null
+     */
+    public static void finish(String name, String detail) {
+        var trace = CURRENT.get();
+        if (trace == null) {
+            return;
+        }
+        CURRENT.remove();
+        trace.tracer.finished(trace, name, detail);
+    }
+
+    /**
+     * Moves the current trace onto the thread that later runs {@code task}, for work the caller
+     * queues and doesn't wait for. The time until the task starts is charged to {@code queue}, and
+     * the task should finish the trace.
+     */
+    public static Runnable handOff(Runnable task) {
+        var trace = CURRENT.get();
+        if (trace == null) {
+            return task;
+        }
+        CURRENT.remove();
+        return () -> {
+            CURRENT.set(trace);
+            try {
+                mark("queue");
+                task.run();
+            } finally {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * Shares the current trace with the thread that runs {@code task}, for work the caller waits on
+     */
+    public static <T> Callable<T> carry(Callable<T> task) {
+        var trace = CURRENT.get();
+        if (trace == null) {
+            return task;
+        }
+        return () -> {
+            CURRENT.set(trace);
+            try {
+                mark("queue");
+                return task.call();
+            } finally {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    private void record(String stage, long now) {
+        long elapsed = now - last;
+        last = now;
+        for (int i = 0; i < count; i++) {
+            if (stages[i].equals(stage)) {
+                nanos[i] += elapsed;
+                return;
+            }
+        }
+        if (count < MAX_STAGES) {
+            stages[count] = stage;
+            nanos[count++] = elapsed;
+        }
+    }
+
+    long elapsed(long now) {
+        return now - start;
+    }
+
+    /**
+     * @return the request as one line of {@code key=value} pairs, with time not charged to any stage as {@code other}
+     */
+    String format(String name, String detail, long now) {
+        long total = now - start;
+        var line = new StringBuilder("slow request=").append(name.replace(' ', '_'));
+        appendMillis(line, "total", total);
+        if (detail != null) {
+            line.append(' ').append(detail);
+        }
+        long charged = 0;
+        for (int i = 0; i < count; i++) {
+            appendMillis(line, stages[i], nanos[i]);
+            charged += nanos[i];
+        }
+        appendMillis(line, "other", total - charged);
+        return line.toString();
+    }
+
+    private static void appendMillis(StringBuilder line, String key, long nanos) {
+        line.append(' ').append(key).append('=').append(String.format(Locale.ROOT, "%.1fms", nanos / 1e6));
+    }
+}
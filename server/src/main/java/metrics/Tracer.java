@@ -0,0 +1,69 @@
+package metrics;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Starts a {@link Trace} for each request and logs the requests that ran slow.
+ * <p>
+ * A slow request is logged as one line of {@code key=value} pairs: the request, its total time,
+ * then the time spent in each stage in the order the stages first ran. A mark costs a clock read
+ * and an array write, so every request is traced by default; with {@code sampleEvery} above one,
+ * only one request in that many is traced, chosen at random, and the rest are never logged. A
+ * {@code sampleEvery} of zero turns tracing off.
+ */
+public class Tracer {
+
+    private final long slowNanos;
+    private final int sampleEvery;
+    private final Consumer<String> log;
+    private final LongSupplier clock;
+    private final Counter slowRequests = new Counter();
+
+    public Tracer() {
+        this(Duration.ofMillis(Long.getLong("chess.trace.slowMillis", 250)),
+                Integer.getInteger("chess.trace.sampleEvery", 1), System.err::println, System::nanoTime);
+    }
+
+    /**
+     * @param slowThreshold how long a request may take before it is logged
+     * @param sampleEvery   trace one request in this many, or none if zero
+     * @param log           where slow requests are written
+     * @param clock         the current time in nanoseconds
+     */
+    public Tracer(Duration slowThreshold, int sampleEvery, Consumer<String> log, LongSupplier clock) {
+        this.slowNanos = slowThreshold.toNanos();
+        this.sampleEvery = sampleEvery;
+        this.log = log;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts tracing a request on the current thread, replacing any trace left there
+     */
+    public void begin() {
+        if (sampleEvery < 1 || (sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0)) {
+            Trace.attach(null);
+            return;
+        }
+        Trace.attach(new Trace(this, clock.getAsLong()));
+    }
+
+    long now() {
+        return clock.getAsLong();
+    }
+
+    void finished(Trace trace, String name, String detail) {
+        long now = clock.getAsLong();
+        if (trace.elapsed(now) >= slowNanos) {
+            slowRequests.increment();
+            log.accept(trace.format(name, detail, now));
+        }
+    }
+
+    public Counter slowRequests() {
+        return slowRequests;
+    }
+}
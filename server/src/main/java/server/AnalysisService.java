@@ -0,0 +1,193 @@
+package server;
+
+import chess.ChessGame;
+import chess.Search;
+import chess.Zobrist;
+import chess.tablebase.Tablebases;
+import io.javalin.websocket.WsContext;
+import websocket.messages.AnalysisMessage;
+import websocket.messages.ServerMessage;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Analyses watched games in the background and sends the results to the observers who asked for them.
+ * <p>
+ * Every analysis runs on its own virtual thread, but a semaphore limits how many can search at
+ * once so analysis never takes the CPU away from move handling. A new move cancels the analysis
+ * still running for that game. Results are cached by position, so a position reached in several
+ * games is only searched once.
+ */
+public class AnalysisService {
+
+    private static final int CACHE_SIZE = 10_000;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore searchPermits;
+    private final Duration timeLimit;
+    private final Broadcaster broadcaster;
+    private final Tablebases tablebases;
+    private final Map<Integer, Future<?>> running = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<WsContext>> subscribers = new ConcurrentHashMap<>();
+    private final Map<Long, Search.Result> cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Search.Result> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    });
+
+    /**
+     * Uses half the cores for analysis and a time limit from the {@code chess.analysis.millis}
+     * system property, one second by default
+     */
+    public AnalysisService(Broadcaster broadcaster, Tablebases tablebases) {
+        this(broadcaster, tablebases, Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                Duration.ofMillis(Long.getLong("chess.analysis.millis", 1000)));
+    }
+
+    /**
+     * @param broadcaster sends the results
+     * @param tablebases  scores the endgames they cover exactly
+     * @param maxSearches how many analyses may search at the same time
+     * @param timeLimit   how long to search each position
+     */
+    public AnalysisService(Broadcaster broadcaster, Tablebases tablebases, int maxSearches, Duration timeLimit) {
+        this.broadcaster = broadcaster;
+        this.tablebases = tablebases;
+        this.searchPermits = new Semaphore(maxSearches);
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     * Starts sending a connection the analysis of a game, beginning with its current position
+     *
+     * @param gameID the game to analyse
+     * @param ctx    the connection to send results to
+     * @param game   the game's current position
+     */
+    public void subscribe(int gameID, WsContext ctx, ChessGame game) {
+        subscribers.compute(gameID, (id, connections) -> {
+            var result = connections == null ? ConcurrentHashMap.<WsContext>newKeySet() : connections;
+            result.add(ctx);
+            return result;
+        });
+        var cached = cache.get(Zobrist.hash(game));
+        if (cached != null) {
+            send(gameID, ctx, cached);
+        } else {
+            positionChanged(gameID, game);
+        }
+    }
+
+    public void unsubscribe(int gameID, WsContext ctx) {
+//        Removing the last connection and the game together means a subscriber can't join a set that is being dropped
+        subscribers.computeIfPresent(gameID, (id, connections) -> {
+            connections.remove(ctx);
+            if (!connections.isEmpty()) {
+                return connections;
+            }
+            cancel(gameID);
+            return null;
+        });
+    }
+
+    /**
+     * Replaces any analysis running for a game with one of its new position
+     *
+     * @param gameID the game that changed
+     * @param game   the game after the change
+     */
+    public void positionChanged(int gameID, ChessGame game) {
+        if (!subscribers.containsKey(gameID) || game.isGameOver()) {
+            cancel(gameID);
+            return;
+        }
+//        Copy the position so later moves can't change it mid-search
+        var position = new ChessGame(game);
+        position.setTablebases(tablebases);
+        var task = new FutureTask<Void>(() -> analyze(gameID, position), null) {
+            @Override
+            protected void done() {
+//                Only forget this analysis, not one that has already replaced it
+                running.remove(gameID, this);
+            }
+        };
+        var previous = running.put(gameID, task);
+        if (previous != null) {
+            previous.cancel(true);
+        }
+        executor.execute(task);
+    }
+
+    /**
+     * @return how many games have an analysis running or waiting to search
+     */
+    int running() {
+        return running.size();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void cancel(int gameID) {
+        var previous = running.remove(gameID);
+        if (previous != null) {
+            previous.cancel(true);
+        }
+    }
+
+    private void analyze(int gameID, ChessGame position) {
+        long key = Zobrist.hash(position);
+        var result = cache.get(key);
+        if (result == null) {
+            try {
+                searchPermits.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+//                Another game may have searched the same position while this one waited
+                result = cache.get(key);
+                if (result == null) {
+                    result = Search.analyze(position, timeLimit);
+                    cache.put(key, result);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                searchPermits.release();
+            }
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+
+        var connections = subscribers.get(gameID);
+        if (connections != null) {
+            for (var ctx : connections) {
+                send(gameID, ctx, result);
+            }
+        }
+    }
+
+    private void send(int gameID, WsContext ctx, Search.Result result) {
+        var message = new AnalysisMessage(ServerMessage.ServerMessageType.ANALYSIS,
+                result.bestMove(), result.score(), result.depth());
+        if (ctx.session.isOpen()) {
+            broadcaster.send(ctx, message);
+        } else {
+            unsubscribe(gameID, ctx);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package server;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for serializing a websocket message and queueing it for every
+ * recipient. Off unless a recording turns it on, such as with the server's {@code chess.jfc} profile.
+ */
+@Name("chess.Broadcast")
+@Label("Websocket Broadcast")
+@Category({"Chess", "Websocket"})
+@Description("A message serialized and queued for a game's connections")
+@Enabled(false)
+@StackTrace(false)
+final class BroadcastEvent extends Event {
+
+    @Label("Message Type")
+    String messageType;
+
+    @Label("Subscribers")
+    @Description("Connections the message was queued for")
+    int subscribers;
+
+    @Label("Bytes")
+    @Description("Total size of the frames queued, with text frames counted in UTF-8 bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,316 @@
+package server;
+
+import io.javalin.websocket.WsContext;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.Trace;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import websocket.BinaryCodec;
+import websocket.JsonCodec;
+import websocket.messages.ServerMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends messages to websocket sessions without blocking the caller.
+ * <p>
+ * Every session has its own bounded outbound queue, written with Jetty's asynchronous sends one
+ * message at a time. A broadcast serializes its message once and only adds it to each queue, so
+ * a slow spectator can't hold up a move for everyone else. A session whose queue fills up, or
+ * whose oldest message has waited longer than the lag limit, is disconnected. Lag is checked
+ * whenever a message is queued and by a periodic check, so a session that stops reading is
+ * dropped even when nothing more is sent to it. Limits come from the {@code chess.ws.maxQueued}
+ * and {@code chess.ws.maxLagMillis} system properties.
+ * <p>
+ * Sessions get JSON text frames unless they asked for {@link BinaryCodec} frames when they
+ * connected to a game, and a broadcast encodes each format at most once.
+ */
+public class Broadcaster {
+
+    private final int maxQueued;
+    private final long maxLagNanos;
+    private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+
+    private final Histogram broadcastTimes = new Histogram();
+    private final Counter framesQueued = new Counter();
+    private final Counter evictions = new Counter();
+
+    public Broadcaster() {
+        this(Integer.getInteger("chess.ws.maxQueued", 256), Long.getLong("chess.ws.maxLagMillis", 10_000));
+    }
+
+    /**
+     * @param maxQueued    how many messages may wait for one session
+     * @param maxLagMillis how long a message may wait before its session is dropped
+     */
+    public Broadcaster(int maxQueued, long maxLagMillis) {
+        this.maxQueued = maxQueued;
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+    }
+
+    /**
+     * Gives a session that just connected its queue. Messages for sessions without one are dropped,
+     * so a message for a session that has already closed can't bring its queue back.
+     */
+    public void open(WsContext ctx) {
+        outboxes.computeIfAbsent(ctx.sessionId(), id -> new Outbox(ctx.session));
+    }
+
+    /**
+     * Sends a session binary frames from now on
+     */
+    public void useBinary(WsContext ctx) {
+        var outbox = outboxes.get(ctx.sessionId());
+        if (outbox != null) {
+            outbox.binary = true;
+        }
+    }
+
+    /**
+     * Queues a message for one session
+     *
+     * @param ctx     the session to send to
+     * @param message the message to send
+     */
+    public void send(WsContext ctx, ServerMessage message) {
+        var outbox = outboxes.get(ctx.sessionId());
+        if (outbox == null) {
+            return;
+        }
+        outbox.offer(outbox.binary ? BinaryCodec.encode(message) : JsonCodec.encode(message));
+        framesQueued.increment();
+        Trace.mark("broadcast");
+    }
+
+    /**
+     * Serializes a message once per format and queues it for every connection
+     *
+     * @param connections who to send to
+     * @param message     the message to send
+     * @param except      a session to skip, or null to send to everyone
+     */
+    public void broadcast(Collection<UserConnection> connections, ServerMessage message, WsContext except) {
+        long start = System.nanoTime();
+        var event = new BroadcastEvent();
+        event.begin();
+        int queued = 0;
+        int binaryQueued = 0;
+        String json = null;
+        ByteBuffer binary = null;
+        for (var connection : connections) {
+            if (except != null && connection.ctx().equals(except)) {
+                continue;
+            }
+            var outbox = outboxes.get(connection.ctx().sessionId());
+            if (outbox == null) {
+                continue;
+            }
+            if (outbox.binary) {
+                if (binary == null) {
+                    binary = BinaryCodec.encode(message);
+                }
+//                Each send reads through its own view of the shared bytes
+                outbox.offer(binary.duplicate());
+                binaryQueued++;
+            } else {
+                if (json == null) {
+                    json = JsonCodec.encode(message);
+                }
+                outbox.offer(json);
+            }
+            queued++;
+        }
+        framesQueued.add(queued);
+        broadcastTimes.recordSince(start);
+        Trace.mark("broadcast");
+        if (event.shouldCommit()) {
+            event.messageType = message.getServerMessageType().name();
+            event.subscribers = queued;
+            event.bytes = (long) binaryQueued * (binary == null ? 0 : binary.remaining())
+                    + (long) (queued - binaryQueued) * (json == null ? 0 : json.getBytes(StandardCharsets.UTF_8).length);
+            event.commit();
+        }
+    }
+
+    /**
+     * Disconnects every session whose oldest message has waited longer than the lag limit
+     *
+     * @return how many sessions were disconnected
+     */
+    public int checkLag() {
+        int evicted = 0;
+        long now = System.nanoTime();
+        for (var outbox : outboxes.values()) {
+            if (outbox.evictIfLagging(now)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Runs {@link #checkLag()} periodically
+     *
+     * @param scheduler the scheduler to run on
+     * @param period    how often to check
+     */
+    public void startLagChecks(ScheduledExecutorService scheduler, Duration period) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkLag();
+            } catch (RuntimeException e) {
+                System.err.println("Websocket lag check failed: " + e.getMessage());
+            }
+        }, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops a session's queue once it has closed
+     */
+    public void remove(String sessionId) {
+        var outbox = outboxes.remove(sessionId);
+        if (outbox != null) {
+            outbox.discard();
+        }
+    }
+
+    /**
+     * @return how long each broadcast took to serialize its message and queue it for everyone
+     */
+    public Histogram broadcastTimes() {
+        return broadcastTimes;
+    }
+
+    public Counter framesQueued() {
+        return framesQueued;
+    }
+
+    /**
+     * @return how many sessions were disconnected for falling behind
+     */
+    public Counter evictions() {
+        return evictions;
+    }
+
+    public int sessions() {
+        return outboxes.size();
+    }
+
+    private class Outbox {
+        private final Session session;
+        private volatile boolean binary;
+        //        Guarded by this
+        private final Queue<Pending> queue = new ArrayDeque<>();
+        private long writingSince = -1;
+        private boolean closed;
+
+        //        Either a String for a text frame or a ByteBuffer for a binary one
+        private record Pending(Object frame, long queuedAt) {
+        }
+
+        Outbox(Session session) {
+            this.session = session;
+        }
+
+        void offer(Object frame) {
+            long now = System.nanoTime();
+            Pending next;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (queue.size() >= maxQueued || isLagging(now)) {
+                    closed = true;
+                    queue.clear();
+                    next = null;
+                } else {
+                    queue.add(new Pending(frame, now));
+                    if (writingSince >= 0) {
+                        return;
+                    }
+                    next = queue.poll();
+                    writingSince = now;
+                }
+            }
+            if (next == null) {
+                evict();
+            } else {
+                write(next);
+            }
+        }
+
+        boolean evictIfLagging(long now) {
+            synchronized (this) {
+                if (closed || !isLagging(now)) {
+                    return false;
+                }
+                closed = true;
+                queue.clear();
+            }
+            evict();
+            return true;
+        }
+
+        void discard() {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+            }
+        }
+
+        private boolean isLagging(long now) {
+            long oldest = queue.isEmpty() ? writingSince : queue.peek().queuedAt();
+            return oldest >= 0 && now - oldest > maxLagNanos;
+        }
+
+        private void write(Pending pending) {
+            if (!session.isOpen()) {
+                discard();
+                return;
+            }
+            var callback = new WriteCallback() {
+                @Override
+                public void writeSuccess() {
+                    Pending next;
+                    synchronized (Outbox.this) {
+                        next = closed ? null : queue.poll();
+                        writingSince = next == null ? -1 : System.nanoTime();
+                    }
+                    if (next != null) {
+                        write(next);
+                    }
+                }
+
+                @Override
+                public void writeFailed(Throwable x) {
+                    discard();
+                }
+            };
+            if (pending.frame() instanceof ByteBuffer bytes) {
+                session.getRemote().sendBytes(bytes, callback);
+            } else {
+                session.getRemote().sendString((String) pending.frame(), callback);
+            }
+        }
+
+        private void evict() {
+            evictions.increment();
+            try {
+                session.close(StatusCode.POLICY_VIOLATION, "Too slow to keep up");
+            } catch (Exception e) {
+//                It's being dropped either way
+            }
+        }
+    }
+}
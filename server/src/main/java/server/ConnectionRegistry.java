@@ -0,0 +1,143 @@
+package server;
+
+import io.javalin.websocket.WsContext;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The websocket connections to each game, indexed both by game and by session.
+ * <p>
+ * Connections are removed as soon as their session closes, and a periodic reaper drops any
+ * whose session died without a close event. Games and sessions with no connections left are
+ * removed entirely, so the registry only ever holds live connections. Every open session is
+ * tracked, including ones not connected to any game, and reap listeners hear about each
+ * session the reaper drops so they can forget it too.
+ */
+public class ConnectionRegistry {
+
+    //    Game ID to the connections watching it, keyed by session ID
+    private final Map<Integer, Map<String, UserConnection>> byGame = new ConcurrentHashMap<>();
+    //    Session ID to the games it is connected to
+    private final Map<String, Set<Integer>> bySession = new ConcurrentHashMap<>();
+    //    Every open session, whether or not it is connected to a game
+    private final Map<String, WsContext> sessions = new ConcurrentHashMap<>();
+    private final List<BiConsumer<WsContext, Set<Integer>>> reapListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Starts tracking a session that just connected
+     */
+    public void open(WsContext ctx) {
+        sessions.put(ctx.sessionId(), ctx);
+    }
+
+    /**
+     * @param listener told about each session the reaper drops, along with the games it was connected to
+     */
+    public void addReapListener(BiConsumer<WsContext, Set<Integer>> listener) {
+        reapListeners.add(listener);
+    }
+
+    public void add(int gameID, UserConnection connection) {
+        var sessionId = connection.ctx().sessionId();
+        sessions.putIfAbsent(sessionId, connection.ctx());
+        byGame.compute(gameID, (id, connections) -> {
+            var result = connections == null ? new ConcurrentHashMap<String, UserConnection>() : connections;
+            result.put(sessionId, connection);
+            return result;
+        });
+        bySession.compute(sessionId, (id, games) -> {
+            var result = games == null ? ConcurrentHashMap.<Integer>newKeySet() : games;
+            result.add(gameID);
+            return result;
+        });
+    }
+
+    /**
+     * @return the connections to a game. The collection is live and safe to iterate while it changes.
+     */
+    public Collection<UserConnection> connections(int gameID) {
+        var connections = byGame.get(gameID);
+        return connections == null ? List.of() : connections.values();
+    }
+
+    public void remove(int gameID, WsContext ctx) {
+        removeFromGame(gameID, ctx.sessionId());
+        bySession.computeIfPresent(ctx.sessionId(), (id, games) -> {
+            games.remove(gameID);
+            return games.isEmpty() ? null : games;
+        });
+    }
+
+    /**
+     * Removes every connection a session has
+     *
+     * @param sessionId the session that closed
+     * @return the games the session was connected to
+     */
+    public Set<Integer> removeSession(String sessionId) {
+        sessions.remove(sessionId);
+        var games = bySession.remove(sessionId);
+        if (games == null) {
+            return Set.of();
+        }
+        for (var gameID : games) {
+            removeFromGame(gameID, sessionId);
+        }
+        return games;
+    }
+
+    /**
+     * Removes connections whose session is no longer open
+     *
+     * @return how many sessions were removed
+     */
+    public int reap() {
+        int reaped = 0;
+        for (var ctx : sessions.values()) {
+            if (!ctx.session.isOpen()) {
+                var games = removeSession(ctx.sessionId());
+                for (var listener : reapListeners) {
+                    listener.accept(ctx, games);
+                }
+                reaped++;
+            }
+        }
+        return reaped;
+    }
+
+    /**
+     * Runs {@link #reap()} periodically
+     *
+     * @param scheduler the scheduler to run on
+     * @param period    how often to reap
+     */
+    public void startReaper(ScheduledExecutorService scheduler, Duration period) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reap();
+            } catch (RuntimeException e) {
+                System.err.println("Connection reaper failed: " + e.getMessage());
+            }
+        }, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public int size() {
+        return bySession.size();
+    }
+
+    private void removeFromGame(int gameID, String sessionId) {
+        byGame.computeIfPresent(gameID, (id, connections) -> {
+            connections.remove(sessionId);
+            return connections.isEmpty() ? null : connections;
+        });
+    }
+}
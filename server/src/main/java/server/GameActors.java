@@ -0,0 +1,85 @@
+package server;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the commands for each game one at a time in the order they arrive, while commands for
+ * different games run in parallel.
+ * <p>
+ * Every game has a mailbox that a virtual thread drains while it has commands waiting, so an
+ * idle game holds no thread. Since only one command per game runs at a time, anything that reads,
+ * changes and writes back a game can do so without locking, as long as it goes through here.
+ */
+public class GameActors {
+
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Integer, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    /**
+     * Queues a command behind any others for the same game
+     *
+     * @param gameID  the game the command acts on
+     * @param command the command to run
+     */
+    public void submit(int gameID, Runnable command) {
+        mailboxes.computeIfAbsent(gameID, id -> new Mailbox()).submit(command);
+    }
+
+    /**
+     * Queues a command behind any others for the same game and gives back its result
+     *
+     * @param gameID  the game the command acts on
+     * @param command the command to run
+     * @return a future that completes once the command has run
+     */
+    public <T> Future<T> call(int gameID, Callable<T> command) {
+        var task = new FutureTask<>(command);
+        submit(gameID, task);
+        return task;
+    }
+
+    public void shutdown() {
+        threads.shutdown();
+    }
+
+    private class Mailbox {
+        private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        void submit(Runnable command) {
+            commands.add(command);
+            if (draining.compareAndSet(false, true)) {
+                threads.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Runnable command;
+                while ((command = commands.poll()) != null) {
+                    try {
+                        command.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Game command failed: " + e.getMessage());
+                    }
+                }
+            } finally {
+//                Even if a command threw an Error, the mailbox must not be left marked as draining
+                draining.set(false);
+//                A command may have been queued after the queue emptied but before the flag was cleared
+                if (!commands.isEmpty() && draining.compareAndSet(false, true)) {
+                    threads.execute(this::drain);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package server;
+
+import dataaccess.GameQuery;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serialized game list responses, kept until the game list changes.
+ * <p>
+ * Each body is tagged with the game list version it was built from. The version is read before
+ * the list is, so a body never claims to be newer than it is; at worst a change that raced
+ * with building it makes the next request rebuild it. The ETag also names this server run, so
+ * a tag saved before a restart can't match a version number that was reused.
+ */
+class GameListCache {
+
+    record Body(long version, String etag, String json) {
+    }
+
+    private final Map<GameQuery, Body> bodies = new ConcurrentHashMap<>();
+    private final String run = Long.toString(System.currentTimeMillis(), 36);
+    private final int maxEntries;
+
+    GameListCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    String etag(long version) {
+        return "\"" + run + "-" + version + "\"";
+    }
+
+    /**
+     * @return the body for a query at the given version, or null if it hasn't been built yet
+     */
+    Body get(GameQuery query, long version) {
+        var body = bodies.get(query);
+        return body != null && body.version() == version ? body : null;
+    }
+
+    Body put(GameQuery query, long version, String json) {
+        if (bodies.size() >= maxEntries && !bodies.containsKey(query)) {
+            bodies.values().removeIf(body -> body.version() != version);
+            if (bodies.size() >= maxEntries) {
+                bodies.clear();
+            }
+        }
+        var body = new Body(version, etag(version), json);
+        bodies.put(query, body);
+        return body;
+    }
+}
@@ -0,0 +1,118 @@
+package server;
+
+import chess.ReturnGameData;
+import dataaccess.GameQuery;
+import io.javalin.websocket.WsContext;
+import service.GameListListener;
+import service.UserService;
+import websocket.commands.ParticipationType;
+import websocket.messages.LobbyMessage;
+import websocket.messages.ServerMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes game list changes to the websocket sessions that subscribed to the lobby.
+ * <p>
+ * A new subscriber gets a snapshot of every game, then one event per change. The snapshot is read
+ * without holding any lock, and events that happen meanwhile are held back for the new session.
+ * Once the snapshot is ready it is sent along with the held events newer than the version it was
+ * read at, and any game ending, which leaves the version alone. That happens under the lock that
+ * event broadcasts take too, so no event is lost or queued ahead of the snapshot. An event newer
+ * than that version may still repeat what the snapshot shows, which is harmless because events
+ * carry the game as it is after the change.
+ */
+public class LobbyService implements GameListListener {
+
+    private final UserService userService;
+    private final Broadcaster broadcaster;
+    //    Session ID to its subscription
+    private final Map<String, UserConnection> subscribers = new ConcurrentHashMap<>();
+    //    Session ID to the events it missed while its snapshot was read. The lists are guarded by sending.
+    private final Map<String, List<LobbyMessage>> joining = new ConcurrentHashMap<>();
+    private final ReentrantLock sending = new ReentrantLock();
+
+    public LobbyService(UserService userService, Broadcaster broadcaster) {
+        this.userService = userService;
+        this.broadcaster = broadcaster;
+    }
+
+    public void subscribe(WsContext ctx, String authToken) throws Exception {
+        userService.verifyAuth(authToken);
+        String sessionId = ctx.sessionId();
+        var missed = new ArrayList<LobbyMessage>();
+        sending.lock();
+        try {
+            joining.put(sessionId, missed);
+        } finally {
+            sending.unlock();
+        }
+
+//        The version is bumped after each change is saved, so the listing shows every change up to it
+        List<ReturnGameData> games;
+        long version = userService.gameListVersion();
+        try {
+            games = userService.listGames(authToken, GameQuery.ALL).games();
+        } catch (Exception e) {
+            sending.lock();
+            try {
+                joining.remove(sessionId, missed);
+            } finally {
+                sending.unlock();
+            }
+            throw e;
+        }
+
+        sending.lock();
+        try {
+            if (!joining.remove(sessionId, missed)) {
+//                Unsubscribed while the snapshot was being read
+                return;
+            }
+            broadcaster.send(ctx, new LobbyMessage(ServerMessage.ServerMessageType.LOBBY, LobbyMessage.Event.SNAPSHOT,
+                    version, games));
+            for (var event : missed) {
+//                The snapshot doesn't show which games are over, so a game ending is always passed on
+                if (event.getVersion() > version || event.getEvent() == LobbyMessage.Event.GAME_ENDED) {
+                    broadcaster.send(ctx, event);
+                }
+            }
+            subscribers.put(sessionId, new UserConnection(ctx, ParticipationType.OBSERVER));
+        } finally {
+            sending.unlock();
+        }
+    }
+
+    public void unsubscribe(String sessionId) {
+        sending.lock();
+        try {
+            joining.remove(sessionId);
+            subscribers.remove(sessionId);
+        } finally {
+            sending.unlock();
+        }
+    }
+
+    @Override
+    public void gameListChanged(LobbyMessage.Event event, ReturnGameData game, long version) {
+//        A session that starts joining after this check reads the version after this change
+        if (subscribers.isEmpty() && joining.isEmpty()) {
+            return;
+        }
+        var message = new LobbyMessage(ServerMessage.ServerMessageType.LOBBY, event, version,
+                game == null ? List.of() : List.of(game));
+        sending.lock();
+        try {
+            for (var missed : joining.values()) {
+                missed.add(message);
+            }
+            broadcaster.broadcast(subscribers.values(), message, null);
+        } finally {
+            sending.unlock();
+        }
+    }
+}
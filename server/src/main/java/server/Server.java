@@ -2,38 +2,86 @@ package server;
 
 import chess.LoginRequest;
 import chess.UserData;
+import chess.tablebase.Tablebases;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
+import dataaccess.AuthCache;
+import dataaccess.CachingDataAccess;
 import dataaccess.DataAccessException;
+import dataaccess.GameQuery;
+import dataaccess.DatabaseManager;
+import dataaccess.GameUpdateQueue;
+import dataaccess.MeteredDataAccess;
 import dataaccess.SQLDataAccess;
 import io.javalin.*;
 import io.javalin.http.Context;
 import io.javalin.json.JsonMapper;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import metrics.Trace;
+import metrics.Tracer;
 import org.jetbrains.annotations.NotNull;
 import service.AlreadyTakenException;
 import service.BadRequestException;
 import service.InvalidAuthException;
+import service.PasswordHasher;
+import service.ServiceUnavailableException;
 import service.UserService;
+import websocket.JsonCodec;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class Server {
 
     private final Javalin server;
     private final UserService userService;
+    private final AnalysisService analysisService;
+    private final GameActors gameActors;
+    private final Tablebases tablebases;
+    private final CachingDataAccess dataAccess;
+    private final PasswordHasher passwordHasher;
+    private final GameListCache gameListCache = new GameListCache(64);
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final Tracer tracer = new Tracer();
+    //    Shared by all of the server's periodic housekeeping tasks
+    private final ScheduledExecutorService scheduler;
 
     public Server() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("server-scheduler").factory());
         try {
-            this.userService = new UserService(new SQLDataAccess());
+//            Games are cached in memory and written back to MySQL in batches unless configured otherwise
+            var mode = CachingDataAccess.Mode.valueOf(System.getProperty("chess.cache.mode", "WRITE_BEHIND"));
+            var database = new MeteredDataAccess(new SQLDataAccess(), metrics);
+            var updates = new GameUpdateQueue(database, Integer.getInteger("chess.cache.batchSize", 64),
+                    Integer.getInteger("chess.cache.maxPending", 1024));
+            var authCache = new AuthCache(Integer.getInteger("chess.auth.maxEntries", 10_000),
+                    Duration.ofMillis(Long.getLong("chess.auth.ttlMillis", 60_000)),
+                    Duration.ofMillis(Long.getLong("chess.auth.negativeTtlMillis", 5_000)));
+            this.dataAccess = new CachingDataAccess(database, mode, updates, authCache,
+                    Integer.getInteger("chess.cache.maxGames", 10_000));
+            metrics.gauge("chess_auth_cache_entries", "Auth token lookups cached", authCache::size);
         } catch (DataAccessException e) {
             throw new RuntimeException(e);
         }
+        DatabaseManager.startPoolMaintenance(scheduler, Duration.ofSeconds(10));
+        if (dataAccess.mode() == CachingDataAccess.Mode.WRITE_BEHIND) {
+            dataAccess.updates().start(scheduler, Duration.ofMillis(Long.getLong("chess.cache.flushMillis", 500)));
+        }
+        passwordHasher = new PasswordHasher(Integer.getInteger("chess.bcrypt.cost", 10),
+                Integer.getInteger("chess.bcrypt.threads", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("chess.bcrypt.maxQueued", 64));
+        this.userService = new UserService(dataAccess, passwordHasher);
+        registerMetrics();
 
-        Gson gson = new GsonBuilder().create();
+        Gson gson = JsonCodec.GSON;
         JsonMapper gsonMapper = new JsonMapper() {
             @NotNull
             @Override
@@ -50,10 +98,39 @@ public class Server {
 
         server = Javalin.create(config -> {
             config.staticFiles.add("web");
+//            Handlers spend most of their time waiting on BCrypt and MySQL, so they can run on virtual threads
+            config.useVirtualThreads = Boolean.getBoolean("chess.server.virtualThreads");
             config.jsonMapper(gsonMapper);
         });
 
-        var wsHandler = new WsRequestHandler(userService);
+        tablebases = loadTablebases();
+        var broadcaster = new Broadcaster();
+        broadcaster.startLagChecks(scheduler, Duration.ofSeconds(1));
+        analysisService = new AnalysisService(broadcaster, tablebases);
+        gameActors = new GameActors();
+        var registry = new ConnectionRegistry();
+        var lobbyService = new LobbyService(userService, broadcaster);
+        userService.addGameListListener(lobbyService);
+        var wsHandler = new WsRequestHandler(userService, analysisService, gameActors, registry, broadcaster, lobbyService,
+                tablebases, metrics, tracer);
+        registry.addReapListener(wsHandler::sessionClosed);
+        registry.startReaper(scheduler, Duration.ofSeconds(30));
+        metrics.register("chess_ws_broadcast_seconds", "Time to serialize a message and queue it for every recipient",
+                broadcaster.broadcastTimes());
+        metrics.register("chess_ws_frames_queued_total", "Websocket frames queued to send", broadcaster.framesQueued());
+        metrics.register("chess_ws_evictions_total", "Websocket sessions dropped for falling behind", broadcaster.evictions());
+        metrics.gauge("chess_ws_sessions", "Websocket sessions with an outbound queue", broadcaster::sessions);
+        metrics.register("chess_slow_requests_total", "Requests and websocket commands logged as slow",
+                tracer.slowRequests());
+
+//        Time every request by its route, not its raw path, so IDs in paths can't multiply the series
+        server.before(ctx -> {
+            ctx.attribute(REQUEST_START, System.nanoTime());
+            tracer.begin();
+        });
+        server.after(this::recordRequest);
+//        Metrics for scraping, in the Prometheus text format
+        server.get("metrics", ctx -> ctx.contentType("text/plain; version=0.0.4").result(metrics.scrape()));
 
 //        Clear database
         server.delete("db", this::clear);
@@ -73,6 +150,7 @@ public class Server {
         server.ws("/ws", ws -> {
             ws.onConnect(wsHandler);
             ws.onMessage(wsHandler);
+            ws.onBinaryMessage(wsHandler);
             ws.onClose(wsHandler);
         });
     }
@@ -84,6 +162,82 @@ public class Server {
 
     public void stop() {
         server.stop();
+        analysisService.shutdown();
+        gameActors.shutdown();
+        passwordHasher.shutdown();
+        scheduler.shutdownNow();
+        tablebases.close();
+//        Save whatever game changes are still queued
+        try {
+            dataAccess.flush();
+        } catch (DataAccessException e) {
+            System.err.println("Unable to save games on shutdown: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Maps the endgame tablebases in the directory named by the {@code chess.tablebases} system property
+     *
+     * @return the tables, or none if the property isn't set
+     */
+    private static Tablebases loadTablebases() {
+        var directory = System.getProperty("chess.tablebases");
+        if (directory == null) {
+            return Tablebases.none();
+        }
+        try {
+            return Tablebases.load(Path.of(directory));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to load tablebases from " + directory, e);
+        }
+    }
+
+    private static final String REQUEST_START = "chess.requestStart";
+
+    private void registerMetrics() {
+        metrics.register("chess_bcrypt_hash_seconds", "Time to hash a password", passwordHasher.hashTimes());
+        metrics.register("chess_bcrypt_verify_seconds", "Time to check a password", passwordHasher.verifyTimes());
+        metrics.register("chess_bcrypt_queue_wait_seconds", "Time spent waiting for a hashing thread",
+                passwordHasher.queueWaits());
+        metrics.gauge("chess_bcrypt_queue_depth", "Password checks waiting for a thread", passwordHasher::queueDepth);
+        metrics.counter("chess_bcrypt_rejections_total", "Password checks turned away because the queue was full",
+                passwordHasher::rejections);
+
+        metrics.gauge("chess_games_cached", "Games held in memory", dataAccess::cachedGames);
+        var updates = dataAccess.updates();
+        metrics.gauge("chess_game_writes_pending", "Game updates waiting to be written", updates::depth);
+        metrics.counter("chess_game_flushes_total", "Batches of game updates written", updates::flushes);
+        metrics.counter("chess_games_written_total", "Game updates written in batches", updates::gamesWritten);
+        metrics.gauge("chess_game_flush_max_seconds", "Longest time a batch of game updates took to write",
+                () -> updates.maxFlushTime().toNanos() / 1e9);
+
+        metrics.gauge("chess_db_connections_active", "Database connections lent out", () -> DatabaseManager.poolStats().active());
+        metrics.gauge("chess_db_connections_idle", "Database connections ready to lend", () -> DatabaseManager.poolStats().idle());
+        metrics.counter("chess_db_connections_created_total", "Database connections opened",
+                () -> DatabaseManager.poolStats().created());
+        metrics.counter("chess_db_borrow_timeouts_total", "Requests that gave up waiting for a database connection",
+                () -> DatabaseManager.poolStats().timeouts());
+        metrics.gauge("chess_db_borrow_wait_max_seconds", "Longest wait for a database connection",
+                () -> DatabaseManager.poolStats().maxWait().toNanos() / 1e9);
+    }
+
+    private void recordRequest(Context ctx) {
+        Long start = ctx.attribute(REQUEST_START);
+        if (start == null) {
+            return;
+        }
+        String route;
+        try {
+            route = ctx.method() + " " + ctx.endpointHandlerPath();
+        } catch (RuntimeException e) {
+//            No route matched, such as for a 404
+            route = ctx.method() + " unmatched";
+        }
+        Histogram latency = metrics.histogram("chess_http_request_seconds", "Time spent handling each HTTP route", "route", route);
+        latency.recordSince(start);
+        metrics.counter("chess_http_responses_total", "HTTP responses by route and status",
+                "route", route, "status", Integer.toString(ctx.statusCode())).increment();
+        Trace.finish(route, "status=" + ctx.statusCode());
     }
 
     /*
@@ -102,9 +256,10 @@ public class Server {
 
     private void register(Context ctx) {
         try {
-            var serializer = new Gson();
+            var serializer = JsonCodec.GSON;
             String requestJson = ctx.body();
             var user = serializer.fromJson(requestJson, UserData.class);
+            Trace.mark("decode");
 
             var authData = userService.register(user);
             ctx.status(200).result(serializer.toJson(authData));
@@ -113,6 +268,8 @@ public class Server {
             ctx.status(400).result(getMessage(e));
         } catch (AlreadyTakenException e) {
             ctx.status(403).result(getMessage(e));
+        } catch (ServiceUnavailableException e) {
+            ctx.status(503).result(getMessage(e));
         } catch (Exception e) {
             ctx.status(500).result(getMessage(e));
         }
@@ -120,9 +277,10 @@ public class Server {
 
     private void login(Context ctx) {
         try {
-            var serializer = new Gson();
+            var serializer = JsonCodec.GSON;
             String requestJson = ctx.body();
             var loginRequest = serializer.fromJson(requestJson, LoginRequest.class);
+            Trace.mark("decode");
 
             var authData = userService.login(loginRequest);
             ctx.status(200).result(serializer.toJson(authData));
@@ -131,6 +289,8 @@ public class Server {
             ctx.status(400).result(getMessage(e));
         } catch (InvalidAuthException e) {
             ctx.status(401).result(getMessage(e));
+        } catch (ServiceUnavailableException e) {
+            ctx.status(503).result(getMessage(e));
         } catch (Exception e) {
             ctx.status(500).result(getMessage(e));
         }
@@ -138,7 +298,7 @@ public class Server {
 
     private void logout(Context ctx) {
         try {
-            var serializer = new Gson();
+            var serializer = JsonCodec.GSON;
             String requestJson = ctx.header("authorization");
             var authToken = serializer.fromJson(requestJson, String.class);
 
@@ -152,20 +312,37 @@ public class Server {
         }
     }
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+
     private void listGames(Context ctx) {
         try {
-            var serializer = new Gson();
+            var serializer = JsonCodec.GSON;
             String requestJson = ctx.header("authorization");
             var authToken = serializer.fromJson(requestJson, String.class);
+            userService.verifyAuth(authToken);
+
+//            Read the version before the list, so the body is never tagged newer than it is
+            long version = userService.gameListVersion();
+            var etag = gameListCache.etag(version);
+            ctx.header("ETag", etag);
+            ctx.header("Cache-Control", "no-cache");
+            if (etag.equals(ctx.header("If-None-Match"))) {
+                ctx.status(304);
+                return;
+            }
 
-            var games = userService.listGames(authToken);
-
-            var response = new HashMap<String, HashSet<chess.ReturnGameData>>();
-            response.put("games", games);
-
-            var result = serializer.toJson(response);
-            ctx.status(200).result(result);
+            var query = gameQuery(ctx);
+            var body = gameListCache.get(query, version);
+            if (body == null) {
+//                nextCursor is left out on the last page
+                body = gameListCache.put(query, version, serializer.toJson(userService.listGames(authToken, query)));
+                Trace.mark("encode");
+            }
+            ctx.status(200).result(body.json());
 
+        } catch (BadRequestException e) {
+            ctx.status(400).result(getMessage(e));
         } catch (InvalidAuthException e) {
             ctx.status(401).result(getMessage(e));
         } catch (Exception e) {
@@ -173,15 +350,41 @@ public class Server {
         }
     }
 
+    /**
+     * Reads the optional {@code after}, {@code limit}, {@code open} and {@code prefix} query parameters.
+     * The list is only split into pages when {@code after} or {@code limit} is given, so clients that
+     * don't know about paging still get every game.
+     */
+    private static GameQuery gameQuery(Context ctx) throws BadRequestException {
+        var afterParam = ctx.queryParam("after");
+        var limitParam = ctx.queryParam("limit");
+        int after;
+        int limit;
+        try {
+            after = afterParam == null ? 0 : Integer.parseInt(afterParam);
+            limit = limitParam == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(limitParam);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("bad request");
+        }
+        if (limit < 1) {
+            throw new BadRequestException("bad request");
+        }
+        var prefix = ctx.queryParam("prefix");
+        boolean paged = afterParam != null || limitParam != null;
+        return new GameQuery(after, paged ? Math.min(limit, MAX_PAGE_SIZE) : Integer.MAX_VALUE,
+                Boolean.parseBoolean(ctx.queryParam("open")), prefix == null || prefix.isEmpty() ? null : prefix);
+    }
+
     private void createGame(Context ctx) {
         try {
-            var serializer = new Gson();
+            var serializer = JsonCodec.GSON;
 
             String authHeader = ctx.header("authorization");
             String requestJson = ctx.body();
 
             var authToken = serializer.fromJson(authHeader, String.class);
             String gameName = (String) serializer.fromJson(requestJson, Map.class).get("gameName");
+            Trace.mark("decode");
 
             var gameID = userService.createGame(authToken, gameName);
             var response = new HashMap<String, Integer>();
@@ -199,7 +402,7 @@ public class Server {
 
     private void joinGame(Context ctx) {
         try {
-            var serializer = new Gson();
+            var serializer = JsonCodec.GSON;
 
             String authHeader = ctx.header("authorization");
             String requestJson = ctx.body();
@@ -222,8 +425,20 @@ public class Server {
             } catch (Exception e) {
                 throw new BadRequestException("bad request");
             }
+            Trace.mark("decode");
 
-            userService.joinGame(authToken, playerColor, gameID);
+//            Joining rewrites the game, so it waits its turn behind any websocket commands for that game
+            try {
+                gameActors.call(gameID, Trace.carry(() -> {
+                    userService.joinGame(authToken, playerColor, gameID);
+                    return null;
+                })).get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
             ctx.status(200).result("{}");
 
         } catch (BadRequestException e) {
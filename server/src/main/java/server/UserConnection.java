@@ -1,7 +1,14 @@
 package server;
 
-import io.javalin.websocket.WsMessageContext;
+import io.javalin.websocket.WsContext;
 import websocket.commands.ParticipationType;
 
-public record UserConnection(WsMessageContext ctx, ParticipationType participationType) {
+/**
+ * @param moveDeltas whether the connection gets MOVE_APPLIED messages instead of the whole game after each move
+ */
+public record UserConnection(WsContext ctx, ParticipationType participationType, boolean moveDeltas) {
+
+    public UserConnection(WsContext ctx, ParticipationType participationType) {
+        this(ctx, participationType, false);
+    }
 }
@@ -1,61 +1,163 @@
 package server;
 
 import chess.*;
-import com.google.gson.Gson;
+import chess.tablebase.Tablebases;
 import io.javalin.websocket.*;
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import metrics.Trace;
+import metrics.Tracer;
 import org.jetbrains.annotations.NotNull;
 import service.UserService;
+import websocket.BinaryCodec;
+import websocket.JsonCodec;
+import websocket.commands.ConnectCommand;
 import websocket.commands.MakeMoveCommand;
 import websocket.commands.ParticipationType;
 import websocket.commands.UserGameCommand;
 import websocket.messages.LoadBoardMessage;
+import websocket.messages.MoveAppliedMessage;
 import websocket.messages.ServerErrorMessage;
 import websocket.messages.ServerMessage;
 import websocket.messages.ServerNotificationMessage;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
 
-public class WsRequestHandler implements WsConnectHandler, WsMessageHandler, WsCloseHandler {
+public class WsRequestHandler implements WsConnectHandler, WsMessageHandler, WsBinaryMessageHandler, WsCloseHandler {
 
     private final UserService userService;
-    private final HashMap<Integer, HashSet<UserConnection>> users;
-
-    public WsRequestHandler(UserService userService) {
+    private final AnalysisService analysisService;
+    private final GameActors gameActors;
+    private final ConnectionRegistry registry;
+    private final Broadcaster broadcaster;
+    private final LobbyService lobbyService;
+    private final Tablebases tablebases;
+    private final Tracer tracer;
+    private final Map<UserGameCommand.CommandType, Histogram> commandTimes = new EnumMap<>(UserGameCommand.CommandType.class);
+    private final Map<UserGameCommand.CommandType, Counter> commandErrors = new EnumMap<>(UserGameCommand.CommandType.class);
+
+    public WsRequestHandler(UserService userService, AnalysisService analysisService, GameActors gameActors,
+                            ConnectionRegistry registry, Broadcaster broadcaster, LobbyService lobbyService,
+                            Tablebases tablebases, MetricsRegistry metrics, Tracer tracer) {
         this.userService = userService;
-        this.users = new HashMap<>();
+        this.analysisService = analysisService;
+        this.gameActors = gameActors;
+        this.registry = registry;
+        this.broadcaster = broadcaster;
+        this.lobbyService = lobbyService;
+        this.tablebases = tablebases;
+        this.tracer = tracer;
+        for (var type : UserGameCommand.CommandType.values()) {
+            commandTimes.put(type, metrics.histogram("chess_ws_command_seconds",
+                    "Time spent handling each websocket command", "command", type.name()));
+            commandErrors.put(type, metrics.counter("chess_ws_command_errors_total",
+                    "Websocket commands answered with an error", "command", type.name()));
+        }
     }
 
     @Override
     public void handleConnect(@NotNull WsConnectContext ctx) {
         ctx.enableAutomaticPings();
+        registry.open(ctx);
+        broadcaster.open(ctx);
         System.out.println("Websocket connected!");
     }
 
     @Override
-    public void handleMessage(@NotNull WsMessageContext ctx) throws Exception {
-        var message = ctx.message();
-        HashMap<String, String> map = new Gson().fromJson(message, HashMap.class);
-        if (map.get("commandType").equals("MAKE_MOVE")) {
-            makeMove(ctx);
-        } else if (map.get("commandType").equals("CONNECT")) {
-            try {
-                connect(ctx);
-            } catch (Exception e) {
-                var error = new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR, e.getMessage());
-                ctx.send(new Gson().toJson(error));
+    public void handleMessage(@NotNull WsMessageContext ctx) {
+        tracer.begin();
+        UserGameCommand command;
+        try {
+            command = JsonCodec.decodeCommand(ctx.message());
+        } catch (IllegalArgumentException e) {
+            broadcaster.send(ctx, new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: " + e.getMessage()));
+            Trace.finish("ws undecodable", null);
+            return;
+        }
+        Trace.mark("decode");
+        dispatch(ctx, command);
+    }
+
+    @Override
+    public void handleBinaryMessage(@NotNull WsBinaryMessageContext ctx) {
+        tracer.begin();
+        UserGameCommand command;
+        try {
+            command = BinaryCodec.decodeCommand(ByteBuffer.wrap(ctx.data(), ctx.offset(), ctx.length()));
+        } catch (IllegalArgumentException e) {
+            broadcaster.send(ctx, new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: " + e.getMessage()));
+            Trace.finish("ws undecodable", null);
+            return;
+        }
+        Trace.mark("decode");
+        dispatch(ctx, command);
+    }
+
+    private void dispatch(WsContext ctx, UserGameCommand command) {
+        if (command.getGameID() == null) {
+            handleCommand(ctx, command);
+            return;
+        }
+//        Commands for a game run one at a time on that game's mailbox, so they can't race each other
+        gameActors.submit(command.getGameID(), Trace.handOff(() -> handleCommand(ctx, command)));
+    }
+
+    private void handleCommand(WsContext ctx, UserGameCommand command) {
+        long start = System.nanoTime();
+        try {
+            switch (command.getCommandType()) {
+                case MAKE_MOVE -> makeMove(ctx, (MakeMoveCommand) command);
+                case CONNECT -> connect(ctx, (ConnectCommand) command);
+                case LEAVE -> leave(ctx, command);
+                case RESIGN -> resign(ctx, command);
+                case SUBSCRIBE_ANALYSIS -> subscribeAnalysis(ctx, command);
+                case SYNC -> sync(ctx, command);
+                case SUBSCRIBE_LOBBY -> lobbyService.subscribe(ctx, command.getAuthToken());
+                case null -> throw new Exception("Error: Missing command type");
             }
-        } else if (map.get("commandType").equals("LEAVE")) {
-            leave(ctx);
-        } else if (map.get("commandType").equals("RESIGN")) {
-            resign(ctx);
+        } catch (Exception e) {
+            if (command.getCommandType() != null) {
+                commandErrors.get(command.getCommandType()).increment();
+            }
+            var error = new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR, e.getMessage());
+            broadcaster.send(ctx, error);
+        } finally {
+            if (command.getCommandType() != null) {
+                commandTimes.get(command.getCommandType()).recordSince(start);
+            }
+            Trace.finish("ws " + command.getCommandType(),
+                    command.getGameID() == null ? null : "game=" + command.getGameID());
         }
     }
 
-    private void resign(WsMessageContext ctx) throws Exception {
-        var message = ctx.message();
-        UserGameCommand command = new Gson().fromJson(message, UserGameCommand.class);
-        var connections = users.get(command.getGameID());
+    private void sync(WsContext ctx, UserGameCommand command) throws Exception {
+        userService.getUser(command.getAuthToken());
+        sendBoard(ctx, command);
+    }
+
+    private void subscribeAnalysis(WsContext ctx, UserGameCommand command) throws Exception {
+        userService.getUser(command.getAuthToken());
+        GameData gameData;
+        try {
+            gameData = userService.getGame(command.getGameID());
+        } catch (Exception e) {
+            throw new Exception("Error: Requested game doesn't exist");
+        }
+
+//        Engine analysis would be an unfair advantage to the players themselves
+        if (command.getAuthToken().equals(gameData.whiteAuthToken())
+                || command.getAuthToken().equals(gameData.blackAuthToken())) {
+            throw new Exception("Error: Only observers can receive analysis");
+        }
+        analysisService.subscribe(command.getGameID(), ctx, gameData.game());
+    }
+
+    private void resign(WsContext ctx, UserGameCommand command) throws Exception {
+        var connections = registry.connections(command.getGameID());
 
         var game = userService.getGame(command.getGameID());
 
@@ -66,53 +168,38 @@ public class WsRequestHandler implements WsConnectHandler, WsMessageHandler, WsC
                 (gameData.blackAuthToken() != null &&
                         gameData.blackAuthToken().equals(command.getAuthToken())
                 ))) {
-            var notification = new Gson().toJson(new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR,
-                    "Error: An observer is not allowed to resign"));
-            ctx.send(notification);
+            var notification = new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR,
+                    "Error: An observer is not allowed to resign");
+            broadcaster.send(ctx, notification);
             return;
         }
 
         if (game.game().isGameOver()) {
-            var notification = new Gson().toJson(new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR,
-                    "Error: You cannot resign after the game is over"));
-            ctx.send(notification);
+            var notification = new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR,
+                    "Error: You cannot resign after the game is over");
+            broadcaster.send(ctx, notification);
             return;
         }
 
 //        Mark the game as resigned
         userService.resignGame(game);
+        analysisService.positionChanged(command.getGameID(), game.game());
 
-        var notification = new Gson().toJson(new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-                user + " resigned"));
-        for (var con : connections) {
-            try {
-                con.ctx().send(notification);
-            } catch (Exception e) {
-                connections.remove(con);
-            }
-        }
+        var notification = new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+                user + " resigned");
+        broadcaster.broadcast(connections, notification, null);
     }
 
-    private void leave(WsMessageContext ctx) throws Exception {
+    private void leave(WsContext ctx, UserGameCommand command) throws Exception {
         ctx.closeSession();
 //        Remove ctx from gameMap
-        var message = ctx.message();
-        UserGameCommand command = new Gson().fromJson(message, UserGameCommand.class);
-        var connections = users.get(command.getGameID());
+        registry.remove(command.getGameID(), ctx);
+        analysisService.unsubscribe(command.getGameID(), ctx);
 
         var user = userService.getUser(command.getAuthToken());
-        var notification = new Gson().toJson(new ServerNotificationMessage
-                (ServerMessage.ServerMessageType.NOTIFICATION, user + " left the game"));
-
-        var iterator = connections.iterator();
-        while (iterator.hasNext()) {
-            var con = iterator.next();
-            if (con.ctx().equals(ctx)) {
-                iterator.remove();
-            } else {
-                con.ctx().send(notification);
-            }
-        }
+        var notification = new ServerNotificationMessage
+                (ServerMessage.ServerMessageType.NOTIFICATION, user + " left the game");
+        broadcaster.broadcast(registry.connections(command.getGameID()), notification, null);
 
 //        Remove user from color in game
         userService.removeUserFromGame(command.getAuthToken(), command.getGameID());
@@ -120,13 +207,25 @@ public class WsRequestHandler implements WsConnectHandler, WsMessageHandler, WsC
 
     @Override
     public void handleClose(@NotNull WsCloseContext ctx) {
+        sessionClosed(ctx, registry.removeSession(ctx.sessionId()));
         ctx.closeSession();
         System.out.println("Websocket closed!");
     }
 
-    private void connect(WsMessageContext ctx) throws Exception {
-        var message = ctx.message();
-        UserGameCommand command = new Gson().fromJson(message, UserGameCommand.class);
+    /**
+     * Forgets a session everywhere it is kept, once it has closed or been reaped
+     *
+     * @param games the games the session was connected to
+     */
+    void sessionClosed(WsContext ctx, Set<Integer> games) {
+        for (var gameID : games) {
+            analysisService.unsubscribe(gameID, ctx);
+        }
+        lobbyService.unsubscribe(ctx.sessionId());
+        broadcaster.remove(ctx.sessionId());
+    }
+
+    private void connect(WsContext ctx, ConnectCommand command) throws Exception {
         String user = userService.getUser(command.getAuthToken());
         GameData game;
 
@@ -152,49 +251,26 @@ public class WsRequestHandler implements WsConnectHandler, WsMessageHandler, WsC
             addUserToMap(ctx, ParticipationType.OBSERVER, command);
         }
 
+//        Only a client that asks for binary frames gets them, starting with the board
+        if (command.wantsBinaryFrames()) {
+            broadcaster.useBinary(ctx);
+        }
         sendBoard(ctx, command);
 
-        var connection = new UserConnection(ctx, participationType);
-        var connections = users.get(command.getGameID());
-        var notification = new Gson().toJson(new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-                user + " joined the game as " + participationType + "!"));
-
-        var iterator = connections.iterator();
-        while (iterator.hasNext()) {
-            var con = iterator.next();
-            if (!con.equals(connection)) {
-//                    Try to send a message. If the connection was closed without a leave message,
-//                    we simply remove the connection from our map
-                try {
-                    if (!con.ctx().session.isOpen()) {
-                        iterator.remove();
-                    } else {
-                        con.ctx().send(notification);
-                    }
-                } catch (Exception e) {
-                    iterator.remove();
-                }
-            }
-        }
+        var notification = new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+                user + " joined the game as " + participationType + "!");
+        broadcaster.broadcast(registry.connections(command.getGameID()), notification, ctx);
 
     }
 
-    private void addUserToMap(WsMessageContext ctx, ParticipationType participationType, UserGameCommand command) {
-        var connection = new UserConnection(ctx, participationType);
-        if (users.containsKey(command.getGameID())) {
-            users.get(command.getGameID()).add(connection);
-        } else {
-            users.put(command.getGameID(), new HashSet<>());
-            users.get(command.getGameID()).add(connection);
-        }
+    private void addUserToMap(WsContext ctx, ParticipationType participationType, ConnectCommand command) {
+        registry.add(command.getGameID(), new UserConnection(ctx, participationType, command.wantsMoveDeltas()));
     }
 
-    private void makeMove(WsMessageContext ctx) throws Exception {
-        var message = ctx.message();
-        MakeMoveCommand command = new Gson().fromJson(message, MakeMoveCommand.class);
+    private void makeMove(WsContext ctx, MakeMoveCommand command) throws Exception {
         if (userService.getGame(command.getGameID()).game().isGameOver()) {
             var error = new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: No moves can be made after the game is ended");
-            ctx.send(new Gson().toJson(error));
+            broadcaster.send(ctx, error);
             return;
         }
 //            Try to make the move. If fails, send a descriptive error to the client
@@ -202,7 +278,7 @@ public class WsRequestHandler implements WsConnectHandler, WsMessageHandler, WsC
             userService.makeMove(command);
         } catch (Exception e) {
             var error = new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR, e.getMessage());
-            ctx.send(new Gson().toJson(error));
+            broadcaster.send(ctx, error);
             return;
         }
 
@@ -211,51 +287,69 @@ public class WsRequestHandler implements WsConnectHandler, WsMessageHandler, WsC
             gameData = userService.getGame(command.getAuthToken(), command.getGameID());
         } catch (Exception e) {
             var error = new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: You are unauthorized to make that move");
-            ctx.send(new Gson().toJson(error));
+            broadcaster.send(ctx, error);
             return;
         }
         var loadBoardMessage = new LoadBoardMessage(ServerMessage.ServerMessageType.LOAD_GAME, gameData.game());
-        var loadBoardMessageJson = new Gson().toJson(loadBoardMessage);
 
         var color = gameData.game().getTeamTurn() == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
         var user = userService.getUser(command.getAuthToken());
         var moveNotification = new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION,
                 user + ": " + color + " " + reverseParseMove(command.getMove()).toUpperCase());
 
-        var connections = users.get(command.getGameID());
-        for (var con : connections) {
-//            Send the updated board to everyone
-            con.ctx().send(loadBoardMessageJson);
-//            Send the notification about the move to everyone else
-            if (!con.ctx().session.equals(ctx.session)) {
-                con.ctx().send(moveNotification);
-            }
-        }
+        analysisService.positionChanged(command.getGameID(), gameData.game());
+        Trace.mark("analysis");
+
+//        Each message is serialized once and queued for every connection, so no one waits on a slow observer
+        var connections = registry.connections(command.getGameID());
+        var wantDeltas = connections.stream().filter(UserConnection::moveDeltas).toList();
+        var wantBoards = connections.stream().filter(con -> !con.moveDeltas()).toList();
+        var game = gameData.game();
+//        Checkmate and stalemate are answered from the tablebases when they cover the position
+        game.setTablebases(tablebases);
+        var status = gameStatus(game);
+        var moveApplied = new MoveAppliedMessage(ServerMessage.ServerMessageType.MOVE_APPLIED, command.getMove().pack(),
+                game.getMoveHistory().size(), status, Zobrist.hash(game));
+        Trace.mark("status");
+
+//        Send the updated board (or just the move) to everyone, and the notification about the move to everyone else
+        broadcaster.broadcast(wantBoards, loadBoardMessage, null);
+        broadcaster.broadcast(wantDeltas, moveApplied, null);
+        broadcaster.broadcast(connections, moveNotification, ctx);
 
 //        Send message if check, checkmate, or stalemate
-        var endGameNotification = specialGameNotification(gameData);
+        var endGameNotification = statusNotification(status, game.getTeamTurn());
         if (endGameNotification == null) {
             return;
         }
-        for (var con : connections) {
-            con.ctx().send(new Gson().toJson(endGameNotification));
-        }
+        broadcaster.broadcast(connections, endGameNotification, null);
     }
 
-    private ServerNotificationMessage specialGameNotification(GameData gameData) {
-        var game = gameData.game();
-        if (game.isInCheckmate(ChessGame.TeamColor.WHITE)) {
-            return new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, "WHITE is in checkmate!");
-        } else if (game.isInCheckmate(ChessGame.TeamColor.BLACK)) {
-            return new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, "BLACK is in checkmate!");
-        } else if (game.isInCheck(ChessGame.TeamColor.WHITE)) {
-            return new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, "WHITE is in check!");
-        } else if (game.isInCheck(ChessGame.TeamColor.BLACK)) {
-            return new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, "BLACK is in check!");
+    /**
+     * Checks the position after a move. Only the side to move can be in check, since a move may not
+     * leave its own king attacked, but either side without a move ends the game the way
+     * {@link ChessGame#isGameOver()} sees it.
+     */
+    private MoveAppliedMessage.GameStatus gameStatus(ChessGame game) {
+        var toMove = game.getTeamTurn();
+        if (game.isInCheckmate(toMove)) {
+            return MoveAppliedMessage.GameStatus.CHECKMATE;
+        } else if (game.isInCheck(toMove)) {
+            return MoveAppliedMessage.GameStatus.CHECK;
         } else if (game.isInStalemate(ChessGame.TeamColor.WHITE) || game.isInStalemate(ChessGame.TeamColor.BLACK)) {
-            return new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, "Stalemate!");
+            return MoveAppliedMessage.GameStatus.STALEMATE;
         }
-        return null;
+        return MoveAppliedMessage.GameStatus.IN_PROGRESS;
+    }
+
+    private ServerNotificationMessage statusNotification(MoveAppliedMessage.GameStatus status, ChessGame.TeamColor toMove) {
+        var text = switch (status) {
+            case CHECKMATE -> toMove + " is in checkmate!";
+            case CHECK -> toMove + " is in check!";
+            case STALEMATE -> "Stalemate!";
+            case IN_PROGRESS -> null;
+        };
+        return text == null ? null : new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, text);
     }
 
     private String reverseParseMove(ChessMove move) {
@@ -268,11 +362,10 @@ public class WsRequestHandler implements WsConnectHandler, WsMessageHandler, WsC
         return new String(new char[]{col, row});
     }
 
-    private void sendBoard(WsMessageContext ctx, UserGameCommand command) throws Exception {
+    private void sendBoard(WsContext ctx, UserGameCommand command) throws Exception {
         var gameData = userService.getGame(command.getGameID());
         var loadBoardMessage = new LoadBoardMessage(ServerMessage.ServerMessageType.LOAD_GAME, gameData.game());
-        var loadBoardMessageJson = new Gson().toJson(loadBoardMessage);
-        ctx.send(loadBoardMessageJson);
+        broadcaster.send(ctx, loadBoardMessage);
     }
 
 }
@@ -0,0 +1,19 @@
+package service;
+
+import chess.ReturnGameData;
+import websocket.messages.LobbyMessage;
+
+/**
+ * Told about every change to the game list, right after it is saved
+ */
+@FunctionalInterface
+public interface GameListListener {
+
+    /**
+     * @param event   what changed
+     * @param game    the game as it is now, or null for a {@link LobbyMessage.Event#SNAPSHOT} after the games were cleared
+     * @param version the game list version after the change. A {@link LobbyMessage.Event#GAME_ENDED}
+     *                doesn't change the listing, so it leaves the version as it was.
+     */
+    void gameListChanged(LobbyMessage.Event event, ReturnGameData game, long version);
+}
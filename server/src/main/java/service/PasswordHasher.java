@@ -0,0 +1,134 @@
+package service;
+
+import metrics.Histogram;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hashes and checks passwords on a small pool of its own threads.
+ * <p>
+ * BCrypt is deliberately slow, so it runs on at most one thread per core no matter how many
+ * requests arrive at once, and other endpoints keep their threads. A limited number of requests
+ * may wait for a thread. Past that, callers get a {@link ServiceUnavailableException} straight
+ * away instead of joining an ever longer line.
+ */
+public class PasswordHasher {
+
+    private final int cost;
+    private final ThreadPoolExecutor executor;
+
+    private final Histogram hashTimes = new Histogram();
+    private final Histogram verifyTimes = new Histogram();
+    private final Histogram queueWaits = new Histogram();
+    private final LongAdder rejections = new LongAdder();
+
+    public PasswordHasher() {
+        this(10, Runtime.getRuntime().availableProcessors(), 64);
+    }
+
+    /**
+     * @param cost      the BCrypt log rounds for new hashes
+     * @param threads   how many passwords may be hashed at once
+     * @param maxQueued how many requests may wait for a thread before more are turned away
+     */
+    public PasswordHasher(int cost, int threads, int maxQueued) {
+        this.cost = cost;
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxQueued), Thread.ofPlatform().daemon().name("password-hasher-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public String hash(String password) {
+        return run(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost)), hashTimes);
+    }
+
+    public boolean verify(String password, String hash) {
+        return run(() -> BCrypt.checkpw(password, hash), verifyTimes);
+    }
+
+    private <T> T run(Callable<T> work, Histogram times) {
+        long queuedAt = System.nanoTime();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                long start = System.nanoTime();
+                queueWaits.record(start - queuedAt);
+                try {
+                    return work.call();
+                } finally {
+                    times.recordSince(start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            throw new ServiceUnavailableException("server busy, try again later", e);
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public long hashes() {
+        return hashTimes.count();
+    }
+
+    public long verifies() {
+        return verifyTimes.count();
+    }
+
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * @return how many requests are waiting for a thread right now
+     */
+    public int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public Duration averageHashTime() {
+        return hashTimes.mean();
+    }
+
+    public Duration averageVerifyTime() {
+        return verifyTimes.mean();
+    }
+
+    public Duration averageQueueWait() {
+        return queueWaits.mean();
+    }
+
+    public Histogram hashTimes() {
+        return hashTimes;
+    }
+
+    public Histogram verifyTimes() {
+        return verifyTimes;
+    }
+
+    /**
+     * @return how long requests waited for a thread
+     */
+    public Histogram queueWaits() {
+        return queueWaits;
+    }
+}
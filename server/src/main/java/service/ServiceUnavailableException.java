@@ -0,0 +1,11 @@
+package service;
+
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+
+    public ServiceUnavailableException(String message, Throwable ex) {
+        super(message, ex);
+    }
+}
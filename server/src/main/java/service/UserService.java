@@ -3,28 +3,75 @@ package service;
 import chess.*;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
-import org.mindrot.jbcrypt.BCrypt;
+import dataaccess.DuplicateKeyException;
+import dataaccess.GamePage;
+import dataaccess.GameQuery;
+import metrics.Trace;
 import websocket.commands.MakeMoveCommand;
+import websocket.messages.LobbyMessage;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class UserService {
     private final DataAccess dataAccess;
+    private final PasswordHasher passwordHasher;
+    //    Goes up whenever a game is created or a seat changes, so a cached game list can tell it is stale
+    private final AtomicLong gameListVersion = new AtomicLong();
+    private final List<GameListListener> gameListListeners = new CopyOnWriteArrayList<>();
 
     public UserService(DataAccess dataAccess) {
+        this(dataAccess, new PasswordHasher());
+    }
+
+    public UserService(DataAccess dataAccess, PasswordHasher passwordHasher) {
         this.dataAccess = dataAccess;
+        this.passwordHasher = passwordHasher;
     }
 
     public void clear() throws DataAccessException {
         dataAccess.clear();
+        Trace.mark("persist");
+        gameListChanged(LobbyMessage.Event.SNAPSHOT, null);
+    }
+
+    public long gameListVersion() {
+        return gameListVersion.get();
+    }
+
+    public void addGameListListener(GameListListener listener) {
+        gameListListeners.add(listener);
+    }
+
+    private void gameListChanged(LobbyMessage.Event event, GameData game) {
+        notifyGameListListeners(event, game, gameListVersion.incrementAndGet());
+    }
+
+    /**
+     * Tells lobby listeners a game is over. Listings don't show whether a game has ended, so the
+     * version stays where it is and cached listings and their ETags stay valid.
+     */
+    private void gameEnded(GameData game) {
+        notifyGameListListeners(LobbyMessage.Event.GAME_ENDED, game, gameListVersion.get());
+    }
+
+    private void notifyGameListListeners(LobbyMessage.Event event, GameData game, long version) {
+        var summary = game == null ? null
+                : new ReturnGameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName());
+        for (var listener : gameListListeners) {
+            listener.gameListChanged(event, summary, version);
+        }
     }
 
     private String encryptPassword(String password) {
-        return BCrypt.hashpw(password, BCrypt.gensalt());
+        return passwordHasher.hash(password);
     }
 
-    public AuthData register(UserData user) throws AlreadyTakenException, BadRequestException, DataAccessException {
+    public AuthData register(UserData user)
+            throws AlreadyTakenException, BadRequestException, ServiceUnavailableException, DataAccessException {
         if (user.username() == null || user.password() == null || user.email() == null) {
             throw new BadRequestException("bad request");
         }
@@ -34,10 +81,19 @@ public class UserService {
         if (dataAccess.getUser(user.username()) != null) {
             throw new AlreadyTakenException("already taken");
         }
-
-        dataAccess.createUser(new UserData(user.username(), encryptPassword(user.password()), user.email()));
+        Trace.mark("load");
+
+        var hashedPassword = encryptPassword(user.password());
+        Trace.mark("bcrypt");
+        try {
+            dataAccess.createUser(new UserData(user.username(), hashedPassword, user.email()));
+        } catch (DuplicateKeyException e) {
+//            Someone else registered the same name since the check above
+            throw new AlreadyTakenException("already taken", e);
+        }
         var authData = new AuthData(generateAuthToken(), user.username());
         dataAccess.createAuth(authData);
+        Trace.mark("persist");
         return authData;
     }
 
@@ -50,32 +106,37 @@ public class UserService {
         }
 
         var userData = dataAccess.getUser(loginRequest.username());
+        Trace.mark("load");
         if (userData == null) {
             throw new InvalidAuthException("unauthorized");
         }
-        if (!BCrypt.checkpw(loginRequest.password(), userData.password())) {
+        boolean verified = passwordHasher.verify(loginRequest.password(), userData.password());
+        Trace.mark("bcrypt");
+        if (!verified) {
             throw new InvalidAuthException("unauthorized");
         }
 
         var authData = new AuthData(generateAuthToken(), loginRequest.username());
         dataAccess.createAuth(authData);
+        Trace.mark("persist");
         return authData;
     }
 
     public void logout(String authToken) throws DataAccessException {
         verifyAuth(authToken);
         dataAccess.deleteAuth(authToken);
+        Trace.mark("persist");
     }
 
     public HashSet<ReturnGameData> listGames(String authToken) throws InvalidAuthException, DataAccessException {
+        return new HashSet<>(listGames(authToken, GameQuery.ALL).games());
+    }
+
+    public GamePage listGames(String authToken, GameQuery query) throws InvalidAuthException, DataAccessException {
         verifyAuth(authToken);
-        var games = dataAccess.listGames();
-        var newGames = new HashSet<ReturnGameData>();
-        for (var game : games) {
-            var newGame = new ReturnGameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName());
-            newGames.add(newGame);
-        }
-        return newGames;
+        var page = dataAccess.listGames(query);
+        Trace.mark("load");
+        return page;
     }
 
     public int createGame(String authToken, String gameName) throws BadRequestException, InvalidAuthException, DataAccessException {
@@ -85,13 +146,18 @@ public class UserService {
 
         verifyAuth(authToken);
         var game = new GameData(0, null, null, null, null, gameName, new ChessGame());
-        return dataAccess.createGame(game);
+        int gameID = dataAccess.createGame(game);
+        Trace.mark("persist");
+        gameListChanged(LobbyMessage.Event.GAME_CREATED,
+                new GameData(gameID, null, null, null, null, gameName, game.game()));
+        return gameID;
     }
 
     public void joinGame(String authToken, String playerColor, int gameID)
             throws AlreadyTakenException, BadRequestException, InvalidAuthException, DataAccessException {
         var authData = verifyAuth(authToken);
         var gameData = dataAccess.getGame(gameID);
+        Trace.mark("load");
 
         if (gameData == null) {
             throw new BadRequestException("bad request");
@@ -104,6 +170,8 @@ public class UserService {
                 var newGameData = new GameData(gameData.gameID(), authData.username(), authData.authToken(),
                         gameData.blackUsername(), gameData.blackAuthToken(), gameData.gameName(), gameData.game());
                 dataAccess.updateGame(gameID, newGameData);
+                Trace.mark("persist");
+                gameListChanged(LobbyMessage.Event.SEAT_TAKEN, newGameData);
             } else {
                 throw new AlreadyTakenException("already taken");
             }
@@ -113,6 +181,8 @@ public class UserService {
                         gameData.whiteUsername(), gameData.whiteAuthToken(),
                         authData.username(), authData.authToken(), gameData.gameName(), gameData.game());
                 dataAccess.updateGame(gameID, newGameData);
+                Trace.mark("persist");
+                gameListChanged(LobbyMessage.Event.SEAT_TAKEN, newGameData);
             } else {
                 throw new AlreadyTakenException("already taken");
             }
@@ -124,6 +194,7 @@ public class UserService {
     public GameData getGame(String authToken, int gameID) throws Exception {
         var authData = verifyAuth(authToken);
         var gameData = dataAccess.getGame(gameID);
+        Trace.mark("load");
 
         if (gameData == null) {
             throw new BadRequestException("bad request");
@@ -140,6 +211,7 @@ public class UserService {
     //    For getting the game for observers
     public GameData getGame(int gameID) throws Exception {
         var gameData = dataAccess.getGame(gameID);
+        Trace.mark("load");
 
         if (gameData == null) {
             throw new BadRequestException("bad request");
@@ -148,7 +220,7 @@ public class UserService {
         return gameData;
     }
 
-    private AuthData verifyAuth(String authToken) throws InvalidAuthException, DataAccessException {
+    public AuthData verifyAuth(String authToken) throws InvalidAuthException, DataAccessException {
         if (authToken == null || authToken.isBlank()) {
             throw new InvalidAuthException("unauthorized");
         }
@@ -162,6 +234,7 @@ public class UserService {
             }
         }
 
+        Trace.mark("auth");
         if (data == null) {
             throw new InvalidAuthException("unauthorized");
         }
@@ -175,6 +248,7 @@ public class UserService {
 
     public void makeMove(MakeMoveCommand command) throws Exception {
         GameData gameData = dataAccess.getGame(command.getGameID());
+        Trace.mark("load");
         ChessGame game = gameData.game();
 
 //        Make sure that the player is authorized
@@ -194,12 +268,18 @@ public class UserService {
         }
 
         game.makeMove(command.getMove());
+        Trace.mark("validate");
         dataAccess.updateGame(gameData.gameID(), new GameData(gameData.gameID(), gameData.whiteUsername(), gameData.whiteAuthToken(),
                 gameData.blackUsername(), gameData.blackAuthToken(), gameData.gameName(), game));
+        Trace.mark("persist");
+        if (game.isGameOver()) {
+            gameEnded(gameData);
+        }
     }
 
     public String getUser(String authToken) throws Exception {
         var authDatas = dataAccess.getAuth(authToken);
+        Trace.mark("auth");
 
         for (var authData : authDatas) {
             if (authData.authToken().equals(authToken)) {
@@ -214,18 +294,26 @@ public class UserService {
         if (game == null) {
             return;
         }
+        GameData newGameData;
         if (game.whiteAuthToken() != null && game.whiteAuthToken().equals(authToken)) {
-            dataAccess.updateGame(gameID, new GameData(gameID, null, null,
-                    game.blackUsername(), game.blackAuthToken(), game.gameName(), game.game()));
+            newGameData = new GameData(gameID, null, null,
+                    game.blackUsername(), game.blackAuthToken(), game.gameName(), game.game());
         } else if (game.blackAuthToken() != null && game.blackAuthToken().equals(authToken)) {
-            dataAccess.updateGame(gameID, new GameData(gameID, game.whiteUsername(), game.whiteAuthToken(),
-                    null, null, game.gameName(), game.game()));
+            newGameData = new GameData(gameID, game.whiteUsername(), game.whiteAuthToken(),
+                    null, null, game.gameName(), game.game());
+        } else {
+            return;
         }
+        dataAccess.updateGame(gameID, newGameData);
+        Trace.mark("persist");
+        gameListChanged(LobbyMessage.Event.SEAT_FREED, newGameData);
     }
 
     public void resignGame(GameData game) throws DataAccessException {
         game.game().resign();
         dataAccess.updateGame(game.gameID(), new GameData(game.gameID(), game.whiteUsername(), game.whiteAuthToken(),
                 game.blackUsername(), game.blackAuthToken(), game.gameName(), game.game()));
+        Trace.mark("persist");
+        gameEnded(game);
     }
 }
@@ -0,0 +1,142 @@
+package dataaccess;
+
+import chess.AuthData;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private AuthCache newCache(int maxEntries) {
+        return new AuthCache(maxEntries, Duration.ofNanos(100), Duration.ofNanos(10), now::get);
+    }
+
+    @Test
+    void entriesExpire() {
+        var cache = newCache(10);
+        var auth = new AuthData("token", "joe");
+        cache.put("token", auth);
+        cache.put("missing", null);
+
+        now.set(9);
+        assertEquals(auth, cache.get("token").authData());
+        assertNull(cache.get("missing").authData());
+
+        now.set(10);
+        assertNull(cache.get("missing"));
+        now.set(100);
+        assertNull(cache.get("token"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void staysWithinItsBound() {
+        var cache = newCache(3);
+        for (int i = 0; i < 10; i++) {
+            cache.put("token" + i, new AuthData("token" + i, "joe"));
+        }
+        assertEquals(3, cache.size());
+        assertNotNull(cache.get("token9"));
+    }
+
+    @Test
+    void deletedTokensCantBeCachedAgain() {
+        var cache = newCache(10);
+        var auth = new AuthData("token", "joe");
+        cache.put("token", auth);
+        cache.delete("token");
+
+        cache.put("token", auth);
+        assertNull(cache.get("token").authData());
+
+        now.set(100);
+        assertNull(cache.get("token"));
+        cache.put("token", auth);
+        assertEquals(auth, cache.get("token").authData());
+    }
+
+    @Test
+    void tombstonesSurviveMakingRoom() {
+        var cache = newCache(2);
+        cache.delete("gone");
+        cache.put("a", new AuthData("a", "joe"));
+        cache.put("b", new AuthData("b", "joe"));
+        cache.put("gone", new AuthData("gone", "joe"));
+        assertNull(cache.get("gone").authData());
+    }
+
+    /**
+     * Deletes the token it was asked about after reading it, like a logout landing between a
+     * lookup's read and the lookup caching what it read
+     */
+    private static class RacingDataAccess extends MemoryDataAccess {
+        DataAccess cache;
+
+        @Override
+        public HashSet<AuthData> getAuth(String authToken) throws DataAccessException {
+            var found = super.getAuth(authToken);
+            if (cache != null) {
+                var deleter = cache;
+                cache = null;
+                deleter.deleteAuth(authToken);
+            }
+            return found;
+        }
+    }
+
+    @Test
+    void lookupRacingADeleteDoesntReviveTheToken() throws DataAccessException {
+        var store = new RacingDataAccess();
+        var db = new CachingDataAccess(store, CachingDataAccess.Mode.WRITE_THROUGH,
+                new GameUpdateQueue(store, 10, 10), newCache(10));
+        var auth = new AuthData("token", "joe");
+        store.createAuth(auth);
+        store.cache = db;
+
+//        This lookup read the token before it was deleted, so it still sees it once
+        assertTrue(db.getAuth("token").contains(auth));
+        assertTrue(db.getAuth("token").isEmpty());
+    }
+
+    /**
+     * Counts how many lookups reach the store
+     */
+    private static class CountingDataAccess extends MemoryDataAccess {
+        int authReads;
+
+        @Override
+        public HashSet<AuthData> getAuth(String authToken) throws DataAccessException {
+            authReads++;
+            return super.getAuth(authToken);
+        }
+    }
+
+    @Test
+    void cachingDataAccessRemembersTokens() throws DataAccessException {
+        var store = new CountingDataAccess();
+        var db = new CachingDataAccess(store, CachingDataAccess.Mode.WRITE_THROUGH,
+                new GameUpdateQueue(store, 10, 10), newCache(10));
+        var auth = new AuthData("token", "joe");
+        db.createAuth(auth);
+
+        assertTrue(db.getAuth("token").contains(auth));
+        assertTrue(db.getAuth("token").contains(auth));
+        assertEquals(0, store.authReads);
+
+//        Unknown tokens are looked up once and then remembered as missing
+        assertTrue(db.getAuth("nope").isEmpty());
+        assertTrue(db.getAuth("nope").isEmpty());
+        assertEquals(1, store.authReads);
+
+//        A deleted token is answered by its tombstone
+        db.deleteAuth("token");
+        assertTrue(db.getAuth("token").isEmpty());
+        assertEquals(1, store.authReads);
+    }
+}
@@ -0,0 +1,176 @@
+package dataaccess;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingDataAccessTest {
+
+    private static final ChessMove E4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+
+    /**
+     * Counts the reads and writes that reach the underlying store
+     */
+    private static class CountingDataAccess extends MemoryDataAccess {
+        int gameReads;
+        int gameWrites;
+
+        @Override
+        public GameData getGame(int gameID) throws DataAccessException {
+            gameReads++;
+            return super.getGame(gameID);
+        }
+
+        @Override
+        public void updateGame(int gameID, GameData gameData) throws DataAccessException {
+            gameWrites++;
+            super.updateGame(gameID, gameData);
+        }
+    }
+
+    private static GameData withWhite(GameData game, String username) {
+        return new GameData(game.gameID(), username, "token", game.blackUsername(), game.blackAuthToken(),
+                game.gameName(), game.game());
+    }
+
+    @Test
+    void readsAreServedFromMemory() throws DataAccessException {
+        var store = new CountingDataAccess();
+        int gameID = store.createGame(new GameData(0, null, null, null, null, "game", new ChessGame()));
+        var cache = new CachingDataAccess(store, CachingDataAccess.Mode.WRITE_THROUGH);
+
+        var first = cache.getGame(gameID);
+        assertSame(first, cache.getGame(gameID));
+        assertEquals(1, store.gameReads);
+        assertNull(cache.getGame(gameID + 1));
+    }
+
+    @Test
+    void writeThroughSavesImmediately() throws DataAccessException {
+        var store = new CountingDataAccess();
+        var cache = new CachingDataAccess(store, CachingDataAccess.Mode.WRITE_THROUGH);
+        int gameID = cache.createGame(new GameData(0, null, null, null, null, "game", new ChessGame()));
+
+        cache.updateGame(gameID, withWhite(cache.getGame(gameID), "joe"));
+        assertEquals("joe", store.getGame(gameID).whiteUsername());
+        assertEquals(0, cache.pendingWrites());
+    }
+
+    @Test
+    void writeBehindCoalescesUntilFlushed() throws Exception {
+        var store = new CountingDataAccess();
+        var cache = new CachingDataAccess(store, CachingDataAccess.Mode.WRITE_BEHIND);
+        int gameID = cache.createGame(new GameData(0, null, null, null, null, "game", new ChessGame()));
+
+        var gameData = withWhite(cache.getGame(gameID), "joe");
+        cache.updateGame(gameID, gameData);
+        gameData.game().makeMove(E4);
+        cache.updateGame(gameID, gameData);
+
+        assertEquals(0, store.gameWrites);
+        assertEquals("joe", cache.getGame(gameID).whiteUsername());
+        assertEquals("joe", cache.listGames().iterator().next().whiteUsername());
+        assertEquals(1, cache.pendingWrites());
+
+        assertEquals(1, cache.flush());
+        assertEquals(1, store.gameWrites);
+        assertEquals("joe", store.getGame(gameID).whiteUsername());
+        assertEquals(1, store.getGame(gameID).game().getMoveHistory().size());
+        assertEquals(0, cache.flush());
+    }
+
+    @Test
+    void queuedWritesKeepTheStateTheyWereQueuedWith() throws Exception {
+        var store = new CountingDataAccess();
+        var cache = new CachingDataAccess(store, CachingDataAccess.Mode.WRITE_BEHIND);
+        int gameID = cache.createGame(new GameData(0, null, null, null, null, "game", new ChessGame()));
+
+        var gameData = cache.getGame(gameID);
+        cache.updateGame(gameID, gameData);
+//        Changed in place without an update, so it shouldn't be saved
+        gameData.game().makeMove(E4);
+        cache.flush();
+        assertTrue(store.getGame(gameID).game().getMoveHistory().isEmpty());
+    }
+
+    @Test
+    void clearDropsQueuedWrites() throws DataAccessException {
+        var store = new CountingDataAccess();
+        var cache = new CachingDataAccess(store, CachingDataAccess.Mode.WRITE_BEHIND);
+        int gameID = cache.createGame(new GameData(0, null, null, null, null, "game", new ChessGame()));
+        cache.updateGame(gameID, withWhite(cache.getGame(gameID), "joe"));
+
+        cache.clear();
+        assertEquals(0, cache.pendingWrites());
+        assertNull(cache.getGame(gameID));
+        assertTrue(cache.listGames().isEmpty());
+    }
+
+    @Test
+    void listingPagesThroughGames() throws DataAccessException {
+        var cache = new CachingDataAccess(new MemoryDataAccess(), CachingDataAccess.Mode.WRITE_BEHIND);
+        for (var name : new String[]{"alpha", "beta", "alps", "gamma", "also"}) {
+            cache.createGame(new GameData(0, null, null, null, null, name, new ChessGame()));
+        }
+
+        var first = cache.listGames(new GameQuery(0, 2, false, null));
+        assertEquals(2, first.games().size());
+        assertEquals(2, first.nextCursor());
+        var second = cache.listGames(new GameQuery(first.nextCursor(), 2, false, null));
+        assertEquals(3, second.games().getFirst().gameID());
+        var last = cache.listGames(new GameQuery(second.nextCursor(), 2, false, null));
+        assertEquals(1, last.games().size());
+        assertNull(last.nextCursor());
+
+        assertEquals(3, cache.listGames(new GameQuery(0, 10, false, "al")).games().size());
+    }
+
+    @Test
+    void openGameListingSeesUnsavedSeats() throws DataAccessException {
+        var cache = new CachingDataAccess(new MemoryDataAccess(), CachingDataAccess.Mode.WRITE_BEHIND);
+        int gameID = cache.createGame(new GameData(0, null, null, null, null, "game", new ChessGame()));
+        var game = cache.getGame(gameID);
+        cache.updateGame(gameID, new GameData(gameID, "joe", "token", "bob", "token2", game.gameName(), game.game()));
+
+        assertTrue(cache.listGames(new GameQuery(0, 10, true, null)).games().isEmpty());
+        assertEquals("joe", cache.listGames(GameQuery.ALL).games().getFirst().whiteUsername());
+    }
+
+    @Test
+    void dropsGamesReadLongestAgoButKeepsUnwrittenOnes() throws DataAccessException {
+        var store = new CountingDataAccess();
+        var cache = new CachingDataAccess(store, CachingDataAccess.Mode.WRITE_BEHIND,
+                new GameUpdateQueue(store, 100, 100), new AuthCache(10, Duration.ofMinutes(1), Duration.ofSeconds(5)), 2);
+        int unwritten = cache.createGame(new GameData(0, null, null, null, null, "unwritten", new ChessGame()));
+        cache.updateGame(unwritten, withWhite(cache.getGame(unwritten), "joe"));
+        int oldest = cache.createGame(new GameData(0, null, null, null, null, "oldest", new ChessGame()));
+        int newest = cache.createGame(new GameData(0, null, null, null, null, "newest", new ChessGame()));
+
+        assertEquals(2, cache.cachedGames());
+        assertEquals("joe", cache.getGame(unwritten).whiteUsername());
+        assertEquals("newest", cache.getGame(newest).gameName());
+        assertEquals(0, store.gameReads);
+        assertEquals("oldest", cache.getGame(oldest).gameName());
+        assertEquals(1, store.gameReads);
+    }
+
+    @Test
+    void failedWritesAreNotServedFromMemory() throws DataAccessException {
+        var store = new CountingDataAccess() {
+            @Override
+            public void updateGame(int gameID, GameData gameData) throws DataAccessException {
+                throw new DataAccessException("database is down");
+            }
+        };
+        var cache = new CachingDataAccess(store, CachingDataAccess.Mode.WRITE_THROUGH);
+        int gameID = cache.createGame(new GameData(0, null, null, null, null, "game", new ChessGame()));
+
+        var gameData = cache.getGame(gameID);
+        assertThrows(DataAccessException.class, () -> cache.updateGame(gameID, withWhite(gameData, "joe")));
+        assertNull(cache.getGame(gameID).whiteUsername());
+        assertEquals(1, store.gameReads);
+    }
+}
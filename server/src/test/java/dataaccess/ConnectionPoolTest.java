@@ -0,0 +1,130 @@
+package dataaccess;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+
+    /**
+     * Stands in for a database connection, remembering whether it was closed
+     */
+    private static class FakeConnection {
+        final AtomicBoolean closed = new AtomicBoolean();
+        boolean autoCommit = true;
+        boolean rolledBack;
+
+        Connection connection() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "close" -> {
+                            closed.set(true);
+                            yield null;
+                        }
+                        case "isClosed" -> closed.get();
+                        case "isValid" -> !closed.get();
+                        case "getAutoCommit" -> autoCommit;
+                        case "setAutoCommit" -> {
+                            autoCommit = (boolean) args[0];
+                            yield null;
+                        }
+                        case "rollback" -> {
+                            rolledBack = true;
+                            yield null;
+                        }
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        default -> null;
+                    });
+        }
+    }
+
+    private final List<FakeConnection> opened = new ArrayList<>();
+
+    private ConnectionPool newPool(int maxSize) {
+        return new ConnectionPool(() -> {
+            var fake = new FakeConnection();
+            opened.add(fake);
+            return fake.connection();
+        }, 0, maxSize, Duration.ofMillis(50), Duration.ZERO);
+    }
+
+    @Test
+    void reusesReturnedConnections() throws SQLException {
+        var pool = newPool(2);
+        pool.borrow().close();
+        pool.borrow().close();
+
+        assertEquals(1, opened.size());
+        assertFalse(opened.getFirst().closed.get());
+        var stats = pool.stats();
+        assertEquals(2, stats.borrows());
+        assertEquals(1, stats.created());
+        assertEquals(0, stats.active());
+        assertEquals(1, stats.idle());
+    }
+
+    @Test
+    void returnedConnectionsCanNotBeUsed() throws SQLException {
+        var pool = newPool(1);
+        var connection = pool.borrow();
+        connection.close();
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, () -> connection.prepareStatement("SELECT 1"));
+//        Closing twice doesn't return it twice
+        connection.close();
+        pool.borrow();
+        assertThrows(SQLException.class, pool::borrow);
+    }
+
+    @Test
+    void borrowTimesOutWhenExhausted() throws SQLException {
+        var pool = newPool(1);
+        var held = pool.borrow();
+        assertThrows(SQLException.class, pool::borrow);
+        assertEquals(1, pool.stats().timeouts());
+
+        held.close();
+        pool.borrow();
+    }
+
+    @Test
+    void openTransactionsAreRolledBackOnReturn() throws SQLException {
+        var pool = newPool(1);
+        var connection = pool.borrow();
+        connection.setAutoCommit(false);
+        connection.close();
+
+        assertTrue(opened.getFirst().rolledBack);
+        assertTrue(opened.getFirst().autoCommit);
+    }
+
+    @Test
+    void brokenConnectionsAreDropped() throws SQLException {
+        var pool = newPool(1);
+        var connection = pool.borrow();
+        opened.getFirst().closed.set(true);
+        connection.close();
+
+        pool.borrow();
+        assertEquals(2, opened.size());
+    }
+
+    @Test
+    void maintenanceKeepsIdleConnectionsReady() {
+        var pool = new ConnectionPool(() -> new FakeConnection().connection(), 3, 5, Duration.ofMillis(50), Duration.ZERO);
+        pool.maintain();
+        assertEquals(3, pool.stats().idle());
+
+        pool.close();
+        assertEquals(0, pool.stats().idle());
+    }
+}
@@ -4,6 +4,9 @@ import chess.*;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -14,6 +17,7 @@ class DataAccessTest {
     @Test
     void clear() throws DataAccessException {
         SQLDataAccess db = new SQLDataAccess();
+        db.clear();
         db.createUser(user);
         db.clear();
         assertNull(db.getUser("Joe"));
@@ -22,10 +26,54 @@ class DataAccessTest {
     @Test
     void createUser() throws DataAccessException {
         SQLDataAccess db = new SQLDataAccess();
+        db.clear();
         db.createUser(user);
         assertEquals(user, db.getUser(user.username()));
     }
 
+    @Test
+    void createUserTwiceFails() throws DataAccessException {
+        SQLDataAccess db = new SQLDataAccess();
+        db.clear();
+        db.createUser(user);
+//        Usernames are unique in the database itself
+        assertThrows(DuplicateKeyException.class, () -> db.createUser(new UserData(user.username(), "other", "other@j.com")));
+    }
+
+    @Test
+    void schemaIsUpToDate() throws DataAccessException {
+        new SQLDataAccess();
+        int latest = SchemaMigrator.MIGRATIONS.getLast().version();
+//        Running the migrations again finds nothing left to do
+        assertEquals(latest, SchemaMigrator.migrate(SchemaMigrator.MIGRATIONS));
+    }
+
+    @Test
+    void lookupColumnsAreIndexed() throws Exception {
+        new SQLDataAccess();
+        var indexes = new HashSet<String>();
+        try (var conn = DatabaseManager.getConnection(); var preparedStatement = conn.prepareStatement(
+                "SELECT DISTINCT INDEX_NAME FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE()")) {
+            var rs = preparedStatement.executeQuery();
+            while (rs.next()) {
+                indexes.add(rs.getString(1));
+            }
+        }
+        assertTrue(indexes.containsAll(List.of("users_username", "authData_username", "games_whiteAuthToken",
+                "games_blackAuthToken")), indexes.toString());
+    }
+
+    @Test
+    void migrationStopsOnRowsItsCheckFinds() throws DataAccessException {
+        new SQLDataAccess();
+        int latest = SchemaMigrator.MIGRATIONS.getLast().version();
+        var blocked = new SchemaMigrator.Migration(latest + 1, "blocked", "SELECT 'Joe' UNION SELECT 'Ann'");
+        var e = assertThrows(DataAccessException.class, () -> SchemaMigrator.migrate(List.of(blocked)));
+        assertTrue(e.getMessage().contains("Joe, Ann"), e.getMessage());
+//        Nothing was recorded, so the real migrations are still current
+        assertEquals(latest, SchemaMigrator.migrate(SchemaMigrator.MIGRATIONS));
+    }
+
     @Test
     void createUserFails() throws DataAccessException {
         SQLDataAccess db = new SQLDataAccess();
@@ -123,6 +171,26 @@ class DataAccessTest {
         assertEquals(new HashSet<GameData>(), nada);
     }
 
+    @Test
+    void listGamePages() throws DataAccessException {
+        SQLDataAccess db = new SQLDataAccess();
+        db.clear();
+        db.createGame(new GameData(0, "Bob", "token", "Joe", "token2", "full_game", new ChessGame()));
+        int open = db.createGame(new GameData(0, null, null, null, null, "open game", new ChessGame()));
+        db.createGame(new GameData(0, null, null, null, null, "fullness", new ChessGame()));
+
+        var first = db.listGames(new GameQuery(0, 2, false, null));
+        assertEquals(2, first.games().size());
+        assertEquals(open, first.nextCursor());
+        var last = db.listGames(new GameQuery(first.nextCursor(), 2, false, null));
+        assertEquals(1, last.games().size());
+        assertNull(last.nextCursor());
+
+        assertEquals(2, db.listGames(new GameQuery(0, 10, true, null)).games().size());
+//        The underscore is matched literally, not as a wildcard
+        assertEquals(1, db.listGames(new GameQuery(0, 10, false, "full_")).games().size());
+    }
+
     @Test
     void updateGame() throws DataAccessException {
         SQLDataAccess db = new SQLDataAccess();
@@ -151,6 +219,102 @@ class DataAccessTest {
         assertThrows(DataAccessException.class, () -> db.updateGame(1, gameData2));
     }
 
+    @Test
+    void updateGames() throws DataAccessException {
+        SQLDataAccess db = new SQLDataAccess();
+        db.clear();
+        int id1 = db.createGame(new GameData(0, null, null, null, null, "MyGame", new ChessGame()));
+        int id2 = db.createGame(new GameData(0, null, null, null, null, "MyGame2", new ChessGame()));
+        GameData gameData1 = new GameData(id1, "Bob", null, null, null, "MyGame", new ChessGame());
+        GameData gameData2 = new GameData(id2, null, null, "Joe", null, "MyGame2", new ChessGame());
+
+        db.updateGames(Map.of(id1, gameData1, id2, gameData2));
+
+        assertEquals(gameData1, db.getGame(id1));
+        assertEquals(gameData2, db.getGame(id2));
+    }
+
+    @Test
+    void updateGamesFails() throws DataAccessException {
+        SQLDataAccess db = new SQLDataAccess();
+        db.clear();
+        int id1 = db.createGame(new GameData(0, null, null, null, null, "MyGame", new ChessGame()));
+        int id2 = db.createGame(new GameData(0, null, null, null, null, "MyGame2", new ChessGame()));
+        GameData gameData1 = new GameData(id1, "Bob", null, null, null, "MyGame", new ChessGame());
+//        Gives the second game the first one's ID, so the batch fails
+        GameData gameData2 = new GameData(id1, null, null, "Joe", null, "MyGame2", new ChessGame());
+
+        var batch = new LinkedHashMap<Integer, GameData>();
+        batch.put(id1, gameData1);
+        batch.put(id2, gameData2);
+        assertThrows(DataAccessException.class, () -> db.updateGames(batch));
+
+//        Nothing from the failed batch was saved
+        assertNull(db.getGame(id1).whiteUsername());
+    }
+
+    @Test
+    void movesReplayFromLog() throws DataAccessException, InvalidMoveException {
+        SQLDataAccess db = new SQLDataAccess();
+        db.clear();
+        int gameID = db.createGame(new GameData(0, "Bob", "token", "Joe", "token2", "MyGame", new ChessGame()));
+        var gameData = db.getGame(gameID);
+
+//        Shuffle the knights one move at a time, well past when a snapshot is written
+        var moves = new ChessMove[]{
+                new ChessMove(new ChessPosition(1, 7), new ChessPosition(3, 6), null),
+                new ChessMove(new ChessPosition(8, 7), new ChessPosition(6, 6), null),
+                new ChessMove(new ChessPosition(3, 6), new ChessPosition(1, 7), null),
+                new ChessMove(new ChessPosition(6, 6), new ChessPosition(8, 7), null)};
+        for (int ply = 0; ply < 45; ply++) {
+            gameData.game().makeMove(moves[ply % moves.length]);
+            db.updateGame(gameID, gameData);
+        }
+
+        var loaded = new SQLDataAccess().getGame(gameID);
+        assertEquals(gameData, loaded);
+        assertEquals(gameData.game().getMoveHistory(), loaded.game().getMoveHistory());
+    }
+
+    @Test
+    void seatChangesOnlyAppendNewMoves() throws DataAccessException, InvalidMoveException {
+        SQLDataAccess db = new SQLDataAccess();
+        db.clear();
+        int gameID = db.createGame(new GameData(0, "Bob", "token", "Joe", "token2", "MyGame", new ChessGame()));
+        var game = db.getGame(gameID).game();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        db.updateGame(gameID, new GameData(gameID, "Bob", "token", "Joe", "token2", "MyGame", game));
+
+//        Joe leaves and Ann joins, which rewrites the snapshot but not the log
+        db.updateGame(gameID, new GameData(gameID, "Bob", "token", null, null, "MyGame", game));
+        db.updateGame(gameID, new GameData(gameID, "Bob", "token", "Ann", "token3", "MyGame", game));
+        game.makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+
+//        A new data access has to find out how far the log goes before appending
+        var restarted = new SQLDataAccess();
+        restarted.updateGame(gameID, new GameData(gameID, "Bob", "token", "Ann", "token3", "MyGame", game));
+
+        var loaded = new SQLDataAccess().getGame(gameID);
+        assertEquals("Ann", loaded.blackUsername());
+        assertEquals(game.getMoveHistory(), loaded.game().getMoveHistory());
+    }
+
+    @Test
+    void resignationIsSaved() throws DataAccessException, InvalidMoveException {
+        SQLDataAccess db = new SQLDataAccess();
+        db.clear();
+        int gameID = db.createGame(new GameData(0, "Bob", "token", "Joe", "token2", "MyGame", new ChessGame()));
+        var gameData = db.getGame(gameID);
+        gameData.game().makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        db.updateGame(gameID, gameData);
+        gameData.game().resign();
+        db.updateGame(gameID, gameData);
+
+        var loaded = new SQLDataAccess().getGame(gameID);
+        assertTrue(loaded.game().isResigned());
+        assertEquals(1, loaded.game().getMoveHistory().size());
+    }
+
     @Test
     void createAuth() throws DataAccessException {
         SQLDataAccess db = new SQLDataAccess();
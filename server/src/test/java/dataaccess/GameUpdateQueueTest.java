@@ -0,0 +1,85 @@
+package dataaccess;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameUpdateQueueTest {
+
+    /**
+     * Records each batch written, and can be told to fail
+     */
+    private static class BatchRecorder extends MemoryDataAccess {
+        final List<Map<Integer, GameData>> batches = new ArrayList<>();
+        boolean failing;
+
+        @Override
+        public void updateGames(Map<Integer, GameData> games) throws DataAccessException {
+            if (failing) {
+                throw new DataAccessException("database is down");
+            }
+            batches.add(Map.copyOf(games));
+            super.updateGames(games);
+        }
+    }
+
+    private static GameData game(int gameID, String whiteUsername) {
+        return new GameData(gameID, whiteUsername, null, null, null, "game", new ChessGame());
+    }
+
+    @Test
+    void coalescesUpdatesIntoOneBatch() throws DataAccessException {
+        var store = new BatchRecorder();
+        var queue = new GameUpdateQueue(store, 100, 100);
+        queue.add(1, game(1, "a"));
+        queue.add(1, game(1, "b"));
+        queue.add(2, game(2, "c"));
+        assertEquals(2, queue.depth());
+
+        assertEquals(2, queue.flush());
+        assertEquals(1, store.batches.size());
+        assertEquals("b", store.batches.getFirst().get(1).whiteUsername());
+        assertEquals(0, queue.depth());
+        assertEquals(1, queue.flushes());
+        assertEquals(2, queue.gamesWritten());
+        assertEquals(0, queue.flush());
+    }
+
+    @Test
+    void fullQueueFlushesOnTheCallersThread() throws DataAccessException {
+        var store = new BatchRecorder();
+        var queue = new GameUpdateQueue(store, 100, 2);
+        queue.add(1, game(1, "a"));
+        queue.add(2, game(2, "a"));
+//        Games already waiting can still be replaced without a flush
+        queue.add(2, game(2, "b"));
+        assertTrue(store.batches.isEmpty());
+
+        queue.add(3, game(3, "a"));
+        assertEquals(1, store.batches.size());
+        assertEquals(2, store.batches.getFirst().size());
+        assertEquals(1, queue.depth());
+    }
+
+    @Test
+    void failedBatchStaysQueued() throws DataAccessException {
+        var store = new BatchRecorder();
+        var queue = new GameUpdateQueue(store, 100, 100);
+        queue.add(1, game(1, "a"));
+
+        store.failing = true;
+        assertThrows(DataAccessException.class, queue::flush);
+        assertEquals(1, queue.depth());
+
+//        A newer state queued after the failure wins over the one that failed
+        queue.add(1, game(1, "b"));
+        store.failing = false;
+        assertEquals(1, queue.flush());
+        assertEquals("b", store.batches.getFirst().get(1).whiteUsername());
+    }
+}
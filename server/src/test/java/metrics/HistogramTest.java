@@ -0,0 +1,39 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void bucketsCoverEveryValue() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = Histogram.bucket(value);
+            assertTrue(Histogram.highestInBucket(bucket) >= value, "bucket for " + value);
+            assertTrue(bucket == 0 || Histogram.highestInBucket(bucket - 1) < value, "bucket for " + value);
+        }
+    }
+
+    @Test
+    void percentilesAreWithinABucket() {
+        var histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(1_000_000, histogram.max());
+        assertEquals(500_500_000, histogram.sum());
+        assertTrue(Math.abs(histogram.percentile(0.5) - 500_000) <= 500_000 / 16);
+        assertTrue(Math.abs(histogram.percentile(0.99) - 990_000) <= 990_000 / 16);
+        assertEquals(1_000_000, histogram.percentile(1.0));
+    }
+
+    @Test
+    void emptyHistogramReportsZero() {
+        var histogram = new Histogram();
+        assertEquals(0, histogram.percentile(0.99));
+        assertEquals(0, histogram.mean().toNanos());
+    }
+}
@@ -0,0 +1,47 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    void sameNameAndLabelsIsTheSameMetric() {
+        var registry = new MetricsRegistry();
+        var counter = registry.counter("requests_total", "Requests", "route", "GET /game");
+        assertSame(counter, registry.counter("requests_total", "Requests", "route", "GET /game"));
+        assertNotEquals(counter, registry.counter("requests_total", "Requests", "route", "POST /game"));
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("requests_total", "Requests"));
+    }
+
+    @Test
+    void scrapeWritesPrometheusText() {
+        var registry = new MetricsRegistry();
+        registry.counter("requests_total", "Requests", "route", "GET /game").add(3);
+        registry.gauge("queue_depth", "Waiting", () -> 7);
+        registry.histogram("call_seconds", "Calls", "op", "getGame").record(2_000_000);
+
+        var text = registry.scrape();
+        assertTrue(text.contains("# TYPE requests_total counter\n"));
+        assertTrue(text.contains("requests_total{route=\"GET /game\"} 3\n"));
+        assertTrue(text.contains("queue_depth 7\n"));
+        assertTrue(text.contains("# TYPE call_seconds summary\n"));
+        assertTrue(text.contains("call_seconds{op=\"getGame\",quantile=\"0.99\"} 0.002\n"));
+        assertTrue(text.contains("call_seconds_count{op=\"getGame\"} 1\n"));
+        assertTrue(text.contains("call_seconds_max{op=\"getGame\"} 0.002\n"));
+    }
+
+    @Test
+    void countsKeptElsewhereAreWrittenAsCounters() {
+        var registry = new MetricsRegistry();
+        long[] flushes = {4};
+        registry.counter("flushes_total", "Flushes", () -> flushes[0]);
+        flushes[0]++;
+
+        var text = registry.scrape();
+        assertTrue(text.contains("# TYPE flushes_total counter\n"));
+        assertTrue(text.contains("flushes_total 5\n"));
+        assertThrows(IllegalArgumentException.class, () -> registry.gauge("flushes_total", "Flushes", () -> 1));
+    }
+}
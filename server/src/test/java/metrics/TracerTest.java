@@ -0,0 +1,79 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TracerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<String> log = new ArrayList<>();
+
+    private void advanceMillis(long millis) {
+        clock.addAndGet(Duration.ofMillis(millis).toNanos());
+    }
+
+    @Test
+    void logsSlowRequestsWithTheirStages() {
+        var tracer = new Tracer(Duration.ofMillis(100), 1, log::add, clock::get);
+        tracer.begin();
+        advanceMillis(2);
+        Trace.mark("auth");
+        advanceMillis(150);
+        Trace.mark("load");
+        advanceMillis(3);
+        Trace.mark("auth");
+        advanceMillis(1);
+        Trace.finish("ws MAKE_MOVE", "game=7");
+
+        assertEquals(List.of("slow request=ws_MAKE_MOVE total=156.0ms game=7 auth=5.0ms load=150.0ms other=1.0ms"), log);
+        assertEquals(1, tracer.slowRequests().count());
+    }
+
+    @Test
+    void fastRequestsAreNotLogged() {
+        var tracer = new Tracer(Duration.ofMillis(100), 1, log::add, clock::get);
+        tracer.begin();
+        advanceMillis(99);
+        Trace.mark("load");
+        Trace.finish("GET /game", "status=200");
+
+        assertTrue(log.isEmpty());
+        assertEquals(0, tracer.slowRequests().count());
+    }
+
+    @Test
+    void unsampledRequestsAreNotTraced() {
+        var tracer = new Tracer(Duration.ZERO, 0, log::add, clock::get);
+        tracer.begin();
+        Trace.mark("load");
+        Trace.finish("GET /game", null);
+
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    void handOffMovesTheTraceToAnotherThread() throws Exception {
+        var tracer = new Tracer(Duration.ZERO, 1, log::add, clock::get);
+        tracer.begin();
+        Runnable task = Trace.handOff(() -> {
+            advanceMillis(5);
+            Trace.mark("persist");
+            Trace.finish("ws RESIGN", null);
+        });
+//        The handing thread no longer has a trace to finish
+        Trace.finish("ws RESIGN", null);
+        assertTrue(log.isEmpty());
+
+        try (var executor = Executors.newSingleThreadExecutor()) {
+            executor.submit(task).get();
+        }
+        assertEquals(List.of("slow request=ws_RESIGN total=5.0ms queue=0.0ms persist=5.0ms other=0.0ms"), log);
+    }
+}
@@ -0,0 +1,69 @@
+package server;
+
+import chess.ChessGame;
+import chess.tablebase.Tablebases;
+import org.junit.jupiter.api.Test;
+import websocket.JsonCodec;
+import websocket.messages.AnalysisMessage;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisServiceTest {
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private static FakeSession connect(Broadcaster broadcaster, String sessionId) {
+        var session = new FakeSession(sessionId);
+        broadcaster.open(session.ctx);
+        return session;
+    }
+
+    @Test
+    void finishedAnalysesAreForgotten() throws Exception {
+        var broadcaster = new Broadcaster(10, 10_000);
+        var service = new AnalysisService(broadcaster, Tablebases.none(), 1, Duration.ofMillis(50));
+        var watcher = connect(broadcaster, "watcher");
+        try {
+            service.subscribe(1, watcher.ctx, new ChessGame());
+            awaitTrue(() -> !watcher.sent().isEmpty());
+            assertInstanceOf(AnalysisMessage.class, JsonCodec.decodeMessage((String) watcher.sent().getFirst()));
+            awaitTrue(() -> service.running() == 0);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void theLastUnsubscribeStopsTheAnalysis() {
+        var broadcaster = new Broadcaster(10, 10_000);
+        var service = new AnalysisService(broadcaster, Tablebases.none(), 1, Duration.ofSeconds(30));
+        var first = connect(broadcaster, "first");
+        var second = connect(broadcaster, "second");
+        try {
+            service.subscribe(1, first.ctx, new ChessGame());
+            service.subscribe(1, second.ctx, new ChessGame());
+            assertEquals(1, service.running());
+
+            service.unsubscribe(1, first.ctx);
+            assertEquals(1, service.running());
+            service.unsubscribe(1, second.ctx);
+            assertEquals(0, service.running());
+
+//            With no one watching, new positions aren't analysed
+            service.positionChanged(1, new ChessGame());
+            assertEquals(0, service.running());
+        } finally {
+            service.shutdown();
+        }
+    }
+}
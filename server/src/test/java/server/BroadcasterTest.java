@@ -0,0 +1,136 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.junit.jupiter.api.Test;
+import websocket.JsonCodec;
+import websocket.commands.ParticipationType;
+import websocket.messages.ServerMessage;
+import websocket.messages.ServerNotificationMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BroadcasterTest {
+
+    private static ServerMessage note(String text) {
+        return new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, text);
+    }
+
+    private static FakeSession connect(Broadcaster broadcaster, String sessionId) {
+        var session = new FakeSession(sessionId);
+        broadcaster.open(session.ctx);
+        return session;
+    }
+
+    @Test
+    void framesAreWrittenInOrderOneAtATime() {
+        var broadcaster = new Broadcaster(10, 10_000);
+        var session = connect(broadcaster, "a");
+        for (var text : List.of("one", "two", "three")) {
+            broadcaster.send(session.ctx, note(text));
+        }
+//        The next frame only goes out once the write before it has finished
+        assertEquals(List.of(JsonCodec.encode(note("one"))), session.sent());
+        session.finishSend();
+        session.finishSend();
+        session.finishSend();
+        assertEquals(List.of(JsonCodec.encode(note("one")), JsonCodec.encode(note("two")), JsonCodec.encode(note("three"))),
+                session.sent());
+
+        broadcaster.send(session.ctx, note("four"));
+        assertEquals(4, session.sent().size());
+        assertEquals(4, broadcaster.framesQueued().count());
+    }
+
+    @Test
+    void broadcastsSkipTheSenderAndSessionsWithoutAQueue() {
+        var broadcaster = new Broadcaster(10, 10_000);
+        var sender = connect(broadcaster, "sender");
+        var watcher = connect(broadcaster, "watcher");
+        var closed = connect(broadcaster, "closed");
+        broadcaster.remove("closed");
+
+        var connections = List.of(new UserConnection(sender.ctx, ParticipationType.WHITE),
+                new UserConnection(watcher.ctx, ParticipationType.OBSERVER),
+                new UserConnection(closed.ctx, ParticipationType.OBSERVER));
+        broadcaster.broadcast(connections, note("moved"), sender.ctx);
+        assertEquals(List.of(), sender.sent());
+        assertEquals(List.of(JsonCodec.encode(note("moved"))), watcher.sent());
+        assertEquals(List.of(), closed.sent());
+    }
+
+    @Test
+    void aFullQueueDisconnectsTheSession() {
+        var broadcaster = new Broadcaster(2, 10_000);
+        var session = connect(broadcaster, "a");
+//        One frame being written and two waiting fill the queue
+        for (int i = 0; i < 3; i++) {
+            broadcaster.send(session.ctx, note("move " + i));
+        }
+        assertEquals(-1, session.closeCode);
+
+        broadcaster.send(session.ctx, note("one too many"));
+        assertEquals(StatusCode.POLICY_VIOLATION, session.closeCode);
+        assertEquals(1, broadcaster.evictions().count());
+
+//        Nothing still queued is written once the session has been dropped
+        session.finishSend();
+        broadcaster.send(session.ctx, note("after"));
+        assertEquals(1, session.sent().size());
+    }
+
+    @Test
+    void aSessionThatStopsReadingIsDroppedByTheLagCheck() throws Exception {
+        var broadcaster = new Broadcaster(10, 20);
+        var stalled = connect(broadcaster, "stalled");
+        var reading = connect(broadcaster, "reading");
+        broadcaster.send(stalled.ctx, note("never finishes"));
+        broadcaster.send(reading.ctx, note("finishes"));
+        reading.finishSend();
+
+        var scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            broadcaster.startLagChecks(scheduler, Duration.ofMillis(10));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (stalled.closeCode < 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+        } finally {
+            scheduler.shutdownNow();
+            assertTrue(scheduler.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        assertEquals(StatusCode.POLICY_VIOLATION, stalled.closeCode);
+        assertEquals(-1, reading.closeCode);
+        assertEquals(1, broadcaster.evictions().count());
+        assertEquals(0, broadcaster.checkLag());
+    }
+
+    @Test
+    void queueingBehindALaggingWriteDisconnectsTheSession() throws Exception {
+        var broadcaster = new Broadcaster(10, 20);
+        var session = connect(broadcaster, "a");
+        broadcaster.send(session.ctx, note("stuck"));
+        Thread.sleep(50);
+
+        broadcaster.send(session.ctx, note("too late"));
+        assertEquals(StatusCode.POLICY_VIOLATION, session.closeCode);
+        assertEquals(1, broadcaster.evictions().count());
+    }
+
+    @Test
+    void aFailedWriteStopsTheQueue() {
+        var broadcaster = new Broadcaster(10, 10_000);
+        var session = connect(broadcaster, "a");
+        broadcaster.send(session.ctx, note("one"));
+        broadcaster.send(session.ctx, note("two"));
+
+        session.failSend();
+        broadcaster.send(session.ctx, note("three"));
+        assertEquals(List.of(JsonCodec.encode(note("one"))), session.sent());
+        assertEquals(0, broadcaster.evictions().count());
+    }
+}
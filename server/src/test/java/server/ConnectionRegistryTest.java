@@ -0,0 +1,107 @@
+package server;
+
+import io.javalin.websocket.WsContext;
+import org.junit.jupiter.api.Test;
+import websocket.commands.ParticipationType;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionRegistryTest {
+
+    private static UserConnection join(ConnectionRegistry registry, int gameID, FakeSession session) {
+        var connection = new UserConnection(session.ctx, ParticipationType.OBSERVER);
+        registry.add(gameID, connection);
+        return connection;
+    }
+
+    @Test
+    void connectionsAreTrackedByGameAndBySession() {
+        var registry = new ConnectionRegistry();
+        var alice = new FakeSession("alice");
+        var bob = new FakeSession("bob");
+        var aliceInOne = join(registry, 1, alice);
+        var aliceInTwo = join(registry, 2, alice);
+        var bobInOne = join(registry, 1, bob);
+        assertEquals(Set.of(aliceInOne, bobInOne), Set.copyOf(registry.connections(1)));
+        assertEquals(Set.of(aliceInTwo), Set.copyOf(registry.connections(2)));
+        assertEquals(2, registry.size());
+
+        registry.remove(1, alice.ctx);
+        assertEquals(Set.of(bobInOne), Set.copyOf(registry.connections(1)));
+        assertEquals(2, registry.size());
+
+//        Leaving its last game drops the session, but it stays open
+        registry.remove(2, alice.ctx);
+        assertTrue(registry.connections(2).isEmpty());
+        assertEquals(1, registry.size());
+
+        assertEquals(Set.of(1), registry.removeSession("bob"));
+        assertTrue(registry.connections(1).isEmpty());
+        assertEquals(0, registry.size());
+        assertEquals(Set.of(), registry.removeSession("bob"));
+
+//        Alice never closed, so she is still reaped once her session dies
+        alice.open = false;
+        assertEquals(1, registry.reap());
+        assertEquals(0, registry.reap());
+    }
+
+    @Test
+    void reaperDropsDeadSessionsFromEveryMap() throws Exception {
+        var registry = new ConnectionRegistry();
+        var dead = new FakeSession("dead");
+        var live = new FakeSession("live");
+        join(registry, 1, dead);
+        join(registry, 2, dead);
+        var liveInOne = join(registry, 1, live);
+
+        var reaped = new CountDownLatch(1);
+        registry.addReapListener((ctx, games) -> reaped.countDown());
+        var scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            registry.startReaper(scheduler, Duration.ofMillis(10));
+            dead.open = false;
+            assertTrue(reaped.await(5, TimeUnit.SECONDS));
+        } finally {
+            scheduler.shutdownNow();
+            assertTrue(scheduler.awaitTermination(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(Set.of(liveInOne), Set.copyOf(registry.connections(1)));
+        assertTrue(registry.connections(2).isEmpty());
+        assertEquals(1, registry.size());
+        assertEquals(Set.of(), registry.removeSession("dead"));
+    }
+
+    @Test
+    void reapListenersHearWhichGamesEachSessionLeft() {
+        var registry = new ConnectionRegistry();
+        var player = new FakeSession("player");
+        var lobby = new FakeSession("lobby");
+        var live = new FakeSession("live");
+        join(registry, 1, player);
+        join(registry, 3, player);
+        registry.open(lobby.ctx);
+        join(registry, 1, live);
+
+        Map<WsContext, Set<Integer>> first = new ConcurrentHashMap<>();
+        Map<WsContext, Set<Integer>> second = new ConcurrentHashMap<>();
+        registry.addReapListener(first::put);
+        registry.addReapListener(second::put);
+        player.open = false;
+        lobby.open = false;
+
+        assertEquals(2, registry.reap());
+        var expected = Map.of(player.ctx, Set.of(1, 3), lobby.ctx, Set.<Integer>of());
+        assertEquals(expected, first);
+        assertEquals(expected, second);
+    }
+}
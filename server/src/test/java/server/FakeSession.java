@@ -0,0 +1,86 @@
+package server;
+
+import io.javalin.websocket.WsConnectContext;
+import io.javalin.websocket.WsContext;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * A websocket session for tests that remembers what was sent to it. A send stays in progress until
+ * the test finishes it, so the test decides how far behind the session is.
+ */
+class FakeSession {
+
+    final WsContext ctx;
+    volatile boolean open = true;
+    volatile int closeCode = -1;
+    //    Text frames as Strings and binary frames as byte arrays, in the order they were sent
+    private final List<Object> sent = new ArrayList<>();
+    private final Queue<WriteCallback> inProgress = new ArrayDeque<>();
+
+    FakeSession(String sessionId) {
+        var remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RemoteEndpoint.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "sendString" -> send(args[0], (WriteCallback) args[1]);
+                    case "sendBytes" -> {
+                        var bytes = (ByteBuffer) args[0];
+                        var copy = new byte[bytes.remaining()];
+                        bytes.get(copy);
+                        yield send(copy, (WriteCallback) args[1]);
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        var session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> open;
+                    case "getRemote" -> remote;
+                    case "close" -> {
+                        closeCode = args == null ? -1 : (int) args[0];
+                        open = false;
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "FakeSession " + sessionId;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        ctx = new WsConnectContext(sessionId, session);
+    }
+
+    private synchronized Object send(Object frame, WriteCallback callback) {
+        sent.add(frame);
+        inProgress.add(callback);
+        return null;
+    }
+
+    synchronized List<Object> sent() {
+        return List.copyOf(sent);
+    }
+
+    /**
+     * Finishes the oldest send still in progress
+     */
+    void finishSend() {
+        WriteCallback callback;
+        synchronized (this) {
+            callback = inProgress.remove();
+        }
+        callback.writeSuccess();
+    }
+
+    void failSend() {
+        WriteCallback callback;
+        synchronized (this) {
+            callback = inProgress.remove();
+        }
+        callback.writeFailed(new RuntimeException("Connection reset"));
+    }
+}
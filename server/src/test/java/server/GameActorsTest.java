@@ -0,0 +1,77 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameActorsTest {
+
+    @Test
+    void runsCommandsForAGameInOrder() throws Exception {
+        var actors = new GameActors();
+        var seen = Collections.synchronizedList(new ArrayList<Integer>());
+        for (int i = 0; i < 1000; i++) {
+            int command = i;
+            actors.submit(1, () -> seen.add(command));
+        }
+        actors.call(1, () -> null).get(5, TimeUnit.SECONDS);
+
+        var expected = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, seen);
+        actors.shutdown();
+    }
+
+    @Test
+    void gamesRunInParallel() throws Exception {
+        var actors = new GameActors();
+        var started = new CountDownLatch(2);
+//        Each game waits for the other to start, which only finishes if they run at the same time
+        for (int gameID : List.of(1, 2)) {
+            actors.submit(gameID, () -> {
+                started.countDown();
+                try {
+                    started.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        actors.shutdown();
+    }
+
+    @Test
+    void mailboxSurvivesACommandThatThrowsAnError() throws Exception {
+        var actors = new GameActors();
+        actors.submit(3, () -> {
+            throw new AssertionError("boom");
+        });
+        assertEquals(1, actors.call(3, () -> 1).get(5, TimeUnit.SECONDS));
+        actors.submit(3, () -> {
+            throw new StackOverflowError();
+        });
+        assertEquals(2, actors.call(3, () -> 2).get(5, TimeUnit.SECONDS));
+        actors.shutdown();
+    }
+
+    @Test
+    void callReturnsResultsAndFailures() throws Exception {
+        var actors = new GameActors();
+        assertEquals(42, actors.call(7, () -> 42).get(5, TimeUnit.SECONDS));
+        var failed = actors.call(7, () -> {
+            throw new IllegalStateException("bad");
+        });
+        var e = assertThrows(java.util.concurrent.ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        actors.shutdown();
+    }
+}
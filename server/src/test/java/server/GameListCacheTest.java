@@ -0,0 +1,35 @@
+package server;
+
+import dataaccess.GameQuery;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameListCacheTest {
+
+    @Test
+    void bodiesLastUntilTheVersionChanges() {
+        var cache = new GameListCache(8);
+        var body = cache.put(GameQuery.ALL, 3, "{\"games\":[]}");
+
+        assertSame(body, cache.get(GameQuery.ALL, 3));
+        assertEquals(cache.etag(3), body.etag());
+        assertNull(cache.get(GameQuery.ALL, 4));
+        assertNull(cache.get(new GameQuery(0, 10, true, null), 3));
+        assertNotEquals(cache.etag(3), cache.etag(4));
+    }
+
+    @Test
+    void staleBodiesMakeRoomFirst() {
+        var cache = new GameListCache(2);
+        var old = new GameQuery(0, 10, false, "a");
+        cache.put(old, 1, "old");
+        var current = new GameQuery(0, 10, false, "b");
+        cache.put(current, 2, "current");
+
+        cache.put(GameQuery.ALL, 2, "all");
+        assertNull(cache.get(old, 1));
+        assertEquals("current", cache.get(current, 2).json());
+        assertEquals("all", cache.get(GameQuery.ALL, 2).json());
+    }
+}
@@ -0,0 +1,114 @@
+package server;
+
+import websocket.JsonCodec;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Puts a running server under concurrent load and reports throughput and latency.
+ * <p>
+ * Usage: {@code LoadGenerator <port> [clients] [seconds]}, run from the server's test classes so it
+ * isn't shipped with the server. Each client registers its own user, then until time runs out
+ * alternates between listing games, which is a quick database read, and logging in again, which
+ * spends its time in BCrypt. Run it once against a server started normally and once against one
+ * started with {@code -Dchess.server.virtualThreads=true} to compare the two threading models.
+ */
+public class LoadGenerator {
+
+    private record Outcome(List<Long> latencies, Map<Integer, Integer> statuses) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: LoadGenerator <port> [clients] [seconds]");
+            System.exit(1);
+        }
+        var serverUrl = "http://localhost:" + Integer.parseInt(args[0]);
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        var duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 30);
+
+        var http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        var outcomes = new ArrayList<Future<Outcome>>();
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        try (var workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                outcomes.add(workers.submit(() -> runClient(http, serverUrl, deadline)));
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        var statuses = new TreeMap<Integer, Integer>();
+        var all = new ArrayList<Long>();
+        for (var outcome : outcomes) {
+            all.addAll(outcome.get().latencies());
+            outcome.get().statuses().forEach((status, count) -> statuses.merge(status, count, Integer::sum));
+        }
+        var latencies = all.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(latencies);
+
+        System.out.printf("%d clients, %d requests in %.1fs (%.0f/s)%n", clients, latencies.length, seconds, latencies.length / seconds);
+        System.out.printf("latency ms: p50 %.1f  p95 %.1f  p99 %.1f  max %.1f%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99), percentile(latencies, 1.0));
+        System.out.println("responses by status: " + statuses);
+    }
+
+    private static Outcome runClient(HttpClient http, String serverUrl, long deadline) throws Exception {
+        var latencies = new ArrayList<Long>();
+        var statuses = new TreeMap<Integer, Integer>();
+        var username = "load-" + UUID.randomUUID();
+        var credentials = JsonCodec.encode(Map.of("username", username, "password", "password", "email", "load@test"));
+
+        var registered = send(http, post(serverUrl + "/user", credentials), latencies, statuses);
+        if (registered.statusCode() != 200) {
+            return new Outcome(latencies, statuses);
+        }
+        var authToken = (String) JsonCodec.GSON.fromJson(registered.body(), Map.class).get("authToken");
+
+        boolean login = false;
+        while (System.nanoTime() < deadline) {
+            if (login) {
+                send(http, post(serverUrl + "/session", credentials), latencies, statuses);
+            } else {
+                var list = HttpRequest.newBuilder(URI.create(serverUrl + "/game")).header("authorization", authToken).GET().build();
+                send(http, list, latencies, statuses);
+            }
+            login = !login;
+        }
+        return new Outcome(latencies, statuses);
+    }
+
+    private static HttpRequest post(String url, String body) {
+        return HttpRequest.newBuilder(URI.create(url)).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private static HttpResponse<String> send(HttpClient http, HttpRequest request, List<Long> latencies,
+                                             Map<Integer, Integer> statuses) throws Exception {
+        long start = System.nanoTime();
+        var response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        latencies.add(System.nanoTime() - start);
+        statuses.merge(response.statusCode(), 1, Integer::sum);
+        return response;
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
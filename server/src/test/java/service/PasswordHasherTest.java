@@ -0,0 +1,52 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTest {
+
+    @Test
+    void hashesAndVerifies() {
+        var hasher = new PasswordHasher(4, 2, 4);
+        var hash = hasher.hash("myPassword");
+        assertTrue(hash.startsWith("$2a$04$"));
+        assertTrue(hasher.verify("myPassword", hash));
+        assertFalse(hasher.verify("notMyPassword", hash));
+
+        assertEquals(1, hasher.hashes());
+        assertEquals(2, hasher.verifies());
+        assertEquals(0, hasher.rejections());
+        hasher.shutdown();
+    }
+
+    @Test
+    void rejectsWhenSaturated() throws InterruptedException {
+//        One thread and one waiting spot, with a cost high enough that every hash is still running
+        var hasher = new PasswordHasher(12, 1, 1);
+        var callers = Executors.newFixedThreadPool(8);
+        var results = new ArrayList<Future<String>>();
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit(() -> hasher.hash("myPassword")));
+        }
+
+        int rejected = 0;
+        for (var result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                assertInstanceOf(ServiceUnavailableException.class, e.getCause());
+                rejected++;
+            }
+        }
+        assertTrue(rejected > 0);
+        assertEquals(rejected, hasher.rejections());
+        callers.shutdown();
+        hasher.shutdown();
+    }
+}
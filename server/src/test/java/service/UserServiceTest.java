@@ -7,6 +7,9 @@ import dataaccess.SQLDataAccess;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class UserServiceTest {
@@ -193,4 +196,26 @@ class UserServiceTest {
         service.joinGame(authData2.authToken(), "BLACK", gameID);
         assertThrows(AlreadyTakenException.class, () -> service.joinGame(authData3.authToken(), "BLACK", gameID));
     }
-}
\ No newline at end of file
+
+    @Test
+    void gameListListenersHearChanges() throws Exception {
+        var db = new MemoryDataAccess();
+        db.createAuth(new AuthData("token", user.username()));
+        var service = new UserService(db);
+        var events = new ArrayList<String>();
+        service.addGameListListener((event, game, version) -> events.add(event + " " + game + " " + version));
+
+        int gameID = service.createGame("token", "MyNewGame");
+        service.joinGame("token", "WHITE", gameID);
+        service.removeUserFromGame("token", gameID);
+        service.resignGame(service.getGame(gameID));
+
+        assertEquals(List.of(
+                "GAME_CREATED " + new ReturnGameData(gameID, null, null, "MyNewGame") + " 1",
+                "SEAT_TAKEN " + new ReturnGameData(gameID, user.username(), null, "MyNewGame") + " 2",
+                "SEAT_FREED " + new ReturnGameData(gameID, null, null, "MyNewGame") + " 3",
+                "GAME_ENDED " + new ReturnGameData(gameID, null, null, "MyNewGame") + " 3"), events);
+//        A game ending doesn't change the listing, so it leaves cached listings valid
+        assertEquals(3, service.gameListVersion());
+    }
+}
@@ -14,6 +14,8 @@ import java.util.Objects;
 public class ChessBoard {
 
     private final ChessPiece[][] board;
+    //    Built on first use and then kept in step with every addPiece/removePiece
+    private transient Evaluation evaluation;
 
     public ChessBoard() {
         this.board = new ChessPiece[8][8];
@@ -31,10 +33,25 @@ public class ChessBoard {
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
 //        Takes in position as 1-based index and converts it to 0-based index on the squares board
+        if (evaluation != null) {
+            var replaced = getPiece(position);
+            if (replaced != null) {
+                evaluation.remove(replaced, position);
+            }
+            if (piece != null) {
+                evaluation.add(piece, position);
+            }
+        }
         board[position.getRow() - 1][position.getColumn() - 1] = piece;
     }
 
     public void removePiece(ChessPosition position) {
+        if (evaluation != null) {
+            var removed = getPiece(position);
+            if (removed != null) {
+                evaluation.remove(removed, position);
+            }
+        }
         board[position.getRow() - 1][position.getColumn() - 1] = null;
     }
 
@@ -59,6 +76,20 @@ public class ChessBoard {
         setPawns(ChessGame.TeamColor.WHITE);
         setPawns(ChessGame.TeamColor.BLACK);
         clearMiddleSpace();
+        evaluation = null;
+    }
+
+    /**
+     * Gets the static evaluation of this board. The first call scans the board, after which
+     * the evaluation is updated incrementally as pieces are added and removed.
+     *
+     * @return the evaluation of the pieces currently on the board
+     */
+    public Evaluation getEvaluation() {
+        if (evaluation == null) {
+            evaluation = Evaluation.of(this);
+        }
+        return evaluation;
     }
 
     @Override
@@ -112,6 +143,15 @@ public class ChessBoard {
         return pieceString;
     }
 
+    /**
+     * @return a copy of the board that carries over its evaluation, so the copy doesn't rescan the board
+     */
+    ChessBoard copy() {
+        var copy = new ChessBoard(getBoardCopy());
+        copy.evaluation = evaluation == null ? null : evaluation.copy();
+        return copy;
+    }
+
     public ChessPiece[][] getBoardCopy() {
         ChessPiece[][] newBoard = new ChessPiece[8][8];
 
@@ -1,7 +1,12 @@
 package chess;
 
+import chess.tablebase.TablebaseResult;
+import chess.tablebase.Tablebases;
+
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 import static java.lang.Math.abs;
@@ -18,6 +23,8 @@ public class ChessGame {
     private TeamColor player;
     private final ArrayList<ChessMove> moveHistory;
     private boolean resigned;
+    //    Not part of the game itself, so it is neither saved nor sent
+    private transient Tablebases tablebases;
 
     public ChessGame() {
         this.board = new ChessBoard();
@@ -27,6 +34,29 @@ public class ChessGame {
         resigned = false;
     }
 
+    /**
+     * Rebuilds a game from its parts, as decoded by {@link CompactGame}
+     */
+    ChessGame(ChessBoard board, TeamColor player, List<ChessMove> moveHistory, boolean resigned) {
+        this.board = board;
+        this.player = player;
+        this.moveHistory = new ArrayList<>(moveHistory);
+        this.resigned = resigned;
+    }
+
+    /**
+     * Creates a copy of a game that can be played on without changing the original
+     *
+     * @param other the game to copy
+     */
+    public ChessGame(ChessGame other) {
+        this.board = other.board.copy();
+        this.player = other.player;
+        this.moveHistory = new ArrayList<>(other.moveHistory);
+        this.resigned = other.resigned;
+        this.tablebases = other.tablebases;
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -47,6 +77,13 @@ public class ChessGame {
         resigned = true;
     }
 
+    /**
+     * @return every move made so far, oldest first
+     */
+    public List<ChessMove> getMoveHistory() {
+        return Collections.unmodifiableList(moveHistory);
+    }
+
     public Collection<ChessMove> getColorMoves(TeamColor playerColor) {
         var validMoves = new ArrayList<ChessMove>();
         for (int row = 1; row < 9; row++) {
@@ -81,19 +118,16 @@ public class ChessGame {
      * startPosition
      */
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-//         Also make sure to add en passant and castling
+        var event = new MoveValidationEvent();
+        event.begin();
         var piece = board.getPiece(startPosition);
         if (piece == null) {
+            event.end("validMoves", null, 0, true);
             return null;
         }
-        var pieceMoves = piece.pieceMoves(board, startPosition);
-        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
-            pieceMoves.addAll(addCastleMoves(piece.getTeamColor()));
-        }
-        if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
-            addEnPassant(piece.getTeamColor(), startPosition, pieceMoves);
-        }
-        return movesThatDoNotLeadToCheck(pieceMoves, piece.getTeamColor());
+        var valid = legalMoves(piece, startPosition);
+        event.end("validMoves", piece.getPieceType(), valid.size(), true);
+        return valid;
     }
 
     /**
@@ -103,21 +137,27 @@ public class ChessGame {
      * @throws InvalidMoveException if move is invalid
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
+        var event = new MoveValidationEvent();
+        event.begin();
 //        Check if there's a piece in the starting position
         var piece = board.getPiece(move.getStartPosition());
         if (piece == null) {
+            event.end("makeMove", null, 0, false);
             throw new InvalidMoveException("Starting position is null");
         }
 
         //        Check if it's the player's turn
         var color = piece.getTeamColor();
         if (!color.equals(player)) {
+            event.end("makeMove", piece.getPieceType(), 0, false);
             throw new InvalidMoveException(String.format("%s tried to move during %s's turn", color, player.toString()));
         }
 
 //        Check if the move is valid
-        Collection<ChessMove> valid = validMoves(move.getStartPosition());
-        if (valid != null && valid.contains(move)) {
+        Collection<ChessMove> valid = legalMoves(piece, move.getStartPosition());
+        boolean legal = valid.contains(move);
+        event.end("makeMove", piece.getPieceType(), valid.size(), legal);
+        if (legal) {
             board.makeMove(move);
             moveHistory.add(move);
             player = player == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
@@ -126,6 +166,32 @@ public class ChessGame {
         }
     }
 
+    /**
+     * The moves the piece can make, without recording a {@link MoveValidationEvent}
+     */
+    private Collection<ChessMove> legalMoves(ChessPiece piece, ChessPosition startPosition) {
+//         Also make sure to add en passant and castling
+        var pieceMoves = piece.pieceMoves(board, startPosition);
+        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+            pieceMoves.addAll(addCastleMoves(piece.getTeamColor()));
+        }
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+            addEnPassant(piece.getTeamColor(), startPosition, pieceMoves);
+        }
+        return movesThatDoNotLeadToCheck(pieceMoves, piece.getTeamColor());
+    }
+
+    /**
+     * Plays a move that is already known to be valid, without checking it again
+     *
+     * @param move a move from {@link #getColorMoves} for the team to move
+     */
+    void applyMove(ChessMove move) {
+        board.makeMove(move);
+        moveHistory.add(move);
+        player = player == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+    }
+
     /**
      * Determines if the given team is in check
      *
@@ -160,6 +226,10 @@ public class ChessGame {
      * @return True if the specified team is in checkmate
      */
     public boolean isInCheckmate(TeamColor teamColor) {
+        var known = teamColor == player ? probeTablebase() : null;
+        if (known != null) {
+            return known.outcome() == TablebaseResult.Outcome.LOSS && known.pliesToMate() == 0;
+        }
         var checkNow = isInCheck(teamColor);
         if (checkNow) {
             var colorMoves = board.getColorMoves(teamColor);
@@ -177,6 +247,11 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
+//        A tablebase win or loss means there are moves left, but a draw could still be a stalemate
+        var known = teamColor == player ? probeTablebase() : null;
+        if (known != null && known.outcome() != TablebaseResult.Outcome.DRAW) {
+            return false;
+        }
         boolean checkNow = isInCheck(teamColor);
         if (!checkNow) {
             var colorMoves = board.getColorMoves(teamColor);
@@ -186,6 +261,28 @@ public class ChessGame {
         return false;
     }
 
+    /**
+     * Looks the current position up in the endgame tablebases, if the game was given any
+     *
+     * @return the result for the side to move, or null if no loaded tablebase covers the position
+     */
+    public TablebaseResult probeTablebase() {
+        return tablebases == null ? null : tablebases.probe(this);
+    }
+
+    /**
+     * Lets checkmate and stalemate checks, and searches of this game and its copies, answer from tablebases
+     *
+     * @param tablebases the tables to use, or null to use none
+     */
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    public boolean isResigned() {
+        return resigned;
+    }
+
     public boolean isGameOver() {
         return resigned || isInCheckmate(TeamColor.WHITE) || isInCheckmate(TeamColor.BLACK) ||
                 isInStalemate(TeamColor.WHITE) || isInStalemate(TeamColor.BLACK);
@@ -247,7 +344,7 @@ public class ChessGame {
         var castleMoves = new ArrayList<ChessMove>();
         int row = teamColor == TeamColor.WHITE ? 1 : 8;
         var kingPosition = new ChessPosition(row, 5);
-        if (!isInCheck(teamColor) && !isNull(kingPosition)) {
+        if (!isInCheck(teamColor) && isPiece(kingPosition, teamColor, ChessPiece.PieceType.KING)) {
             var rookPositionLeft = new ChessPosition(row, 1);
             var rookPositionRight = new ChessPosition(row, 8);
 
@@ -255,7 +352,7 @@ public class ChessGame {
 //            Check if the king has moved
             if (!hasMovedFrom(kingPosition)) {
 //                Check if the rooks have moved
-                if (!hasMovedFrom(rookPositionLeft) && !isNull(rookPositionLeft)) {
+                if (!hasMovedFrom(rookPositionLeft) && isPiece(rookPositionLeft, teamColor, ChessPiece.PieceType.ROOK)) {
 //                    Make sure that king doesn't pass through check and that there's no piece next to the rook
                     if (castleHelper(rookPositionLeft, kingPosition, teamColor, -1)
                             && board.getPiece(new ChessPosition(rookPositionLeft.getRow(), rookPositionLeft.getColumn() + 1)) == null) {
@@ -263,7 +360,7 @@ public class ChessGame {
                         castleMoves.add(new ChessMove(kingPosition, endPos, null));
                     }
                 }
-                if (!hasMovedFrom(rookPositionRight) && !isNull(rookPositionRight)) {
+                if (!hasMovedFrom(rookPositionRight) && isPiece(rookPositionRight, teamColor, ChessPiece.PieceType.ROOK)) {
                     if (castleHelper(rookPositionRight, kingPosition, teamColor, 1)) {
                         var endPos = new ChessPosition(kingPosition.getRow(), kingPosition.getColumn() + 2);
                         castleMoves.add(new ChessMove(kingPosition, endPos, null));
@@ -313,8 +410,9 @@ public class ChessGame {
         }
     }
 
-    private boolean isNull(ChessPosition position) {
-        return board.getPiece(position) == null;
+    private boolean isPiece(ChessPosition position, TeamColor color, ChessPiece.PieceType type) {
+        var piece = board.getPiece(position);
+        return piece != null && piece.getTeamColor() == color && piece.getPieceType() == type;
     }
 
     private boolean hasMovedFrom(ChessPosition position) {
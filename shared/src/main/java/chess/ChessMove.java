@@ -45,6 +45,27 @@ public class ChessMove {
         return promotionPiece;
     }
 
+    /**
+     * Packs this move into 15 bits: the start square, the end square and the promotion piece
+     *
+     * @return the packed move
+     * @see #unpack(int)
+     */
+    public int pack() {
+        int promotion = promotionPiece == null ? 0 : promotionPiece.ordinal() + 1;
+        return Zobrist.square(startPosition) | Zobrist.square(endPosition) << 6 | promotion << 12;
+    }
+
+    /**
+     * @param packed a move packed by {@link #pack()}
+     * @return the move that was packed
+     */
+    public static ChessMove unpack(int packed) {
+        int promotion = (packed >>> 12) & 0x7;
+        return new ChessMove(Zobrist.position(packed & 0x3F), Zobrist.position((packed >>> 6) & 0x3F),
+                promotion == 0 ? null : ChessPiece.PieceType.values()[promotion - 1]);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) {
@@ -0,0 +1,76 @@
+package chess;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * A compact binary form of a {@link ChessGame}: the board as one nibble per square, a flags byte
+ * for the side to move and resignation, then the move history as packed moves. A game in
+ * progress takes a few dozen bytes instead of the kilobytes of its JSON.
+ */
+public final class CompactGame {
+
+    private static final int BOARD_BYTES = 32;
+    private static final int BLACK = 8;
+    private static final int BLACK_TO_MOVE = 1;
+    private static final int RESIGNED = 2;
+
+    private CompactGame() {
+    }
+
+    /**
+     * @return how many bytes {@link #write} will use for a game
+     */
+    public static int size(ChessGame game) {
+        return BOARD_BYTES + 1 + 2 + 2 * game.getMoveHistory().size();
+    }
+
+    public static void write(ChessGame game, ByteBuffer out) {
+        var board = game.getBoard();
+        for (int square = 0; square < 64; square += 2) {
+            out.put((byte) (nibble(board.getPiece(Zobrist.position(square)))
+                    | nibble(board.getPiece(Zobrist.position(square + 1))) << 4));
+        }
+        int flags = (game.getTeamTurn() == ChessGame.TeamColor.BLACK ? BLACK_TO_MOVE : 0) | (game.isResigned() ? RESIGNED : 0);
+        out.put((byte) flags);
+
+        var history = game.getMoveHistory();
+        out.putShort((short) history.size());
+        for (var move : history) {
+            out.putShort((short) move.pack());
+        }
+    }
+
+    public static ChessGame read(ByteBuffer in) {
+        var board = new ChessBoard();
+        for (int square = 0; square < 64; square += 2) {
+            int both = in.get() & 0xFF;
+            addPiece(board, square, both & 0xF);
+            addPiece(board, square + 1, both >>> 4);
+        }
+        int flags = in.get();
+        int moves = in.getShort() & 0xFFFF;
+        var history = new ArrayList<ChessMove>(moves);
+        for (int i = 0; i < moves; i++) {
+            history.add(ChessMove.unpack(in.getShort() & 0xFFFF));
+        }
+        var turn = (flags & BLACK_TO_MOVE) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        return new ChessGame(board, turn, history, (flags & RESIGNED) != 0);
+    }
+
+    private static int nibble(ChessPiece piece) {
+        if (piece == null) {
+            return 0;
+        }
+        return (piece.getTeamColor() == ChessGame.TeamColor.BLACK ? BLACK : 0) | (piece.getPieceType().ordinal() + 1);
+    }
+
+    private static void addPiece(ChessBoard board, int square, int nibble) {
+        if (nibble == 0) {
+            return;
+        }
+        var color = (nibble & BLACK) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        var type = ChessPiece.PieceType.values()[(nibble & ~BLACK) - 1];
+        board.addPiece(Zobrist.position(square), new ChessPiece(color, type));
+    }
+}
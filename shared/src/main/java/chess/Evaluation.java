@@ -0,0 +1,248 @@
+package chess;
+
+/**
+ * A static evaluation of a chessboard that is kept up to date as pieces are added and removed.
+ * <p>
+ * Material and piece-square scores live in running totals that {@link ChessBoard} adjusts on
+ * every change, and are tapered between middlegame and endgame values by a phase counter.
+ * Pawn-structure and king-shelter terms only depend on where the pawns and kings are, so they
+ * are looked up in a pawn hash table instead of being recomputed for every position.
+ */
+public class Evaluation {
+
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final int PAWN_TABLE_SIZE = 1 << 14;
+    private static final PawnEntry[] PAWN_TABLE = new PawnEntry[PAWN_TABLE_SIZE];
+
+    private static final int DOUBLED_MIDGAME = -10;
+    private static final int DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDGAME = -10;
+    private static final int ISOLATED_ENDGAME = -15;
+    private static final int SHIELD_MIDGAME = 12;
+    //    Indexed by how many ranks the pawn has advanced from its own back rank
+    private static final int[] PASSED_MIDGAME = {0, 0, 5, 10, 20, 35, 60, 0};
+    private static final int[] PASSED_ENDGAME = {0, 0, 10, 20, 40, 70, 120, 0};
+
+    //    Running totals, always from white's point of view
+    private int midgame;
+    private int endgame;
+    private int phase;
+    private final long[] pawns = new long[2];
+    private final int[] kings = {-1, -1};
+    private long structureKey;
+
+    private record PawnEntry(long key, int midgame, int endgame) {
+    }
+
+    Evaluation() {
+    }
+
+    /**
+     * @return an independent evaluation with the same totals, for a copy of the board
+     */
+    Evaluation copy() {
+        var copy = new Evaluation();
+        copy.midgame = midgame;
+        copy.endgame = endgame;
+        copy.phase = phase;
+        copy.pawns[0] = pawns[0];
+        copy.pawns[1] = pawns[1];
+        copy.kings[0] = kings[0];
+        copy.kings[1] = kings[1];
+        copy.structureKey = structureKey;
+        return copy;
+    }
+
+    /**
+     * Builds an evaluation by scanning every square of a board
+     *
+     * @param board the board to evaluate
+     * @return an evaluation that matches the board
+     */
+    static Evaluation of(ChessBoard board) {
+        var evaluation = new Evaluation();
+        for (int square = 0; square < 64; square++) {
+            var piece = board.getPiece(Zobrist.position(square));
+            if (piece != null) {
+                evaluation.add(piece, square);
+            }
+        }
+        return evaluation;
+    }
+
+    void add(ChessPiece piece, ChessPosition position) {
+        add(piece, Zobrist.square(position));
+    }
+
+    void remove(ChessPiece piece, ChessPosition position) {
+        remove(piece, Zobrist.square(position));
+    }
+
+    private void add(ChessPiece piece, int square) {
+        update(piece, square, 1);
+        int color = colorIndex(piece.getTeamColor());
+        switch (piece.getPieceType()) {
+            case PAWN -> {
+                pawns[color] |= 1L << square;
+                structureKey ^= Zobrist.pieceKey(piece, square);
+            }
+            case KING -> {
+                kings[color] = square;
+                structureKey ^= Zobrist.pieceKey(piece, square);
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void remove(ChessPiece piece, int square) {
+        update(piece, square, -1);
+        int color = colorIndex(piece.getTeamColor());
+        switch (piece.getPieceType()) {
+            case PAWN -> {
+                pawns[color] &= ~(1L << square);
+                structureKey ^= Zobrist.pieceKey(piece, square);
+            }
+            case KING -> {
+                if (kings[color] == square) {
+                    kings[color] = -1;
+                }
+                structureKey ^= Zobrist.pieceKey(piece, square);
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void update(ChessPiece piece, int square, int direction) {
+        var color = piece.getTeamColor();
+        int type = piece.getPieceType().ordinal();
+        int index = PieceSquareTables.index(color, square);
+        int sign = color == ChessGame.TeamColor.WHITE ? direction : -direction;
+
+        midgame += sign * (PieceSquareTables.MIDGAME_VALUE[type] + PieceSquareTables.MIDGAME[type][index]);
+        endgame += sign * (PieceSquareTables.ENDGAME_VALUE[type] + PieceSquareTables.ENDGAME[type][index]);
+        phase += direction * PieceSquareTables.PHASE_WEIGHT[type];
+    }
+
+    /**
+     * Scores the position in centipawns
+     *
+     * @param perspective the team to score the position for
+     * @return a positive score if the position favors the given team, negative otherwise
+     */
+    public int score(ChessGame.TeamColor perspective) {
+        var structure = pawnStructure();
+        int middlegameScore = midgame + structure.midgame();
+        int endgameScore = endgame + structure.endgame();
+
+        int middlegamePhase = Math.min(phase, PieceSquareTables.MAX_PHASE);
+        int white = (middlegameScore * middlegamePhase + endgameScore * (PieceSquareTables.MAX_PHASE - middlegamePhase))
+                / PieceSquareTables.MAX_PHASE;
+        return perspective == ChessGame.TeamColor.WHITE ? white : -white;
+    }
+
+    /**
+     * @return how much non-pawn material is left, from 0 (bare kings and pawns) to 24 (the opening)
+     */
+    public int getPhase() {
+        return Math.min(phase, PieceSquareTables.MAX_PHASE);
+    }
+
+    private PawnEntry pawnStructure() {
+        int slot = (int) (structureKey & (PAWN_TABLE_SIZE - 1));
+        var entry = PAWN_TABLE[slot];
+        if (entry != null && entry.key() == structureKey) {
+            return entry;
+        }
+
+        int middlegameScore = 0;
+        int endgameScore = 0;
+        for (int color = 0; color < 2; color++) {
+            int sign = color == 0 ? 1 : -1;
+            int[] terms = pawnTerms(color);
+            middlegameScore += sign * terms[0];
+            endgameScore += sign * terms[1];
+        }
+
+        entry = new PawnEntry(structureKey, middlegameScore, endgameScore);
+        PAWN_TABLE[slot] = entry;
+        return entry;
+    }
+
+    private int[] pawnTerms(int color) {
+        long own = pawns[color];
+        long enemy = pawns[1 - color];
+        int middlegameScore = 0;
+        int endgameScore = 0;
+
+        for (int file = 0; file < 8; file++) {
+            int count = Long.bitCount(own & (FILE_A << file));
+            if (count > 1) {
+                middlegameScore += DOUBLED_MIDGAME * (count - 1);
+                endgameScore += DOUBLED_ENDGAME * (count - 1);
+            }
+            if (count > 0 && (own & adjacentFiles(file)) == 0) {
+                middlegameScore += ISOLATED_MIDGAME * count;
+                endgameScore += ISOLATED_ENDGAME * count;
+            }
+        }
+
+        for (long remaining = own; remaining != 0; remaining &= remaining - 1) {
+            int square = Long.numberOfTrailingZeros(remaining);
+            if ((enemy & frontSpan(color, square)) == 0) {
+                int advanced = color == 0 ? square / 8 : 7 - square / 8;
+                middlegameScore += PASSED_MIDGAME[advanced];
+                endgameScore += PASSED_ENDGAME[advanced];
+            }
+        }
+
+        int king = kings[color];
+        if (king >= 0) {
+            int forward = color == 0 ? 8 : -8;
+            int kingFile = king % 8;
+            for (int step = 1; step <= 2; step++) {
+                int rankSquare = king + step * forward;
+                if (rankSquare < 0 || rankSquare > 63) {
+                    break;
+                }
+                for (int file = Math.max(0, kingFile - 1); file <= Math.min(7, kingFile + 1); file++) {
+                    int shieldSquare = rankSquare - kingFile + file;
+                    if ((own & (1L << shieldSquare)) != 0) {
+                        middlegameScore += SHIELD_MIDGAME;
+                    }
+                }
+            }
+        }
+
+        return new int[]{middlegameScore, endgameScore};
+    }
+
+    private static long adjacentFiles(int file) {
+        long mask = 0;
+        if (file > 0) {
+            mask |= FILE_A << (file - 1);
+        }
+        if (file < 7) {
+            mask |= FILE_A << (file + 1);
+        }
+        return mask;
+    }
+
+    private static long frontSpan(int color, int square) {
+        int file = square % 8;
+        long files = adjacentFiles(file) | (FILE_A << file);
+        int rank = square / 8;
+        long ranksAhead;
+        if (color == 0) {
+            ranksAhead = rank == 7 ? 0 : -1L << ((rank + 1) * 8);
+        } else {
+            ranksAhead = rank == 0 ? 0 : -1L >>> ((8 - rank) * 8);
+        }
+        return files & ranksAhead;
+    }
+
+    private static int colorIndex(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? 0 : 1;
+    }
+}
@@ -0,0 +1,71 @@
+package chess;
+
+/**
+ * Reads positions written in Forsyth-Edwards Notation
+ * <p>
+ * Only the piece placement and side-to-move fields are used; the castling and en passant fields
+ * are ignored. {@link ChessGame} works out both from its move history, which is empty for a game
+ * loaded from FEN. So a king and rook standing on their home squares may castle whatever the
+ * castling field says, and no en passant capture is possible on the first move.
+ */
+public final class Fen {
+
+    private Fen() {
+    }
+
+    /**
+     * @param fen a position in FEN, e.g. {@code rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1}
+     * @return a game set up in that position
+     * @throws IllegalArgumentException if the FEN cannot be read
+     */
+    public static ChessGame parse(String fen) {
+        var fields = fen.trim().split("\\s+");
+        var ranks = fields[0].split("/");
+        if (ranks.length != 8) {
+            throw new IllegalArgumentException("FEN must have 8 ranks: " + fen);
+        }
+
+        var board = new ChessBoard();
+        for (int i = 0; i < 8; i++) {
+            int row = 8 - i;
+            int col = 1;
+            for (char c : ranks[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    col += c - '0';
+                } else {
+                    if (col > 8) {
+                        throw new IllegalArgumentException("Too many squares in rank " + row + ": " + fen);
+                    }
+                    board.addPiece(new ChessPosition(row, col), parsePiece(c));
+                    col++;
+                }
+            }
+            if (col != 9) {
+                throw new IllegalArgumentException("Rank " + row + " does not have 8 squares: " + fen);
+            }
+        }
+
+        var game = new ChessGame();
+        game.setBoard(board);
+        if (fields.length > 1 && fields[1].equals("b")) {
+            game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        } else {
+            game.setTeamTurn(ChessGame.TeamColor.WHITE);
+        }
+        return game;
+    }
+
+    private static ChessPiece parsePiece(char c) {
+        var color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        ChessPiece.PieceType type = switch (Character.toLowerCase(c)) {
+            case 'k' -> ChessPiece.PieceType.KING;
+            case 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'n' -> ChessPiece.PieceType.KNIGHT;
+            case 'r' -> ChessPiece.PieceType.ROOK;
+            case 'p' -> ChessPiece.PieceType.PAWN;
+            default -> throw new IllegalArgumentException("Unknown piece '" + c + "'");
+        };
+        return new ChessPiece(color, type);
+    }
+}
@@ -0,0 +1,54 @@
+package chess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for checking a move or listing a piece's legal moves.
+ * <p>
+ * Off unless a recording turns it on, since the engine lists moves constantly; the server's
+ * {@code chess.jfc} profile enables it above a small threshold.
+ */
+@Name("chess.MoveValidation")
+@Label("Move Validation")
+@Category({"Chess", "Engine"})
+@Description("ChessGame.makeMove or ChessGame.validMoves")
+@Enabled(false)
+@StackTrace(false)
+final class MoveValidationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Piece Type")
+    @Description("Empty when there was no piece on the starting square")
+    String pieceType;
+
+    @Label("Candidates")
+    @Description("How many legal moves the piece had")
+    int candidates;
+
+    @Label("Legal")
+    @Description("Whether the move was played; always true for validMoves")
+    boolean legal;
+
+    /**
+     * Fills in the event and commits it, if the recording wants it
+     *
+     * @param pieceType the piece on the starting square, or null if there was none
+     */
+    void end(String operation, ChessPiece.PieceType pieceType, int candidates, boolean legal) {
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.pieceType = pieceType == null ? null : pieceType.name();
+            this.candidates = candidates;
+            this.legal = legal;
+            commit();
+        }
+    }
+}
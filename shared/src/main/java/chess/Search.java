@@ -0,0 +1,148 @@
+package chess;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A small time-limited alpha-beta search for analysing positions.
+ * <p>
+ * The search deepens one ply at a time until the time limit runs out, and reports the deepest
+ * search that finished. Leaves are scored with the board's {@link Evaluation}, and positions
+ * covered by the game's tablebases are scored exactly. Interrupting the searching thread stops
+ * the search early.
+ */
+public class Search {
+
+    public static final int MATE = 100_000;
+    private static final int MAX_DEPTH = 32;
+
+    /**
+     * @param bestMove the move the search prefers, or null if the side to move has no moves
+     * @param score    the score in centipawns from white's point of view, or near {@link #MATE} for a forced mate
+     * @param depth    how many plies deep the search finished
+     */
+    public record Result(ChessMove bestMove, int score, int depth) {
+    }
+
+    //    Thrown to unwind the search once time is up
+    private static class OutOfTime extends RuntimeException {
+        OutOfTime() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final long deadline;
+
+    private Search(Duration limit) {
+        this.deadline = System.nanoTime() + limit.toNanos();
+    }
+
+    /**
+     * Searches a position
+     *
+     * @param game  the position to search, which is not changed
+     * @param limit how long to search for
+     * @return the result of the deepest search that finished within the time limit
+     * @throws InterruptedException if the thread was interrupted while searching
+     */
+    public static Result analyze(ChessGame game, Duration limit) throws InterruptedException {
+//        Score the root once, so every copy made during the search inherits an evaluation to update
+        var root = new ChessGame(game);
+        root.getBoard().getEvaluation();
+        return new Search(limit).run(root);
+    }
+
+    /**
+     * @return whether a score means a forced mate
+     */
+    public static boolean isMate(int score) {
+        return Math.abs(score) > MATE - 1000;
+    }
+
+    private Result run(ChessGame game) throws InterruptedException {
+        var turn = game.getTeamTurn();
+        int sign = turn == ChessGame.TeamColor.WHITE ? 1 : -1;
+        var moves = orderedMoves(game);
+        if (moves.isEmpty()) {
+            int score = game.isInCheck(turn) ? -MATE : 0;
+            return new Result(null, sign * score, 0);
+        }
+
+        var result = new Result(moves.getFirst(), sign * game.getBoard().getEvaluation().score(turn), 0);
+        try {
+            for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+                ChessMove best = null;
+                int alpha = -MATE - 1;
+                for (var move : moves) {
+                    var child = new ChessGame(game);
+                    child.applyMove(move);
+                    int score = -negamax(child, depth - 1, -MATE - 1, -alpha, 1);
+                    if (score > alpha) {
+                        alpha = score;
+                        best = move;
+                    }
+                }
+                result = new Result(best, sign * alpha, depth);
+//                Search the best move first next time, so the window narrows sooner
+                moves.remove(best);
+                moves.addFirst(best);
+                if (isMate(alpha)) {
+                    break;
+                }
+            }
+        } catch (OutOfTime e) {
+//            Keep the result of the last depth that finished
+        }
+        return result;
+    }
+
+    private int negamax(ChessGame game, int depth, int alpha, int beta, int ply) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (System.nanoTime() > deadline) {
+            throw new OutOfTime();
+        }
+
+        var known = game.probeTablebase();
+        if (known != null) {
+            return switch (known.outcome()) {
+                case WIN -> MATE - ply - known.pliesToMate();
+                case LOSS -> -(MATE - ply - known.pliesToMate());
+                case DRAW -> 0;
+            };
+        }
+        var turn = game.getTeamTurn();
+        if (depth == 0) {
+            return game.getBoard().getEvaluation().score(turn);
+        }
+
+        var moves = orderedMoves(game);
+        if (moves.isEmpty()) {
+            return game.isInCheck(turn) ? -(MATE - ply) : 0;
+        }
+        for (var move : moves) {
+            var child = new ChessGame(game);
+            child.applyMove(move);
+            int score = -negamax(child, depth - 1, -beta, -alpha, ply + 1);
+            if (score >= beta) {
+                return score;
+            }
+            alpha = Math.max(alpha, score);
+        }
+        return alpha;
+    }
+
+    //    Captures of the most valuable pieces first, since they are the most likely to cause a cutoff
+    private static List<ChessMove> orderedMoves(ChessGame game) {
+        var board = game.getBoard();
+        var moves = new ArrayList<>(game.getColorMoves(game.getTeamTurn()));
+        moves.sort(Comparator.comparingInt(move -> {
+            var captured = board.getPiece(move.getEndPosition());
+            return captured == null ? 0 : -PieceSquareTables.MIDGAME_VALUE[captured.getPieceType().ordinal()];
+        }));
+        return moves;
+    }
+}
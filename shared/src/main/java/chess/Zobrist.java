@@ -0,0 +1,96 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys for hashing chess positions.
+ * <p>
+ * The keys are generated from a fixed seed so that a position hashes to the same value in
+ * every process, which lets the hashes be stored on disk and compared across the network.
+ */
+public final class Zobrist {
+
+    private static final long[][] PIECE_KEYS = new long[12][64];
+    private static final long SIDE_KEY;
+
+    static {
+        var random = new SplittableRandom(0x240C4E55L);
+        for (var keys : PIECE_KEYS) {
+            for (int square = 0; square < 64; square++) {
+                keys[square] = random.nextLong();
+            }
+        }
+        SIDE_KEY = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * @param position a position on the board
+     * @return the square index of the position, 0 for a1 through 63 for h8
+     */
+    public static int square(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + position.getColumn() - 1;
+    }
+
+    /**
+     * @param square a square index, 0 for a1 through 63 for h8
+     * @return the position of that square
+     */
+    public static ChessPosition position(int square) {
+        return new ChessPosition(square / 8 + 1, square % 8 + 1);
+    }
+
+    /**
+     * @param piece  the piece standing on the square
+     * @param square a square index, 0 for a1 through 63 for h8
+     * @return the key to xor into a hash when the piece is added to or removed from the square
+     */
+    public static long pieceKey(ChessPiece piece, int square) {
+        return PIECE_KEYS[pieceIndex(piece)][square];
+    }
+
+    /**
+     * @return the key that is xor-ed into a hash when black is to move
+     */
+    public static long sideKey() {
+        return SIDE_KEY;
+    }
+
+    /**
+     * Hashes the pieces on a board
+     *
+     * @param board the board to hash
+     * @return the hash of every piece on the board
+     */
+    public static long hash(ChessBoard board) {
+        long key = 0;
+        for (int square = 0; square < 64; square++) {
+            var piece = board.getPiece(position(square));
+            if (piece != null) {
+                key ^= pieceKey(piece, square);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Hashes a game's position, meaning its pieces and whose turn it is
+     *
+     * @param game the game to hash
+     * @return the position key of the game
+     */
+    public static long hash(ChessGame game) {
+        long key = hash(game.getBoard());
+        if (game.getTeamTurn() == ChessGame.TeamColor.BLACK) {
+            key ^= SIDE_KEY;
+        }
+        return key;
+    }
+
+    static int pieceIndex(ChessPiece piece) {
+        int colorOffset = piece.getTeamColor() == ChessGame.TeamColor.WHITE ? 0 : 6;
+        return colorOffset + piece.getPieceType().ordinal();
+    }
+}
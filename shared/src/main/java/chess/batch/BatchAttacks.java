@@ -0,0 +1,65 @@
+package chess.batch;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+
+/**
+ * Computes features for every board in a {@link BoardBatch} in one call, for bulk jobs such as
+ * perft runs, tablebase generation and sweeping the status of every live game.
+ * <p>
+ * {@link #create()} returns an implementation that uses the incubating Vector API when it was
+ * built (with the {@code vector} Maven profile) and the {@code jdk.incubator.vector} module is
+ * available (run with {@code --add-modules jdk.incubator.vector}), and a plain loop otherwise.
+ * Both give identical results.
+ */
+public interface BatchAttacks {
+
+    /**
+     * Finds the squares attacked by one side on every board
+     *
+     * @param batch the boards
+     * @param color the attacking side
+     * @param out   receives one bitboard of attacked squares per board
+     */
+    void attacks(BoardBatch batch, ChessGame.TeamColor color, long[] out);
+
+    /**
+     * Counts the pieces of each kind on every board
+     *
+     * @param batch the boards
+     * @param out   receives the counts, indexed by color (white first) and PieceType ordinal, then board
+     */
+    void pieceCounts(BoardBatch batch, long[][] out);
+
+    /**
+     * Finds which boards have the given side's king in check
+     *
+     * @param batch the boards
+     * @param color the side whose king to look at
+     * @param out   receives true for each board where that king is attacked
+     */
+    default void inCheck(BoardBatch batch, ChessGame.TeamColor color, boolean[] out) {
+        var opponent = color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        var attacked = new long[batch.size()];
+        attacks(batch, opponent, attacked);
+        var kings = batch.pieces(color, ChessPiece.PieceType.KING);
+        for (int i = 0; i < batch.size(); i++) {
+            out[i] = (attacked[i] & kings[i]) != 0;
+        }
+    }
+
+    /**
+     * @return the fastest implementation available in this JVM
+     */
+    static BatchAttacks create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+//                Loaded reflectively so this interface never links against the incubator module when it is absent
+                return (BatchAttacks) Class.forName("chess.batch.VectorBatchAttacks").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return new ScalarBatchAttacks();
+            }
+        }
+        return new ScalarBatchAttacks();
+    }
+}
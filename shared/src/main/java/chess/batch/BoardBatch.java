@@ -0,0 +1,85 @@
+package chess.batch;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.Zobrist;
+
+/**
+ * Many boards stored as bitboards, laid out so one kind of piece for every board sits in one
+ * contiguous array. That layout lets {@link BatchAttacks} work on a whole batch with vector
+ * instructions, one board per lane.
+ */
+public class BoardBatch {
+
+    //    Indexed by color (white first) and then PieceType ordinal
+    private final long[][] pieces;
+    private final int capacity;
+    private int size;
+
+    public BoardBatch(int capacity) {
+        this.capacity = capacity;
+        this.pieces = new long[12][capacity];
+    }
+
+    /**
+     * Adds a board to the end of the batch
+     *
+     * @param board the board to add
+     * @return the slot the board was stored in
+     */
+    public int add(ChessBoard board) {
+        if (size == capacity) {
+            throw new IllegalStateException("Batch is full");
+        }
+        int slot = size;
+        set(slot, board);
+        return slot;
+    }
+
+    /**
+     * Replaces the board in a slot
+     *
+     * @param slot  the slot to overwrite
+     * @param board the board to store there
+     */
+    public void set(int slot, ChessBoard board) {
+        for (var kind : pieces) {
+            kind[slot] = 0;
+        }
+        for (int square = 0; square < 64; square++) {
+            var piece = board.getPiece(Zobrist.position(square));
+            if (piece != null) {
+                pieces[kind(piece.getTeamColor(), piece.getPieceType())][slot] |= 1L << square;
+            }
+        }
+        size = Math.max(size, slot + 1);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the bitboards of one kind of piece, one per slot. Only the first {@link #size()} are in use.
+     */
+    public long[] pieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieces[kind(color, type)];
+    }
+
+    long[] pieces(int kind) {
+        return pieces[kind];
+    }
+
+    static int kind(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return (color == ChessGame.TeamColor.WHITE ? 0 : 6) + type.ordinal();
+    }
+}
@@ -0,0 +1,171 @@
+package chess.batch;
+
+import chess.ChessGame;
+
+/**
+ * {@link BatchAttacks} computed one board at a time with ordinary long arithmetic.
+ * <p>
+ * Sliding attacks use Kogge-Stone fills, which need only shifts, ands and ors, so the same steps
+ * translate lane for lane into {@link VectorBatchAttacks}.
+ */
+public class ScalarBatchAttacks implements BatchAttacks {
+
+    static final long NOT_A_FILE = 0xFEFEFEFEFEFEFEFEL;
+    static final long NOT_H_FILE = 0x7F7F7F7F7F7F7F7FL;
+    static final long NOT_AB_FILES = 0xFCFCFCFCFCFCFCFCL;
+    static final long NOT_GH_FILES = 0x3F3F3F3F3F3F3F3FL;
+
+    //    PieceType ordinals
+    static final int KING = 0;
+    static final int QUEEN = 1;
+    static final int BISHOP = 2;
+    static final int KNIGHT = 3;
+    static final int ROOK = 4;
+    static final int PAWN = 5;
+
+    @Override
+    public void attacks(BoardBatch batch, ChessGame.TeamColor color, long[] out) {
+        attacks(batch, color, 0, batch.size(), out);
+    }
+
+    /**
+     * Computes attacks for the boards in {@code [from, to)}, so the vector version can finish a batch's tail
+     */
+    static void attacks(BoardBatch batch, ChessGame.TeamColor color, int from, int to, long[] out) {
+        int own = color == ChessGame.TeamColor.WHITE ? 0 : 6;
+        boolean white = color == ChessGame.TeamColor.WHITE;
+        for (int i = from; i < to; i++) {
+            long occupied = 0;
+            for (int kind = 0; kind < 12; kind++) {
+                occupied |= batch.pieces(kind)[i];
+            }
+            long empty = ~occupied;
+            long orthogonal = batch.pieces(own + ROOK)[i] | batch.pieces(own + QUEEN)[i];
+            long diagonal = batch.pieces(own + BISHOP)[i] | batch.pieces(own + QUEEN)[i];
+
+            out[i] = kingAttacks(batch.pieces(own + KING)[i])
+                    | knightAttacks(batch.pieces(own + KNIGHT)[i])
+                    | pawnAttacks(batch.pieces(own + PAWN)[i], white)
+                    | orthogonalAttacks(orthogonal, empty)
+                    | diagonalAttacks(diagonal, empty);
+        }
+    }
+
+    @Override
+    public void pieceCounts(BoardBatch batch, long[][] out) {
+        for (int kind = 0; kind < 12; kind++) {
+            var pieces = batch.pieces(kind);
+            for (int i = 0; i < batch.size(); i++) {
+                out[kind][i] = Long.bitCount(pieces[i]);
+            }
+        }
+    }
+
+    static long kingAttacks(long kings) {
+        long sideways = ((kings << 1) & NOT_A_FILE) | ((kings >>> 1) & NOT_H_FILE);
+        long row = kings | sideways;
+        return sideways | (row << 8) | (row >>> 8);
+    }
+
+    static long knightAttacks(long knights) {
+        return ((knights << 17) & NOT_A_FILE) | ((knights << 15) & NOT_H_FILE)
+                | ((knights << 10) & NOT_AB_FILES) | ((knights << 6) & NOT_GH_FILES)
+                | ((knights >>> 15) & NOT_A_FILE) | ((knights >>> 17) & NOT_H_FILE)
+                | ((knights >>> 6) & NOT_AB_FILES) | ((knights >>> 10) & NOT_GH_FILES);
+    }
+
+    static long pawnAttacks(long pawns, boolean white) {
+        if (white) {
+            return ((pawns << 9) & NOT_A_FILE) | ((pawns << 7) & NOT_H_FILE);
+        }
+        return ((pawns >>> 7) & NOT_A_FILE) | ((pawns >>> 9) & NOT_H_FILE);
+    }
+
+    static long orthogonalAttacks(long sliders, long empty) {
+        return north(sliders, empty) | south(sliders, empty) | east(sliders, empty) | west(sliders, empty);
+    }
+
+    static long diagonalAttacks(long sliders, long empty) {
+        return northEast(sliders, empty) | northWest(sliders, empty) | southEast(sliders, empty) | southWest(sliders, empty);
+    }
+
+    //    Each direction fills from the sliders through empty squares, then steps once more onto the blocker
+
+    private static long north(long gen, long pro) {
+        gen |= pro & (gen << 8);
+        pro &= pro << 8;
+        gen |= pro & (gen << 16);
+        pro &= pro << 16;
+        gen |= pro & (gen << 32);
+        return gen << 8;
+    }
+
+    private static long south(long gen, long pro) {
+        gen |= pro & (gen >>> 8);
+        pro &= pro >>> 8;
+        gen |= pro & (gen >>> 16);
+        pro &= pro >>> 16;
+        gen |= pro & (gen >>> 32);
+        return gen >>> 8;
+    }
+
+    private static long east(long gen, long pro) {
+        pro &= NOT_A_FILE;
+        gen |= pro & (gen << 1);
+        pro &= pro << 1;
+        gen |= pro & (gen << 2);
+        pro &= pro << 2;
+        gen |= pro & (gen << 4);
+        return (gen << 1) & NOT_A_FILE;
+    }
+
+    private static long west(long gen, long pro) {
+        pro &= NOT_H_FILE;
+        gen |= pro & (gen >>> 1);
+        pro &= pro >>> 1;
+        gen |= pro & (gen >>> 2);
+        pro &= pro >>> 2;
+        gen |= pro & (gen >>> 4);
+        return (gen >>> 1) & NOT_H_FILE;
+    }
+
+    private static long northEast(long gen, long pro) {
+        pro &= NOT_A_FILE;
+        gen |= pro & (gen << 9);
+        pro &= pro << 9;
+        gen |= pro & (gen << 18);
+        pro &= pro << 18;
+        gen |= pro & (gen << 36);
+        return (gen << 9) & NOT_A_FILE;
+    }
+
+    private static long northWest(long gen, long pro) {
+        pro &= NOT_H_FILE;
+        gen |= pro & (gen << 7);
+        pro &= pro << 7;
+        gen |= pro & (gen << 14);
+        pro &= pro << 14;
+        gen |= pro & (gen << 28);
+        return (gen << 7) & NOT_H_FILE;
+    }
+
+    private static long southEast(long gen, long pro) {
+        pro &= NOT_A_FILE;
+        gen |= pro & (gen >>> 7);
+        pro &= pro >>> 7;
+        gen |= pro & (gen >>> 14);
+        pro &= pro >>> 14;
+        gen |= pro & (gen >>> 28);
+        return (gen >>> 7) & NOT_A_FILE;
+    }
+
+    private static long southWest(long gen, long pro) {
+        pro &= NOT_H_FILE;
+        gen |= pro & (gen >>> 9);
+        pro &= pro >>> 9;
+        gen |= pro & (gen >>> 18);
+        pro &= pro >>> 18;
+        gen |= pro & (gen >>> 36);
+        return (gen >>> 9) & NOT_H_FILE;
+    }
+}
@@ -0,0 +1,117 @@
+package chess.batch;
+
+import chess.ChessGame;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static chess.batch.ScalarBatchAttacks.*;
+
+/**
+ * {@link BatchAttacks} using the Vector API, computing as many boards at once as the CPU has
+ * 64-bit lanes. Boards left over after the last full vector go through {@link ScalarBatchAttacks}.
+ * <p>
+ * Only compiled with the {@code vector} Maven profile, since it needs
+ * {@code --add-modules jdk.incubator.vector} at compile time and at run time; use
+ * {@link BatchAttacks#create()} rather than constructing this directly.
+ */
+public class VectorBatchAttacks implements BatchAttacks {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final long ALL = -1L;
+
+    @Override
+    public void attacks(BoardBatch batch, ChessGame.TeamColor color, long[] out) {
+        int own = color == ChessGame.TeamColor.WHITE ? 0 : 6;
+        boolean white = color == ChessGame.TeamColor.WHITE;
+        int bound = SPECIES.loopBound(batch.size());
+
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            var occupied = LongVector.zero(SPECIES);
+            for (int kind = 0; kind < 12; kind++) {
+                occupied = occupied.or(load(batch, kind, i));
+            }
+            var empty = occupied.not();
+            var queens = load(batch, own + QUEEN, i);
+            var orthogonal = load(batch, own + ROOK, i).or(queens);
+            var diagonal = load(batch, own + BISHOP, i).or(queens);
+
+            var attacked = kingAttacks(load(batch, own + KING, i))
+                    .or(knightAttacks(load(batch, own + KNIGHT, i)))
+                    .or(pawnAttacks(load(batch, own + PAWN, i), white))
+                    .or(fill(orthogonal, empty, 8, ALL))
+                    .or(fill(orthogonal, empty, -8, ALL))
+                    .or(fill(orthogonal, empty, 1, NOT_A_FILE))
+                    .or(fill(orthogonal, empty, -1, NOT_H_FILE))
+                    .or(fill(diagonal, empty, 9, NOT_A_FILE))
+                    .or(fill(diagonal, empty, 7, NOT_H_FILE))
+                    .or(fill(diagonal, empty, -7, NOT_A_FILE))
+                    .or(fill(diagonal, empty, -9, NOT_H_FILE));
+            attacked.intoArray(out, i);
+        }
+        ScalarBatchAttacks.attacks(batch, color, i, batch.size(), out);
+    }
+
+    @Override
+    public void pieceCounts(BoardBatch batch, long[][] out) {
+        int bound = SPECIES.loopBound(batch.size());
+        for (int kind = 0; kind < 12; kind++) {
+            var pieces = batch.pieces(kind);
+            int i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                LongVector.fromArray(SPECIES, pieces, i).lanewise(VectorOperators.BIT_COUNT).intoArray(out[kind], i);
+            }
+            for (; i < batch.size(); i++) {
+                out[kind][i] = Long.bitCount(pieces[i]);
+            }
+        }
+    }
+
+    private static LongVector load(BoardBatch batch, int kind, int offset) {
+        return LongVector.fromArray(SPECIES, batch.pieces(kind), offset);
+    }
+
+    /**
+     * Shifts every lane towards higher squares for a positive amount and lower squares for a negative one
+     */
+    private static LongVector shift(LongVector v, int amount) {
+        return amount > 0 ? v.lanewise(VectorOperators.LSHL, amount) : v.lanewise(VectorOperators.LSHR, -amount);
+    }
+
+    private static LongVector kingAttacks(LongVector kings) {
+        var sideways = shift(kings, 1).and(NOT_A_FILE).or(shift(kings, -1).and(NOT_H_FILE));
+        var row = kings.or(sideways);
+        return sideways.or(shift(row, 8)).or(shift(row, -8));
+    }
+
+    private static LongVector knightAttacks(LongVector knights) {
+        return shift(knights, 17).and(NOT_A_FILE).or(shift(knights, 15).and(NOT_H_FILE))
+                .or(shift(knights, 10).and(NOT_AB_FILES)).or(shift(knights, 6).and(NOT_GH_FILES))
+                .or(shift(knights, -15).and(NOT_A_FILE)).or(shift(knights, -17).and(NOT_H_FILE))
+                .or(shift(knights, -6).and(NOT_AB_FILES)).or(shift(knights, -10).and(NOT_GH_FILES));
+    }
+
+    private static LongVector pawnAttacks(LongVector pawns, boolean white) {
+        if (white) {
+            return shift(pawns, 9).and(NOT_A_FILE).or(shift(pawns, 7).and(NOT_H_FILE));
+        }
+        return shift(pawns, -7).and(NOT_A_FILE).or(shift(pawns, -9).and(NOT_H_FILE));
+    }
+
+    /**
+     * Kogge-Stone fill in one direction, the same steps as the scalar version
+     *
+     * @param step how far one square in this direction shifts a bitboard
+     * @param wrap squares a step may land on without having wrapped around the board edge
+     */
+    private static LongVector fill(LongVector gen, LongVector empty, int step, long wrap) {
+        var pro = empty.and(wrap);
+        gen = gen.or(pro.and(shift(gen, step)));
+        pro = pro.and(shift(pro, step));
+        gen = gen.or(pro.and(shift(gen, 2 * step)));
+        pro = pro.and(shift(pro, 2 * step));
+        gen = gen.or(pro.and(shift(gen, 4 * step)));
+        return shift(gen, step).and(wrap);
+    }
+}
@@ -0,0 +1,140 @@
+package chess.book;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.Zobrist;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.random.RandomGenerator;
+
+/**
+ * A read-only opening book backed by a memory-mapped file.
+ * <p>
+ * The file is a small header followed by fixed-size entries sorted by position key, so a lookup
+ * is a binary search straight over the mapped pages and nothing is loaded onto the heap. Every
+ * process that opens the same file shares the operating system's page cache. Book files are
+ * written by {@link OpeningBookBuilder}.
+ */
+public class OpeningBook {
+
+    static final int MAGIC = 0x4348424B; // "CHBK"
+    static final int HEADER_SIZE = 8;
+    //    Position key (8 bytes), packed move (2 bytes) and weight (2 bytes)
+    static final int ENTRY_SIZE = 12;
+
+    private final MappedByteBuffer buffer;
+    private final int entryCount;
+
+    public record BookEntry(ChessMove move, int weight) {
+    }
+
+    private OpeningBook(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an opening book file");
+        }
+        this.entryCount = buffer.getInt(4);
+        if ((long) HEADER_SIZE + (long) entryCount * ENTRY_SIZE > buffer.capacity()) {
+            throw new IOException("Opening book file is truncated");
+        }
+    }
+
+    /**
+     * Maps a book file into memory. The file stays mapped until the book is garbage collected.
+     *
+     * @param path the book file
+     * @return the opened book
+     * @throws IOException if the file cannot be read or is not a book file
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return new OpeningBook(buffer);
+        }
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * @param game the game to look up
+     * @return the book moves for the game's current position, most played first
+     */
+    public List<BookEntry> lookup(ChessGame game) {
+        return lookup(Zobrist.hash(game));
+    }
+
+    /**
+     * @param key a position key from {@link Zobrist#hash(ChessGame)}
+     * @return the book moves for the position, most played first
+     */
+    public List<BookEntry> lookup(long key) {
+        var entries = new ArrayList<BookEntry>();
+        for (int i = firstIndexOf(key); i < entryCount && keyAt(i) == key; i++) {
+            int offset = HEADER_SIZE + i * ENTRY_SIZE;
+            var move = ChessMove.unpack(Short.toUnsignedInt(buffer.getShort(offset + 8)));
+            entries.add(new BookEntry(move, Short.toUnsignedInt(buffer.getShort(offset + 10))));
+        }
+        return entries;
+    }
+
+    /**
+     * Picks a book move at random, weighted by how often each move was played
+     *
+     * @param game   the game to pick a move for
+     * @param random the source of randomness
+     * @return a book move that is legal in the game, or empty when the position is out of book
+     */
+    public Optional<ChessMove> pickMove(ChessGame game, RandomGenerator random) {
+        var entries = lookup(game);
+        var legal = new ArrayList<BookEntry>();
+        int totalWeight = 0;
+        for (var entry : entries) {
+            var valid = game.validMoves(entry.move().getStartPosition());
+            if (valid != null && valid.contains(entry.move())) {
+                legal.add(entry);
+                totalWeight += Math.max(1, entry.weight());
+            }
+        }
+        if (legal.isEmpty()) {
+            return Optional.empty();
+        }
+
+        int pick = random.nextInt(totalWeight);
+        for (var entry : legal) {
+            pick -= Math.max(1, entry.weight());
+            if (pick < 0) {
+                return Optional.of(entry.move());
+            }
+        }
+        return Optional.of(legal.getLast().move());
+    }
+
+    private int firstIndexOf(long key) {
+        int low = 0;
+        int high = entryCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(int index) {
+        return buffer.getLong(HEADER_SIZE + index * ENTRY_SIZE);
+    }
+}
@@ -0,0 +1,180 @@
+package chess.book;
+
+import chess.*;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds {@link OpeningBook} files from PGN games or FEN positions.
+ * <p>
+ * Usage: {@code OpeningBookBuilder [--plies N] <output.bin> <input>...}. Inputs ending in
+ * {@code .pgn} are read as games, and every position within the first N plies (default 20)
+ * adds its played move to the book, weighted by how often it was played. Any other input is
+ * read as lines of {@code <fen> <move> [weight]}, where the move is written like {@code e2e4}
+ * or {@code e7e8q}.
+ */
+public class OpeningBookBuilder {
+
+    private static final int DEFAULT_PLIES = 20;
+    private static final int MAX_WEIGHT = 0xFFFF;
+
+    private record Key(long position, int move) {
+    }
+
+    private final Map<Key, Integer> weights = new HashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        int plies = DEFAULT_PLIES;
+        int argIndex = 0;
+        if (args.length > 1 && args[0].equals("--plies")) {
+            plies = Integer.parseInt(args[1]);
+            argIndex = 2;
+        }
+        if (args.length - argIndex < 2) {
+            System.err.println("Usage: OpeningBookBuilder [--plies N] <output.bin> <input.pgn|input.fen>...");
+            System.exit(1);
+        }
+
+        var builder = new OpeningBookBuilder();
+        var output = Path.of(args[argIndex]);
+        for (int i = argIndex + 1; i < args.length; i++) {
+            var input = Path.of(args[i]);
+            try (var reader = Files.newBufferedReader(input)) {
+                if (input.toString().toLowerCase().endsWith(".pgn")) {
+                    builder.addPgn(reader, plies);
+                } else {
+                    builder.addFenLines(reader);
+                }
+            }
+        }
+        int entries = builder.write(output);
+        System.out.printf("Wrote %d book entries to %s%n", entries, output);
+    }
+
+    /**
+     * Adds a move to the book
+     *
+     * @param game   the position the move is played from
+     * @param move   the move
+     * @param weight how strongly to prefer the move, added to any weight it already has
+     */
+    public void add(ChessGame game, ChessMove move, int weight) {
+        weights.merge(new Key(Zobrist.hash(game), move.pack()), weight, Integer::sum);
+    }
+
+    /**
+     * Adds the opening moves of every game in a PGN file
+     *
+     * @param reader the PGN text
+     * @param plies  how many plies of each game to add
+     * @return the number of games read
+     */
+    public int addPgn(Reader reader, int plies) throws IOException {
+        var games = new PgnReader(reader).readGames();
+        for (var moves : games) {
+            var game = new ChessGame();
+            for (int ply = 0; ply < Math.min(plies, moves.size()); ply++) {
+                var move = PgnReader.parseSan(game, moves.get(ply));
+                var valid = move == null ? null : game.validMoves(move.getStartPosition());
+                if (valid == null || !valid.contains(move)) {
+                    break;
+                }
+                add(game, move, 1);
+                try {
+                    game.makeMove(move);
+                } catch (InvalidMoveException e) {
+                    break;
+                }
+            }
+        }
+        return games.size();
+    }
+
+    /**
+     * Adds lines of {@code <fen> <move> [weight]}. Blank lines and lines starting with '#' are skipped.
+     *
+     * @param reader the lines to read
+     * @return the number of moves added
+     */
+    public int addFenLines(Reader reader) throws IOException {
+        int added = 0;
+        var lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            var fields = line.split("\\s+");
+            int moveField = fields.length - 1;
+            int weight = 1;
+            if (fields.length > 2 && fields[moveField].matches("\\d+") && isMove(fields[moveField - 1])) {
+                weight = Integer.parseInt(fields[moveField]);
+                moveField--;
+            }
+            if (moveField < 1 || !isMove(fields[moveField])) {
+                throw new IOException("Expected '<fen> <move> [weight]' but got: " + line);
+            }
+
+            var game = Fen.parse(String.join(" ", Arrays.copyOfRange(fields, 0, moveField)));
+            add(game, parseCoordinateMove(fields[moveField]), weight);
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Writes the book file, sorted by position key
+     *
+     * @param path where to write the book
+     * @return the number of entries written
+     */
+    public int write(Path path) throws IOException {
+        var entries = new ArrayList<>(weights.entrySet());
+        entries.removeIf(entry -> entry.getValue() <= 0);
+        entries.sort((a, b) -> {
+            int byPosition = Long.compare(a.getKey().position(), b.getKey().position());
+            return byPosition != 0 ? byPosition : Integer.compare(b.getValue(), a.getValue());
+        });
+
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(entries.size());
+            for (var entry : entries) {
+                out.writeLong(entry.getKey().position());
+                out.writeShort(entry.getKey().move());
+                out.writeShort(Math.min(entry.getValue(), MAX_WEIGHT));
+            }
+        }
+        return entries.size();
+    }
+
+    private static boolean isMove(String text) {
+        return text.matches("[a-h][1-8][a-h][1-8][qrbn]?");
+    }
+
+    private static ChessMove parseCoordinateMove(String text) {
+        var start = new ChessPosition(text.charAt(1) - '0', text.charAt(0) - 'a' + 1);
+        var end = new ChessPosition(text.charAt(3) - '0', text.charAt(2) - 'a' + 1);
+        ChessPiece.PieceType promotion = null;
+        if (text.length() > 4) {
+            promotion = switch (text.charAt(4)) {
+                case 'q' -> ChessPiece.PieceType.QUEEN;
+                case 'r' -> ChessPiece.PieceType.ROOK;
+                case 'b' -> ChessPiece.PieceType.BISHOP;
+                default -> ChessPiece.PieceType.KNIGHT;
+            };
+        }
+        return new ChessMove(start, end, promotion);
+    }
+}
@@ -0,0 +1,193 @@
+package chess.book;
+
+import chess.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the main line of each game in a PGN file as a list of moves.
+ * <p>
+ * Tags, comments, variations and annotation glyphs are skipped. Moves are resolved against
+ * the legal moves of the game being replayed, so a game stops being read at its first move
+ * that cannot be understood.
+ */
+class PgnReader {
+
+    private final BufferedReader reader;
+
+    PgnReader(Reader reader) {
+        this.reader = new BufferedReader(reader);
+    }
+
+    /**
+     * @return the move text of every game in the file, one list of SAN tokens per game
+     */
+    List<List<String>> readGames() throws IOException {
+        var games = new ArrayList<List<String>>();
+        var current = new ArrayList<String>();
+        int commentDepth = 0;
+        int variationDepth = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.strip();
+            if (commentDepth == 0 && (line.startsWith("[") || line.startsWith("%"))) {
+                continue;
+            }
+            var token = new StringBuilder();
+            for (int i = 0; i <= line.length(); i++) {
+                char c = i < line.length() ? line.charAt(i) : ' ';
+                if (commentDepth > 0) {
+                    if (c == '}') {
+                        commentDepth--;
+                    }
+                    continue;
+                }
+                if (c == ';') {
+                    break;
+                }
+                if (c == '{' || c == '(' || c == ')' || Character.isWhitespace(c)) {
+                    if (!token.isEmpty()) {
+                        if (variationDepth == 0 && addToken(token.toString(), current)) {
+                            games.add(current);
+                            current = new ArrayList<>();
+                        }
+                        token.setLength(0);
+                    }
+                    if (c == '{') {
+                        commentDepth++;
+                    } else if (c == '(') {
+                        variationDepth++;
+                    } else if (c == ')') {
+                        variationDepth = Math.max(0, variationDepth - 1);
+                    }
+                } else {
+                    token.append(c);
+                }
+            }
+        }
+        if (!current.isEmpty()) {
+            games.add(current);
+        }
+        return games;
+    }
+
+    /**
+     * @return true if the token ended the game
+     */
+    private boolean addToken(String token, List<String> moves) {
+        if (token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*")) {
+            return true;
+        }
+        if (token.startsWith("$")) {
+            return false;
+        }
+//        Strip move numbers such as "12." or "12..." which may be glued to the move
+        int start = 0;
+        while (start < token.length() && (Character.isDigit(token.charAt(start)) || token.charAt(start) == '.')) {
+            start++;
+        }
+        if (start > 0 && start < token.length() && token.charAt(start - 1) != '.') {
+//            Castling written with zeros, e.g. "0-0"
+            start = 0;
+        }
+        if (start < token.length()) {
+            moves.add(token.substring(start));
+        }
+        return false;
+    }
+
+    /**
+     * Finds the legal move a SAN token refers to
+     *
+     * @param game the game the move is played in
+     * @param san  the move in standard algebraic notation, e.g. {@code Nbd7}, {@code exd5} or {@code e8=Q+}
+     * @return the move, or null if no single legal move matches
+     */
+    static ChessMove parseSan(ChessGame game, String san) {
+        var color = game.getTeamTurn();
+        san = san.replaceAll("[+#!?]", "");
+        int row = color == ChessGame.TeamColor.WHITE ? 1 : 8;
+        if (san.equals("O-O") || san.equals("0-0")) {
+            return new ChessMove(new ChessPosition(row, 5), new ChessPosition(row, 7), null);
+        }
+        if (san.equals("O-O-O") || san.equals("0-0-0")) {
+            return new ChessMove(new ChessPosition(row, 5), new ChessPosition(row, 3), null);
+        }
+
+        ChessPiece.PieceType promotion = null;
+        int equals = san.indexOf('=');
+        if (equals >= 0 && equals + 1 < san.length()) {
+            promotion = pieceType(san.charAt(equals + 1));
+            san = san.substring(0, equals);
+        }
+
+        ChessPiece.PieceType type = ChessPiece.PieceType.PAWN;
+        if (!san.isEmpty() && Character.isUpperCase(san.charAt(0))) {
+            type = pieceType(san.charAt(0));
+            san = san.substring(1);
+        }
+        san = san.replace("x", "");
+        if (san.length() < 2 || type == null) {
+            return null;
+        }
+
+        var end = square(san.substring(san.length() - 2));
+        if (end == null) {
+            return null;
+        }
+        var disambiguation = san.substring(0, san.length() - 2);
+
+        ChessMove found = null;
+        for (var move : game.getColorMoves(color)) {
+            var piece = game.getBoard().getPiece(move.getStartPosition());
+            if (piece.getPieceType() != type || !move.getEndPosition().equals(end) || move.getPromotionPiece() != promotion) {
+                continue;
+            }
+            if (!matches(disambiguation, move.getStartPosition())) {
+                continue;
+            }
+            if (found != null) {
+                return null;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    private static boolean matches(String disambiguation, ChessPosition start) {
+        for (char c : disambiguation.toCharArray()) {
+            if (c >= 'a' && c <= 'h' && start.getColumn() != c - 'a' + 1) {
+                return false;
+            }
+            if (c >= '1' && c <= '8' && start.getRow() != c - '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ChessPosition square(String text) {
+        char file = text.charAt(0);
+        char rank = text.charAt(1);
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            return null;
+        }
+        return new ChessPosition(rank - '0', file - 'a' + 1);
+    }
+
+    private static ChessPiece.PieceType pieceType(char c) {
+        return switch (c) {
+            case 'K' -> ChessPiece.PieceType.KING;
+            case 'Q' -> ChessPiece.PieceType.QUEEN;
+            case 'B' -> ChessPiece.PieceType.BISHOP;
+            case 'N' -> ChessPiece.PieceType.KNIGHT;
+            case 'R' -> ChessPiece.PieceType.ROOK;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,278 @@
+package chess.tablebase;
+
+import chess.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Generates the {@link Tablebases} files by retrograde analysis.
+ * <p>
+ * Usage: {@code TablebaseGenerator <output directory> [KQK KRK KPK]}. Every position is set up
+ * once and its legal moves are found with the same rules {@link ChessGame} enforces. Results are
+ * then filled in backwards from the checkmates, one ply per pass: a position is won in n plies if
+ * some move reaches a position lost in n - 1, and lost in n plies if every move reaches a position
+ * won in at most n - 1. Both steps run in parallel across all cores. Pawn endings depend on the
+ * tables for the pieces the pawn can promote to, so those are generated first.
+ */
+public class TablebaseGenerator {
+
+    //    A win in 253 plies is the longest that fits in a one-byte entry
+    private static final int MAX_PLIES = 253;
+
+    private final Map<Tablebases.Material, byte[]> finished = new EnumMap<>(Tablebases.Material.class);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TablebaseGenerator <output directory> [KQK KRK KPK]");
+            System.exit(1);
+        }
+        var directory = Path.of(args[0]);
+        Files.createDirectories(directory);
+
+        var requested = new ArrayList<Tablebases.Material>();
+        for (int i = 1; i < args.length; i++) {
+            requested.add(Tablebases.Material.valueOf(args[i].toUpperCase()));
+        }
+        if (requested.isEmpty()) {
+            requested.addAll(List.of(Tablebases.Material.values()));
+        }
+
+        var generator = new TablebaseGenerator();
+        for (var material : requested) {
+            long start = System.nanoTime();
+            var table = generator.generate(material);
+            write(directory.resolve(material.fileName()), material, table);
+            System.out.printf("%s generated in %.1fs%n", material, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /**
+     * Generates a table, and any table it depends on that has not been generated yet
+     *
+     * @param material the endgame to generate
+     * @return one value per position, see {@link TablebaseResult}
+     */
+    public byte[] generate(Tablebases.Material material) {
+        if (finished.containsKey(material)) {
+            return finished.get(material);
+        }
+        if (material == Tablebases.Material.KPK) {
+            generate(Tablebases.Material.KQK);
+            generate(Tablebases.Material.KRK);
+        }
+
+        int size = material.size();
+        var successors = new Successors[size];
+        var values = new byte[size];
+        var resolved = new boolean[size];
+
+//        Set up every position once, finding its moves and marking checkmates and stalemates
+        IntStream.range(0, size).parallel().forEach(index -> {
+            var game = decode(material, index);
+            if (game == null) {
+                values[index] = TablebaseResult.ILLEGAL;
+                resolved[index] = true;
+                return;
+            }
+            var next = successors(material, game);
+            if (next.internal().length == 0 && next.external().length == 0) {
+                values[index] = game.isInCheck(game.getTeamTurn()) ? TablebaseResult.encodeLoss(0) : TablebaseResult.DRAW;
+                resolved[index] = true;
+            } else {
+                successors[index] = next;
+            }
+        });
+
+//        Results reached through other tables can be longer than anything found so far in this one
+        int longestExternal = Arrays.stream(successors).filter(Objects::nonNull)
+                .flatMapToInt(next -> IntStream.range(0, next.external().length).map(i -> next.external()[i]))
+                .map(value -> TablebaseResult.decode((byte) value).pliesToMate()).max().orElse(0);
+
+        for (int plies = 1; plies <= MAX_PLIES; plies++) {
+            int target = plies;
+            var previous = values.clone();
+            var previousResolved = resolved.clone();
+            var changed = new AtomicBoolean();
+            IntStream.range(0, size).parallel().forEach(index -> {
+                if (previousResolved[index]) {
+                    return;
+                }
+                var next = successors[index];
+                boolean allLost = true;
+                int longestWin = 0;
+                for (int child : next.internal()) {
+                    if (!previousResolved[child]) {
+                        allLost = false;
+                        continue;
+                    }
+                    var result = TablebaseResult.decode(previous[child]);
+                    if (result.outcome() == TablebaseResult.Outcome.LOSS && result.pliesToMate() == target - 1) {
+                        values[index] = TablebaseResult.encodeWin(target);
+                        resolved[index] = true;
+                        changed.set(true);
+                        return;
+                    }
+                    if (result.outcome() == TablebaseResult.Outcome.WIN) {
+                        longestWin = Math.max(longestWin, result.pliesToMate());
+                    } else {
+                        allLost = false;
+                    }
+                }
+                for (byte value : next.external()) {
+                    var result = TablebaseResult.decode(value);
+                    if (result.outcome() == TablebaseResult.Outcome.LOSS && result.pliesToMate() == target - 1) {
+                        values[index] = TablebaseResult.encodeWin(target);
+                        resolved[index] = true;
+                        changed.set(true);
+                        return;
+                    }
+                    if (result.outcome() == TablebaseResult.Outcome.WIN) {
+                        longestWin = Math.max(longestWin, result.pliesToMate());
+                    } else {
+                        allLost = false;
+                    }
+                }
+                if (allLost && longestWin == target - 1) {
+                    values[index] = TablebaseResult.encodeLoss(target);
+                    resolved[index] = true;
+                    changed.set(true);
+                }
+            });
+            if (!changed.get() && plies > longestExternal) {
+                break;
+            }
+        }
+
+//        Anything left unresolved can be held forever by the defending side
+        finished.put(material, values);
+        return values;
+    }
+
+    /**
+     * The moves from a position: indexes of positions in the same table, and the final values of
+     * positions in other tables or with less material
+     */
+    private record Successors(int[] internal, byte[] external) {
+    }
+
+    private Successors successors(Tablebases.Material material, ChessGame game) {
+        var internal = new ArrayList<Integer>();
+        var external = new ArrayList<Byte>();
+        var turn = game.getTeamTurn();
+        var opponent = turn == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+
+        for (var move : game.getColorMoves(turn)) {
+//            Tablebases assume castling rights are gone
+            var piece = game.getBoard().getPiece(move.getStartPosition());
+            if (piece.getPieceType() == ChessPiece.PieceType.KING
+                    && Math.abs(move.getStartPosition().getColumn() - move.getEndPosition().getColumn()) == 2) {
+                continue;
+            }
+
+            var board = new ChessBoard(game.getBoard().getBoardCopy());
+            board.makeMove(move);
+            var location = Tablebases.locate(board, opponent);
+            if (location == null) {
+//                The extra piece was captured or promoted to a minor piece, neither of which can win
+                external.add(TablebaseResult.DRAW);
+            } else if (location.material() == material) {
+                internal.add(location.index());
+            } else {
+                external.add(finished.get(location.material())[location.index()]);
+            }
+        }
+
+        var internalArray = internal.stream().mapToInt(Integer::intValue).toArray();
+        var externalArray = new byte[external.size()];
+        for (int i = 0; i < externalArray.length; i++) {
+            externalArray[i] = external.get(i);
+        }
+        return new Successors(internalArray, externalArray);
+    }
+
+    /**
+     * Sets up the position stored at an index
+     *
+     * @return the position, or null if it cannot occur in a game
+     */
+    private static ChessGame decode(Tablebases.Material material, int index) {
+        var placement = Tablebases.placement(material, index);
+        int piece = placement.piece();
+        int weakKing = placement.weakKing();
+        int strongKing = placement.strongKing();
+        int sideToMove = placement.sideToMove();
+
+//        The index already keeps the kings apart and pawns off the back ranks
+        if (piece == weakKing || piece == strongKing) {
+            return null;
+        }
+
+        var board = new ChessBoard();
+        board.addPiece(Zobrist.position(strongKing), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(Zobrist.position(weakKing), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        board.addPiece(Zobrist.position(piece), new ChessPiece(ChessGame.TeamColor.WHITE, material.piece));
+
+        var game = new ChessGame();
+        game.setBoard(board);
+        var turn = sideToMove == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        game.setTeamTurn(turn);
+
+//        The side that just moved cannot have left its king in check
+        var justMoved = turn == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        if (game.isInCheck(justMoved)) {
+            return null;
+        }
+        return game;
+    }
+
+    private static void write(Path path, Tablebases.Material material, byte[] table) throws IOException {
+        Files.write(path, pack(material, table).array());
+    }
+
+    /**
+     * Lays a table out the way {@link Tablebases} reads it: a header, then every entry packed into
+     * the fewest bits that hold the table's range of values
+     *
+     * @param values one value per position, as {@link #generate} returns them
+     */
+    static ByteBuffer pack(Tablebases.Material material, byte[] values) {
+        int lowest = Byte.MAX_VALUE;
+        int highest = Byte.MIN_VALUE + 1;
+        for (byte value : values) {
+            if (value != TablebaseResult.ILLEGAL) {
+                lowest = Math.min(lowest, value);
+                highest = Math.max(highest, value);
+            }
+        }
+        lowest = Math.min(lowest, highest);
+//        Entry 0 marks an illegal position, and entry n the value lowest + n - 1
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(highest - lowest + 1));
+
+        var buffer = ByteBuffer.allocate(Tablebases.HEADER_SIZE + Tablebases.packedSize(material, bits));
+        buffer.putInt(0, Tablebases.MAGIC);
+        buffer.putInt(4, material.ordinal());
+        buffer.putInt(8, bits);
+        buffer.putInt(12, lowest);
+        var data = buffer.array();
+        for (int index = 0; index < values.length; index++) {
+            int code = values[index] == TablebaseResult.ILLEGAL ? 0 : values[index] - lowest + 1;
+            long bit = (long) index * bits;
+            int at = Tablebases.HEADER_SIZE + (int) (bit >>> 3);
+            int word = code << (bit & 7);
+            data[at] |= (byte) word;
+            data[at + 1] |= (byte) (word >>> 8);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,41 @@
+package chess.tablebase;
+
+/**
+ * The outcome of a position according to an endgame tablebase
+ *
+ * @param outcome     the outcome for the side to move, assuming perfect play
+ * @param pliesToMate how many plies until mate, or 0 for a draw
+ */
+public record TablebaseResult(Outcome outcome, int pliesToMate) {
+
+    public enum Outcome {
+        WIN,
+        LOSS,
+        DRAW
+    }
+
+    static final byte DRAW = 0;
+    static final byte ILLEGAL = Byte.MIN_VALUE;
+
+    /**
+     * Stored values are one byte per position: 0 is a draw, {@code n > 0} is a win for the side to
+     * move in {@code 2n - 1} plies, and {@code n < 0} is a loss in {@code 2(-n - 1)} plies.
+     */
+    static TablebaseResult decode(byte value) {
+        if (value == DRAW || value == ILLEGAL) {
+            return new TablebaseResult(Outcome.DRAW, 0);
+        } else if (value > 0) {
+            return new TablebaseResult(Outcome.WIN, 2 * value - 1);
+        } else {
+            return new TablebaseResult(Outcome.LOSS, 2 * (-value - 1));
+        }
+    }
+
+    static byte encodeWin(int plies) {
+        return (byte) ((plies + 1) / 2);
+    }
+
+    static byte encodeLoss(int plies) {
+        return (byte) -(plies / 2 + 1);
+    }
+}
@@ -0,0 +1,271 @@
+package chess.tablebase;
+
+import chess.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Distance-to-mate tablebases for endgames of a king and one piece against a lone king.
+ * <p>
+ * A table has one entry for every placement of the two kings that isn't adjacent or on the same
+ * square, every square the extra piece can stand on (ranks 2 to 7 for a pawn) and either side to
+ * move. Entries are packed with only as many bits as the table's range of results needs, six for
+ * KRK, so a probe is still a single read from a memory-mapped file. Positions where black has the
+ * extra piece are mirrored onto the white tables. The tables are written by
+ * {@link TablebaseGenerator}, loaded with {@link #load(Path)} and handed to the games that should
+ * use them with {@link ChessGame#setTablebases}.
+ */
+public final class Tablebases implements AutoCloseable {
+
+    static final int MAGIC = 0x43485443; // "CHTC"
+    //    Magic, material, bits per entry and the value stored as 1
+    static final int HEADER_SIZE = 16;
+    //    Entries are read two bytes at a time, so the last one needs a byte after it
+    static final int PADDING = 1;
+
+    //    Pairs of king squares that can occur in a game, and each pair's place in that list
+    static final int KING_PAIRS;
+    private static final short[] PAIR_SQUARES;
+    private static final short[] PAIR_INDEX = new short[64 * 64];
+
+    static {
+        var pairs = new short[64 * 64];
+        int count = 0;
+        Arrays.fill(PAIR_INDEX, (short) -1);
+        for (int strongKing = 0; strongKing < 64; strongKing++) {
+            for (int weakKing = 0; weakKing < 64; weakKing++) {
+                if (Math.abs(strongKing / 8 - weakKing / 8) > 1 || Math.abs(strongKing % 8 - weakKing % 8) > 1) {
+                    PAIR_INDEX[strongKing * 64 + weakKing] = (short) count;
+                    pairs[count++] = (short) (strongKing * 64 + weakKing);
+                }
+            }
+        }
+        KING_PAIRS = count;
+        PAIR_SQUARES = Arrays.copyOf(pairs, count);
+    }
+
+    public enum Material {
+        KQK(ChessPiece.PieceType.QUEEN),
+        KRK(ChessPiece.PieceType.ROOK),
+        KPK(ChessPiece.PieceType.PAWN);
+
+        final ChessPiece.PieceType piece;
+
+        Material(ChessPiece.PieceType piece) {
+            this.piece = piece;
+        }
+
+        String fileName() {
+            return name() + ".tb";
+        }
+
+        //        Pawns can't stand on the first or last rank
+        int firstSquare() {
+            return piece == ChessPiece.PieceType.PAWN ? 8 : 0;
+        }
+
+        int squares() {
+            return 64 - 2 * firstSquare();
+        }
+
+        /**
+         * @return how many entries the table has
+         */
+        int size() {
+            return 2 * KING_PAIRS * squares();
+        }
+
+        static Material of(ChessPiece.PieceType piece) {
+            for (var material : values()) {
+                if (material.piece == piece) {
+                    return material;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Where a position is stored: which table, and at what index
+     */
+    record Location(Material material, int index) {
+    }
+
+    /**
+     * The squares a table index stands for, with the extra piece's side as white
+     */
+    record Placement(int sideToMove, int strongKing, int weakKing, int piece) {
+    }
+
+    private static final Tablebases NONE = new Tablebases(new ByteBuffer[Material.values().length]);
+
+    //    Indexed by material; null where no table was loaded
+    private final ByteBuffer[] tables;
+
+    Tablebases(ByteBuffer[] tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * @return tablebases with no tables, which cover no position
+     */
+    public static Tablebases none() {
+        return NONE;
+    }
+
+    /**
+     * Maps every table file found in a directory
+     *
+     * @param directory the directory the tables were generated into
+     * @return the tables found, which may be none
+     * @throws IOException if a table could not be read or is not a table this version wrote
+     */
+    public static Tablebases load(Path directory) throws IOException {
+        var tables = new ByteBuffer[Material.values().length];
+        for (var material : Material.values()) {
+            var file = directory.resolve(material.fileName());
+            if (!Files.exists(file)) {
+                continue;
+            }
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                tables[material.ordinal()] = checked(material, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()),
+                        file.toString());
+            }
+        }
+        return new Tablebases(tables);
+    }
+
+    /**
+     * Makes sure a buffer holds a table in the format {@link TablebaseGenerator} writes
+     */
+    static ByteBuffer checked(Material material, ByteBuffer buffer, String name) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != material.ordinal()) {
+            throw new IOException(name + " is not a " + material + " tablebase");
+        }
+        int bits = buffer.getInt(8);
+        if (bits < 1 || bits > 8 || buffer.capacity() != HEADER_SIZE + packedSize(material, bits)) {
+            throw new IOException(name + " is truncated or has an unknown layout");
+        }
+        return buffer;
+    }
+
+    static int packedSize(Material material, int bits) {
+        return (int) (((long) material.size() * bits + 7) / 8) + PADDING;
+    }
+
+    public boolean isLoaded(Material material) {
+        return tables[material.ordinal()] != null;
+    }
+
+    /**
+     * Stops using the tables. A mapped file is unmapped once nothing refers to its buffer any more.
+     */
+    @Override
+    public void close() {
+        Arrays.fill(tables, null);
+    }
+
+    /**
+     * Looks a game's position up in the tablebases
+     *
+     * @param game the game to probe
+     * @return the result for the side to move, or null if no loaded table covers the position or the
+     * position could not have been reached legally
+     */
+    public TablebaseResult probe(ChessGame game) {
+        if (this == NONE) {
+            return null;
+        }
+        var location = locate(game.getBoard(), game.getTeamTurn());
+        if (location == null) {
+            return null;
+        }
+        var table = tables[location.material().ordinal()];
+        if (table == null) {
+            return null;
+        }
+        int code = read(table, location.index());
+        return code == 0 ? null : TablebaseResult.decode((byte) (table.getInt(12) + code - 1));
+    }
+
+    /**
+     * Reads one packed entry: 0 for a position that can't occur, otherwise the stored value's offset
+     * from the value stored as 1
+     */
+    static int read(ByteBuffer table, int index) {
+        int bits = table.getInt(8);
+        long bit = (long) index * bits;
+        int at = HEADER_SIZE + (int) (bit >>> 3);
+        int word = (table.get(at) & 0xFF) | (table.get(at + 1) & 0xFF) << 8;
+        return (word >>> (bit & 7)) & ((1 << bits) - 1);
+    }
+
+    /**
+     * Finds where a position is stored
+     *
+     * @param board the pieces
+     * @param turn  the side to move
+     * @return the table and index of the position, or null if it is not a king and one piece against a king
+     * that a table has room for
+     */
+    static Location locate(ChessBoard board, ChessGame.TeamColor turn) {
+        int[] kings = {-1, -1};
+        int pieceSquare = -1;
+        ChessPiece extra = null;
+        for (int square = 0; square < 64; square++) {
+            var piece = board.getPiece(Zobrist.position(square));
+            if (piece == null) {
+                continue;
+            }
+            if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+                kings[piece.getTeamColor() == ChessGame.TeamColor.WHITE ? 0 : 1] = square;
+            } else if (extra == null) {
+                extra = piece;
+                pieceSquare = square;
+            } else {
+                return null;
+            }
+        }
+        if (extra == null || kings[0] < 0 || kings[1] < 0) {
+            return null;
+        }
+        var material = Material.of(extra.getPieceType());
+        if (material == null) {
+            return null;
+        }
+
+//        Tables are stored with white as the side with the extra piece, so flip the board if it is black
+        var strong = extra.getTeamColor();
+        int flip = strong == ChessGame.TeamColor.WHITE ? 0 : 56;
+        int strongKing = kings[strong == ChessGame.TeamColor.WHITE ? 0 : 1] ^ flip;
+        int weakKing = kings[strong == ChessGame.TeamColor.WHITE ? 1 : 0] ^ flip;
+        int sideToMove = turn == strong ? 0 : 1;
+        int index = index(material, sideToMove, strongKing, weakKing, pieceSquare ^ flip);
+        return index < 0 ? null : new Location(material, index);
+    }
+
+    /**
+     * @return the index of a placement, or -1 if the kings touch or the piece is off the squares it can use
+     */
+    static int index(Material material, int sideToMove, int strongKing, int weakKing, int piece) {
+        int pair = PAIR_INDEX[strongKing * 64 + weakKing];
+        int slot = piece - material.firstSquare();
+        if (pair < 0 || slot < 0 || slot >= material.squares()) {
+            return -1;
+        }
+        return (sideToMove * KING_PAIRS + pair) * material.squares() + slot;
+    }
+
+    static Placement placement(Material material, int index) {
+        int slot = index % material.squares();
+        int pair = index / material.squares();
+        int kings = PAIR_SQUARES[pair % KING_PAIRS];
+        return new Placement(pair / KING_PAIRS, kings / 64, kings % 64, slot + material.firstSquare());
+    }
+}
@@ -0,0 +1,252 @@
+package websocket;
+
+import chess.ChessMove;
+import chess.CompactGame;
+import chess.ReturnGameData;
+import websocket.commands.ConnectCommand;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.*;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes websocket commands and server messages as binary frames, the compact alternative to JSON.
+ * <p>
+ * A frame is an int length counting the bytes after it, a type byte, then the payload. Commands
+ * use their {@link UserGameCommand.CommandType} ordinal as the type, and server messages use
+ * {@code 0x40} plus their {@link ServerMessage.ServerMessageType} ordinal. Strings are an unsigned
+ * short byte count and UTF-8, moves are {@link ChessMove#pack()} in a short, and games use
+ * {@link CompactGame}. Lobby listings are a short count, then each game's ID and its strings.
+ * CONNECT ends with a flags byte: {@code 1} for move deltas and {@code 2} for binary frames.
+ * <p>
+ * A client may send commands in either format, but the server only answers with binary frames
+ * after a CONNECT that asks for them, so a session's format never changes without its say.
+ */
+public final class BinaryCodec {
+
+    private static final int SERVER_MESSAGE = 0x40;
+    private static final int HEADER_SIZE = 5;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final short NO_MOVE = -1;
+    private static final int NO_GAME = -1;
+    private static final int MOVE_DELTAS = 1;
+    private static final int BINARY_FRAMES = 2;
+
+    private BinaryCodec() {
+    }
+
+    public static ByteBuffer encode(UserGameCommand command) {
+        var authToken = bytes(command.getAuthToken());
+        int size = HEADER_SIZE + 2 + (authToken == null ? 0 : authToken.length) + 4;
+        if (command instanceof MakeMoveCommand) {
+            size += 2;
+        } else if (command.getCommandType() == UserGameCommand.CommandType.CONNECT) {
+            size += 1;
+        }
+
+        var out = ByteBuffer.allocate(size);
+        out.putInt(size - 4);
+        out.put((byte) command.getCommandType().ordinal());
+        putBytes(out, authToken);
+        out.putInt(command.getGameID() == null ? NO_GAME : command.getGameID());
+        if (command instanceof MakeMoveCommand move) {
+            out.putShort((short) move.getMove().pack());
+        } else if (command.getCommandType() == UserGameCommand.CommandType.CONNECT) {
+            int flags = 0;
+            if (command instanceof ConnectCommand connect) {
+                flags = (connect.wantsMoveDeltas() ? MOVE_DELTAS : 0) | (connect.wantsBinaryFrames() ? BINARY_FRAMES : 0);
+            }
+            out.put((byte) flags);
+        }
+        return out.flip();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame is truncated or not a command
+     */
+    public static UserGameCommand decodeCommand(ByteBuffer in) {
+        try {
+            return readCommand(in);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated command frame", e);
+        }
+    }
+
+    private static UserGameCommand readCommand(ByteBuffer in) {
+        int type = readHeader(in);
+        var commandTypes = UserGameCommand.CommandType.values();
+        if (type >= commandTypes.length) {
+            throw new IllegalArgumentException("Unknown command type " + type);
+        }
+        var commandType = commandTypes[type];
+        var authToken = getString(in);
+        int gameID = in.getInt();
+        Integer game = gameID == NO_GAME ? null : gameID;
+
+        return switch (commandType) {
+            case MAKE_MOVE -> new MakeMoveCommand(commandType, authToken, game, ChessMove.unpack(in.getShort() & 0xFFFF));
+            case CONNECT -> {
+                int flags = in.get();
+                yield new ConnectCommand(commandType, authToken, game, null, null, (flags & MOVE_DELTAS) != 0,
+                        (flags & BINARY_FRAMES) != 0);
+            }
+            default -> new UserGameCommand(commandType, authToken, game);
+        };
+    }
+
+    public static ByteBuffer encode(ServerMessage message) {
+        var type = message.getServerMessageType();
+        int size = HEADER_SIZE;
+        byte[] text = null;
+        switch (message) {
+            case LoadBoardMessage load -> size += CompactGame.size(load.getGame());
+            case ServerErrorMessage error -> {
+                text = bytes(error.getErrorMessage());
+                size += 2 + (text == null ? 0 : text.length);
+            }
+            case ServerNotificationMessage notification -> {
+                text = bytes(notification.getMessage());
+                size += 2 + (text == null ? 0 : text.length);
+            }
+            case AnalysisMessage ignored -> size += 2 + 4 + 1;
+            case MoveAppliedMessage ignored -> size += 2 + 4 + 1 + 8;
+            case LobbyMessage lobby -> size += 1 + 8 + listingSize(lobby.getGames());
+            default -> throw new IllegalArgumentException("No binary form for " + type);
+        }
+
+        var out = ByteBuffer.allocate(size);
+        out.putInt(size - 4);
+        out.put((byte) (SERVER_MESSAGE + type.ordinal()));
+        switch (message) {
+            case LoadBoardMessage load -> CompactGame.write(load.getGame(), out);
+            case AnalysisMessage analysis -> {
+                out.putShort(analysis.getBestMove() == null ? NO_MOVE : (short) analysis.getBestMove().pack());
+                out.putInt(analysis.getScore());
+                out.put((byte) analysis.getDepth());
+            }
+            case MoveAppliedMessage moveApplied -> {
+                out.putShort((short) moveApplied.getMove());
+                out.putInt(moveApplied.getSequence());
+                out.put((byte) moveApplied.getStatus().ordinal());
+                out.putLong(moveApplied.getHash());
+            }
+            case LobbyMessage lobby -> {
+                out.put((byte) lobby.getEvent().ordinal());
+                out.putLong(lobby.getVersion());
+                putListing(out, lobby.getGames());
+            }
+            default -> putBytes(out, text);
+        }
+        return out.flip();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame is truncated or not a server message
+     */
+    public static ServerMessage decodeMessage(ByteBuffer in) {
+        try {
+            return readMessage(in);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated server message frame", e);
+        }
+    }
+
+    private static ServerMessage readMessage(ByteBuffer in) {
+        int type = readHeader(in) - SERVER_MESSAGE;
+        var messageTypes = ServerMessage.ServerMessageType.values();
+        if (type < 0 || type >= messageTypes.length) {
+            throw new IllegalArgumentException("Unknown server message type " + type);
+        }
+        var messageType = messageTypes[type];
+
+        return switch (messageType) {
+            case LOAD_GAME -> new LoadBoardMessage(messageType, CompactGame.read(in));
+            case ERROR -> new ServerErrorMessage(messageType, getString(in));
+            case NOTIFICATION -> new ServerNotificationMessage(messageType, getString(in));
+            case ANALYSIS -> {
+                short move = in.getShort();
+                yield new AnalysisMessage(messageType, move == NO_MOVE ? null : ChessMove.unpack(move & 0xFFFF),
+                        in.getInt(), in.get());
+            }
+            case MOVE_APPLIED -> new MoveAppliedMessage(messageType, in.getShort() & 0xFFFF, in.getInt(),
+                    MoveAppliedMessage.GameStatus.values()[in.get()], in.getLong());
+            case LOBBY -> new LobbyMessage(messageType, LobbyMessage.Event.values()[in.get()], in.getLong(), getListing(in));
+        };
+    }
+
+    private static int listingSize(List<ReturnGameData> games) {
+        int size = 2;
+        for (var game : games) {
+            size += 4 + stringSize(game.whiteUsername()) + stringSize(game.blackUsername()) + stringSize(game.gameName());
+        }
+        return size;
+    }
+
+    private static int stringSize(String text) {
+        return 2 + (text == null ? 0 : text.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static void putListing(ByteBuffer out, List<ReturnGameData> games) {
+        if (games.size() > 0xFFFF) {
+            throw new IllegalArgumentException("Too many games for a binary frame");
+        }
+        out.putShort((short) games.size());
+        for (var game : games) {
+            out.putInt(game.gameID());
+            putBytes(out, bytes(game.whiteUsername()));
+            putBytes(out, bytes(game.blackUsername()));
+            putBytes(out, bytes(game.gameName()));
+        }
+    }
+
+    private static List<ReturnGameData> getListing(ByteBuffer in) {
+        int count = in.getShort() & 0xFFFF;
+        var games = new ArrayList<ReturnGameData>(count);
+        for (int i = 0; i < count; i++) {
+            games.add(new ReturnGameData(in.getInt(), getString(in), getString(in), getString(in)));
+        }
+        return games;
+    }
+
+    private static int readHeader(ByteBuffer in) {
+        if (in.remaining() < HEADER_SIZE) {
+            throw new IllegalArgumentException("Frame is too short");
+        }
+        int length = in.getInt();
+        if (length < 1 || length > in.remaining()) {
+            throw new IllegalArgumentException("Frame length " + length + " doesn't match its contents");
+        }
+        return in.get() & 0xFF;
+    }
+
+    private static byte[] bytes(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(ByteBuffer out, byte[] text) {
+        if (text == null) {
+            out.putShort((short) NULL_STRING);
+            return;
+        }
+        if (text.length >= NULL_STRING) {
+            throw new IllegalArgumentException("String is too long for a binary frame");
+        }
+        out.putShort((short) text.length);
+        out.put(text);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == NULL_STRING) {
+            return null;
+        }
+        var text = new byte[length];
+        in.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+}
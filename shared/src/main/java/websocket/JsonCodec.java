@@ -0,0 +1,110 @@
+package websocket;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import websocket.commands.ConnectCommand;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Encodes and decodes websocket commands and server messages as JSON, the default format.
+ * <p>
+ * Gson is thread-safe, so one instance is shared by everything that reads or writes JSON. Decoding
+ * reads just far enough into the text to find the type field, then parses the whole frame once
+ * straight into the matching class with an adapter looked up ahead of time.
+ */
+public final class JsonCodec {
+
+    public static final Gson GSON = new Gson();
+
+    private static final Map<UserGameCommand.CommandType, TypeAdapter<? extends UserGameCommand>> COMMANDS =
+            new EnumMap<>(UserGameCommand.CommandType.class);
+    private static final Map<ServerMessage.ServerMessageType, TypeAdapter<? extends ServerMessage>> MESSAGES =
+            new EnumMap<>(ServerMessage.ServerMessageType.class);
+    private static final TypeAdapter<UserGameCommand> COMMAND = GSON.getAdapter(UserGameCommand.class);
+
+    static {
+        for (var type : UserGameCommand.CommandType.values()) {
+            COMMANDS.put(type, COMMAND);
+        }
+        COMMANDS.put(UserGameCommand.CommandType.CONNECT, GSON.getAdapter(ConnectCommand.class));
+        COMMANDS.put(UserGameCommand.CommandType.MAKE_MOVE, GSON.getAdapter(MakeMoveCommand.class));
+
+        MESSAGES.put(ServerMessage.ServerMessageType.LOAD_GAME, GSON.getAdapter(LoadBoardMessage.class));
+        MESSAGES.put(ServerMessage.ServerMessageType.ERROR, GSON.getAdapter(ServerErrorMessage.class));
+        MESSAGES.put(ServerMessage.ServerMessageType.NOTIFICATION, GSON.getAdapter(ServerNotificationMessage.class));
+        MESSAGES.put(ServerMessage.ServerMessageType.ANALYSIS, GSON.getAdapter(AnalysisMessage.class));
+        MESSAGES.put(ServerMessage.ServerMessageType.MOVE_APPLIED, GSON.getAdapter(MoveAppliedMessage.class));
+        MESSAGES.put(ServerMessage.ServerMessageType.LOBBY, GSON.getAdapter(LobbyMessage.class));
+    }
+
+    private JsonCodec() {
+    }
+
+    public static String encode(Object value) {
+        return GSON.toJson(value);
+    }
+
+    /**
+     * @return the command as its most specific class, or a plain {@link UserGameCommand} if its type is missing or unknown
+     * @throws IllegalArgumentException if the text is not a JSON object
+     */
+    public static UserGameCommand decodeCommand(String json) {
+        var type = peekEnum(json, "commandType", UserGameCommand.CommandType.class);
+        return decode(json, type == null ? COMMAND : COMMANDS.get(type));
+    }
+
+    /**
+     * @return the message as its most specific class, or null if its type is missing or unknown
+     * @throws IllegalArgumentException if the text is not a JSON object
+     */
+    public static ServerMessage decodeMessage(String json) {
+        var type = peekEnum(json, "serverMessageType", ServerMessage.ServerMessageType.class);
+        var adapter = type == null ? null : MESSAGES.get(type);
+        return adapter == null ? null : decode(json, adapter);
+    }
+
+    private static <T> T decode(String json, TypeAdapter<? extends T> adapter) {
+        try {
+            var reader = new JsonReader(new StringReader(json));
+            reader.setLenient(true);
+            return adapter.read(reader);
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a top-level string field without parsing anything else into objects
+     */
+    private static <E extends Enum<E>> E peekEnum(String json, String field, Class<E> type) {
+        try (var reader = new JsonReader(new StringReader(json))) {
+            reader.setLenient(true);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(field) && reader.peek() == JsonToken.STRING) {
+                    var name = reader.nextString();
+                    for (var constant : type.getEnumConstants()) {
+                        if (constant.name().equals(name)) {
+                            return constant;
+                        }
+                    }
+                    return null;
+                }
+                reader.skipValue();
+            }
+            return null;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import chess.Zobrist;
+import websocket.messages.MoveAppliedMessage;
+
+/**
+ * Applies MOVE_APPLIED messages to a client's copy of a game.
+ * <p>
+ * A delta is only played if it is the very next move and leaves the game with the hash the server
+ * sent. Anything else means the copy has missed a move or disagrees with the server, and the client
+ * should SYNC to get the whole game again.
+ */
+public final class MoveDeltas {
+
+    public enum Outcome {
+        APPLIED,
+        //        The copy already has the move, such as from a whole game sent after it
+        ALREADY_APPLIED,
+        OUT_OF_SYNC
+    }
+
+    private MoveDeltas() {
+    }
+
+    /**
+     * @param game        the client's copy of the game, or null if it doesn't have one yet. It is
+     *                    left in an unknown state if the result is {@link Outcome#OUT_OF_SYNC}.
+     * @param moveApplied the move the server played
+     * @return whether the move was played
+     */
+    public static Outcome apply(ChessGame game, MoveAppliedMessage moveApplied) {
+        if (game == null) {
+            return Outcome.OUT_OF_SYNC;
+        }
+        int moves = game.getMoveHistory().size();
+        if (moveApplied.getSequence() <= moves) {
+            return Outcome.ALREADY_APPLIED;
+        }
+        if (moveApplied.getSequence() != moves + 1) {
+            return Outcome.OUT_OF_SYNC;
+        }
+        try {
+            game.makeMove(ChessMove.unpack(moveApplied.getMove()));
+        } catch (InvalidMoveException e) {
+            return Outcome.OUT_OF_SYNC;
+        }
+        return Zobrist.hash(game) == moveApplied.getHash() ? Outcome.APPLIED : Outcome.OUT_OF_SYNC;
+    }
+}
@@ -3,11 +3,27 @@ package websocket.commands;
 public class ConnectCommand extends UserGameCommand {
     private final String username;
     private final ParticipationType participationType;
+    //    Whether to receive MOVE_APPLIED deltas instead of the whole game after every move
+    private final boolean moveDeltas;
+    //    Whether to receive BinaryCodec frames instead of JSON from this command on
+    private final boolean binaryFrames;
 
     public ConnectCommand(CommandType commandType, String authToken, Integer gameID, String username, ParticipationType participationType) {
+        this(commandType, authToken, gameID, username, participationType, false);
+    }
+
+    public ConnectCommand(CommandType commandType, String authToken, Integer gameID, String username,
+                          ParticipationType participationType, boolean moveDeltas) {
+        this(commandType, authToken, gameID, username, participationType, moveDeltas, false);
+    }
+
+    public ConnectCommand(CommandType commandType, String authToken, Integer gameID, String username,
+                          ParticipationType participationType, boolean moveDeltas, boolean binaryFrames) {
         super(commandType, authToken, gameID);
         this.username = username;
         this.participationType = participationType;
+        this.moveDeltas = moveDeltas;
+        this.binaryFrames = binaryFrames;
     }
 
     public String getUsername() {
@@ -17,4 +33,12 @@ public class ConnectCommand extends UserGameCommand {
     public ParticipationType getParticipationType() {
         return participationType;
     }
+
+    public boolean wantsMoveDeltas() {
+        return moveDeltas;
+    }
+
+    public boolean wantsBinaryFrames() {
+        return binaryFrames;
+    }
 }
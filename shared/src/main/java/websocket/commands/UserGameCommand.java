@@ -26,7 +26,10 @@ public class UserGameCommand {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
-        RESIGN
+        RESIGN,
+        SUBSCRIBE_ANALYSIS,
+        SYNC,
+        SUBSCRIBE_LOBBY
     }
 
     public CommandType getCommandType() {
@@ -0,0 +1,30 @@
+package websocket.messages;
+
+import chess.ChessMove;
+
+public class AnalysisMessage extends ServerMessage {
+
+    private final ChessMove bestMove;
+    //    Centipawns from white's point of view
+    private final int score;
+    private final int depth;
+
+    public AnalysisMessage(ServerMessageType type, ChessMove bestMove, int score, int depth) {
+        super(type);
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+    }
+
+    public ChessMove getBestMove() {
+        return bestMove;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+}
@@ -0,0 +1,49 @@
+package websocket.messages;
+
+import chess.ReturnGameData;
+
+import java.util.List;
+
+/**
+ * A change to the game list, pushed to clients subscribed to the lobby.
+ * <p>
+ * The first message after subscribing is a {@link Event#SNAPSHOT} of every game. Every other
+ * event carries the one game it is about, as it is after the change, so a client can apply an
+ * event it has already seen in a snapshot again without harm. A snapshot with no games after the
+ * first means the server's games were cleared.
+ */
+public class LobbyMessage extends ServerMessage {
+
+    public enum Event {
+        SNAPSHOT,
+        GAME_CREATED,
+        SEAT_TAKEN,
+        SEAT_FREED,
+        GAME_ENDED
+    }
+
+    private final Event event;
+    //    The game list version after this change, which only goes up. GAME_ENDED doesn't change the
+    //    listing, so it keeps the version it happened at.
+    private final long version;
+    private final List<ReturnGameData> games;
+
+    public LobbyMessage(ServerMessageType type, Event event, long version, List<ReturnGameData> games) {
+        super(type);
+        this.event = event;
+        this.version = version;
+        this.games = games;
+    }
+
+    public Event getEvent() {
+        return event;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<ReturnGameData> getGames() {
+        return games;
+    }
+}
@@ -0,0 +1,46 @@
+package websocket.messages;
+
+/**
+ * A move that was just played, sent instead of the whole game to clients that asked for move deltas
+ */
+public class MoveAppliedMessage extends ServerMessage {
+
+    public enum GameStatus {
+        IN_PROGRESS,
+        CHECK,
+        CHECKMATE,
+        STALEMATE
+    }
+
+    //    The move as packed by ChessMove.pack()
+    private final int move;
+    //    How many moves the game has after this one, so clients can tell if they missed any
+    private final int sequence;
+    private final GameStatus status;
+    //    Zobrist hash of the position after the move, so clients can check they are in sync
+    private final long hash;
+
+    public MoveAppliedMessage(ServerMessageType type, int move, int sequence, GameStatus status, long hash) {
+        super(type);
+        this.move = move;
+        this.sequence = sequence;
+        this.status = status;
+        this.hash = hash;
+    }
+
+    public int getMove() {
+        return move;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public GameStatus getStatus() {
+        return status;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+}
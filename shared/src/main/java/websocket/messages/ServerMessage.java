@@ -14,7 +14,10 @@ public class ServerMessage {
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
-        NOTIFICATION
+        NOTIFICATION,
+        ANALYSIS,
+        MOVE_APPLIED,
+        LOBBY
     }
 
     public ServerMessage(ServerMessageType type) {
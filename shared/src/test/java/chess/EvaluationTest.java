@@ -0,0 +1,62 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluationTest {
+
+    @Test
+    void startingPositionIsEven() {
+        var board = new ChessBoard();
+        board.resetBoard();
+        assertEquals(0, board.getEvaluation().score(ChessGame.TeamColor.WHITE));
+        assertEquals(24, board.getEvaluation().getPhase());
+    }
+
+    @Test
+    void incrementalMatchesRescan() throws Exception {
+        var game = new ChessGame();
+        var board = game.getBoard();
+        var evaluation = board.getEvaluation();
+
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+        game.makeMove(new ChessMove(new ChessPosition(4, 5), new ChessPosition(5, 4), null));
+        game.makeMove(new ChessMove(new ChessPosition(8, 4), new ChessPosition(5, 4), null));
+
+        var rescanned = new ChessBoard(board.getBoardCopy()).getEvaluation();
+        assertSame(evaluation, board.getEvaluation());
+        assertEquals(rescanned.score(ChessGame.TeamColor.WHITE), evaluation.score(ChessGame.TeamColor.WHITE));
+        assertEquals(rescanned.getPhase(), evaluation.getPhase());
+    }
+
+    @Test
+    void copiedGameKeepsItsEvaluationIncremental() throws Exception {
+        var game = new ChessGame();
+        var original = game.getBoard().getEvaluation();
+
+        var copy = new ChessGame(game);
+        copy.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        copy.makeMove(new ChessMove(new ChessPosition(7, 4), new ChessPosition(5, 4), null));
+        copy.makeMove(new ChessMove(new ChessPosition(4, 5), new ChessPosition(5, 4), null));
+
+        var rescanned = new ChessBoard(copy.getBoard().getBoardCopy()).getEvaluation();
+        assertNotEquals(original, copy.getBoard().getEvaluation());
+        assertEquals(rescanned.score(ChessGame.TeamColor.WHITE), copy.getBoard().getEvaluation().score(ChessGame.TeamColor.WHITE));
+        assertEquals(rescanned.getPhase(), copy.getBoard().getEvaluation().getPhase());
+        assertEquals(0, original.score(ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    void scoreIsSymmetric() {
+        var board = new ChessBoard();
+        board.addPiece(new ChessPosition(1, 5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(8, 5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(1, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+
+        var evaluation = board.getEvaluation();
+        assertTrue(evaluation.score(ChessGame.TeamColor.WHITE) > 0);
+        assertEquals(-evaluation.score(ChessGame.TeamColor.WHITE), evaluation.score(ChessGame.TeamColor.BLACK));
+    }
+}
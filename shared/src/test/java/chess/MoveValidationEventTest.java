@@ -0,0 +1,47 @@
+package chess;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveValidationEventTest {
+
+    @Test
+    void recordsMovesWhenEnabled() throws Exception {
+        var file = Files.createTempFile("moves", ".jfr");
+        try (var recording = new Recording()) {
+            recording.enable("chess.MoveValidation");
+            recording.start();
+            var game = new ChessGame();
+            game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+            assertThrows(InvalidMoveException.class,
+                    () -> game.makeMove(new ChessMove(new ChessPosition(8, 4), new ChessPosition(4, 4), null)));
+            assertThrows(InvalidMoveException.class,
+                    () -> game.makeMove(new ChessMove(new ChessPosition(4, 4), new ChessPosition(5, 4), null)));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> moves = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("chess.MoveValidation"))
+                .toList();
+        Files.delete(file);
+
+//        One event per call, even when the call throws before looking at any moves
+        assertEquals(3, moves.size());
+        assertTrue(moves.stream().allMatch(event -> event.getString("operation").equals("makeMove")));
+        assertEquals("PAWN", moves.get(0).getString("pieceType"));
+        assertEquals(2, moves.get(0).getInt("candidates"));
+        assertTrue(moves.get(0).getBoolean("legal"));
+        assertEquals("QUEEN", moves.get(1).getString("pieceType"));
+        assertFalse(moves.get(1).getBoolean("legal"));
+        assertNull(moves.get(2).getString("pieceType"));
+        assertFalse(moves.get(2).getBoolean("legal"));
+    }
+}
@@ -0,0 +1,42 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchTest {
+
+    @Test
+    void findsMateInOne() throws Exception {
+        var game = Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        var result = Search.analyze(game, Duration.ofSeconds(5));
+        assertEquals(new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 1), null), result.bestMove());
+        assertTrue(Search.isMate(result.score()));
+        assertTrue(result.score() > 0);
+    }
+
+    @Test
+    void takesHangingQueen() throws Exception {
+        var game = Fen.parse("4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1");
+        var result = Search.analyze(game, Duration.ofMillis(500));
+        assertEquals(new ChessMove(new ChessPosition(1, 4), new ChessPosition(5, 4), null), result.bestMove());
+        assertTrue(result.depth() >= 1);
+    }
+
+    @Test
+    void scoreIsFromWhitesPointOfView() throws Exception {
+        var game = Fen.parse("3rk3/8/8/8/3Q4/8/8/4K3 b - - 0 1");
+        var result = Search.analyze(game, Duration.ofMillis(500));
+        assertTrue(result.score() < 0);
+    }
+
+    @Test
+    void doesNotChangeTheGame() throws Exception {
+        var game = new ChessGame();
+        var before = new ChessGame(game);
+        Search.analyze(game, Duration.ofMillis(200));
+        assertEquals(before, game);
+    }
+}
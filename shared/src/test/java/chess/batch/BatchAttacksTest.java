@@ -0,0 +1,148 @@
+package chess.batch;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchAttacksTest {
+
+    private static final int[][] KING_STEPS = {{1, 1}, {1, 0}, {1, -1}, {0, 1}, {0, -1}, {-1, 1}, {-1, 0}, {-1, -1}};
+    private static final int[][] KNIGHT_STEPS = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}};
+    private static final int[][] ORTHOGONAL = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] DIAGONAL = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    @Test
+    void matchesSquareByWalk() {
+        var boards = randomBoards(61);
+        var batch = new BoardBatch(boards.size());
+        boards.forEach(batch::add);
+
+        for (var implementation : List.of(new ScalarBatchAttacks(), BatchAttacks.create())) {
+            for (var color : ChessGame.TeamColor.values()) {
+                var out = new long[batch.size()];
+                implementation.attacks(batch, color, out);
+                for (int i = 0; i < boards.size(); i++) {
+                    assertEquals(Long.toHexString(reference(boards.get(i), color)), Long.toHexString(out[i]),
+                            implementation.getClass().getSimpleName() + " board " + i + " " + color);
+                }
+            }
+        }
+    }
+
+    @Test
+    void pieceCounts() {
+        var boards = randomBoards(11);
+        var batch = new BoardBatch(boards.size());
+        boards.forEach(batch::add);
+
+        var expected = new long[12][batch.size()];
+        new ScalarBatchAttacks().pieceCounts(batch, expected);
+        assertEquals(8, expected[BoardBatch.kind(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN)][0]);
+        assertEquals(1, expected[BoardBatch.kind(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING)][0]);
+
+        var actual = new long[12][batch.size()];
+        BatchAttacks.create().pieceCounts(batch, actual);
+        for (int kind = 0; kind < 12; kind++) {
+            assertArrayEquals(expected[kind], actual[kind]);
+        }
+    }
+
+    @Test
+    void inCheck() {
+        var game = new ChessGame();
+        var batch = new BoardBatch(4);
+        batch.add(game.getBoard());
+
+        var board = new ChessBoard();
+        board.addPiece(new ChessPosition(1, 5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(8, 5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(5, 5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        batch.add(board);
+
+        var out = new boolean[batch.size()];
+        BatchAttacks.create().inCheck(batch, ChessGame.TeamColor.WHITE, out);
+        assertFalse(out[0]);
+        assertTrue(out[1]);
+    }
+
+    //    The starting position followed by positions reached by random legal moves
+    private static List<ChessBoard> randomBoards(int count) {
+        var random = new Random(240);
+        var boards = new ArrayList<ChessBoard>();
+        var game = new ChessGame();
+        int plies = 0;
+        boards.add(new ChessBoard(game.getBoard().getBoardCopy()));
+        while (boards.size() < count) {
+            var moves = new ArrayList<>(game.getColorMoves(game.getTeamTurn()));
+            if (moves.isEmpty() || plies++ == 30) {
+                game = new ChessGame();
+                plies = 0;
+                continue;
+            }
+            try {
+                game.makeMove(moves.get(random.nextInt(moves.size())));
+            } catch (InvalidMoveException e) {
+                continue;
+            }
+            boards.add(new ChessBoard(game.getBoard().getBoardCopy()));
+        }
+        return boards;
+    }
+
+    private static long reference(ChessBoard board, ChessGame.TeamColor color) {
+        long attacked = 0;
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                var piece = board.getPiece(new ChessPosition(row, col));
+                if (piece == null || piece.getTeamColor() != color) {
+                    continue;
+                }
+                int forward = color == ChessGame.TeamColor.WHITE ? 1 : -1;
+                attacked |= switch (piece.getPieceType()) {
+                    case KING -> steps(row, col, KING_STEPS);
+                    case KNIGHT -> steps(row, col, KNIGHT_STEPS);
+                    case PAWN -> steps(row, col, new int[][]{{forward, 1}, {forward, -1}});
+                    case ROOK -> rays(board, row, col, ORTHOGONAL);
+                    case BISHOP -> rays(board, row, col, DIAGONAL);
+                    case QUEEN -> rays(board, row, col, ORTHOGONAL) | rays(board, row, col, DIAGONAL);
+                };
+            }
+        }
+        return attacked;
+    }
+
+    private static long steps(int row, int col, int[][] steps) {
+        long squares = 0;
+        for (var step : steps) {
+            int r = row + step[0];
+            int c = col + step[1];
+            if (r >= 1 && r <= 8 && c >= 1 && c <= 8) {
+                squares |= 1L << Zobrist.square(new ChessPosition(r, c));
+            }
+        }
+        return squares;
+    }
+
+    private static long rays(ChessBoard board, int row, int col, int[][] directions) {
+        long squares = 0;
+        for (var direction : directions) {
+            int r = row + direction[0];
+            int c = col + direction[1];
+            while (r >= 1 && r <= 8 && c >= 1 && c <= 8) {
+                var position = new ChessPosition(r, c);
+                squares |= 1L << Zobrist.square(position);
+                if (board.getPiece(position) != null) {
+                    break;
+                }
+                r += direction[0];
+                c += direction[1];
+            }
+        }
+        return squares;
+    }
+}
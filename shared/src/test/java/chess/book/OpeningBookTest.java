@@ -0,0 +1,77 @@
+package chess.book;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpeningBookTest {
+
+    private static final String PGN = """
+            [Event "Test"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 {main line} Nc6 (2... d6 3. d4) 3. Bb5 a6 1-0
+
+            [Event "Test"]
+            1. e4 c5 2. Nf3 d6 3. d4 cxd4 4. Nxd4 Nf6 5. Nc3 a6 *
+
+            1. d4 d5 2. c4 e6 1/2-1/2
+            """;
+
+    @Test
+    void buildAndLookup() throws Exception {
+        var builder = new OpeningBookBuilder();
+        assertEquals(3, builder.addPgn(new StringReader(PGN), 20));
+
+        var file = Files.createTempFile("book", ".bin");
+        try {
+            builder.write(file);
+            var book = OpeningBook.open(file);
+
+            var start = book.lookup(new ChessGame());
+            assertEquals(2, start.size());
+            assertEquals(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null), start.getFirst().move());
+            assertEquals(2, start.getFirst().weight());
+
+            var game = new ChessGame();
+            game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+            var replies = book.lookup(game);
+            assertEquals(2, replies.size());
+
+            game.makeMove(new ChessMove(new ChessPosition(7, 1), new ChessPosition(6, 1), null));
+            assertTrue(book.lookup(game).isEmpty());
+            assertTrue(book.pickMove(game, new Random(1)).isEmpty());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void fenLines() throws Exception {
+        var builder = new OpeningBookBuilder();
+        var lines = """
+                # position after 1. e4
+                rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1 c7c5 7
+                rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1 e7e5
+                """;
+        assertEquals(2, builder.addFenLines(new StringReader(lines)));
+
+        var file = Files.createTempFile("book", ".bin");
+        try {
+            builder.write(file);
+            var book = OpeningBook.open(file);
+            var game = Fen.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+            var entries = book.lookup(game);
+            assertEquals(2, entries.size());
+            assertEquals(7, entries.getFirst().weight());
+            assertTrue(book.pickMove(game, new Random(1)).isPresent());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
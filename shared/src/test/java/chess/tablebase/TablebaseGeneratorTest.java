@@ -0,0 +1,83 @@
+package chess.tablebase;
+
+import chess.*;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Generates the real KRK and KPK tables, which takes about a minute, so it only runs with the
+ * {@code slow-tests} profile
+ */
+@Tag("slow")
+class TablebaseGeneratorTest {
+
+    private static final TablebaseGenerator generator = new TablebaseGenerator();
+    private static Tablebases tablebases;
+
+    @BeforeAll
+    static void generate() {
+        var tables = new ByteBuffer[Tablebases.Material.values().length];
+        for (var material : new Tablebases.Material[]{Tablebases.Material.KRK, Tablebases.Material.KPK}) {
+            tables[material.ordinal()] = TablebaseGenerator.pack(material, generator.generate(material));
+        }
+        tablebases = new Tablebases(tables);
+    }
+
+    @Test
+    void rookMatesInOne() throws Exception {
+        var game = Fen.parse("k7/8/1K6/8/8/8/8/7R w - - 0 1");
+        game.setTablebases(tablebases);
+        assertEquals(new TablebaseResult(TablebaseResult.Outcome.WIN, 1), game.probeTablebase());
+
+        game.makeMove(new ChessMove(new ChessPosition(1, 8), new ChessPosition(8, 8), null));
+        assertEquals(new TablebaseResult(TablebaseResult.Outcome.LOSS, 0), game.probeTablebase());
+        assertTrue(game.isInCheckmate(ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    void blackRookIsMirrored() {
+        var game = Fen.parse("7r/8/8/8/8/1k6/8/K7 b - - 0 1");
+        assertEquals(new TablebaseResult(TablebaseResult.Outcome.WIN, 1), tablebases.probe(game));
+    }
+
+    @Test
+    void longestRookMateIsSixteenMoves() {
+        int longest = 0;
+        for (byte value : generator.generate(Tablebases.Material.KRK)) {
+            if (value != TablebaseResult.ILLEGAL) {
+                var result = TablebaseResult.decode(value);
+                if (result.outcome() == TablebaseResult.Outcome.WIN) {
+                    longest = Math.max(longest, result.pliesToMate());
+                }
+            }
+        }
+        assertEquals(31, longest);
+    }
+
+    @Test
+    void rookPawnWithDefenderInTheCornerIsDrawn() {
+        var game = Fen.parse("k7/8/8/8/8/8/P7/1K6 w - - 0 1");
+        assertEquals(new TablebaseResult(TablebaseResult.Outcome.DRAW, 0), tablebases.probe(game));
+    }
+
+    @Test
+    void pawnWithItsKingOnTheSixthWins() {
+//        A king on the sixth rank in front of a centre pawn wins whoever is to move
+        var game = Fen.parse("4k3/8/4K3/4P3/8/8/8/8 w - - 0 1");
+        assertEquals(TablebaseResult.Outcome.WIN, tablebases.probe(game).outcome());
+
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        assertEquals(TablebaseResult.Outcome.LOSS, tablebases.probe(game).outcome());
+    }
+
+    @Test
+    void otherMaterialIsNotCovered() {
+        assertNull(tablebases.probe(new ChessGame()));
+        assertNull(tablebases.probe(Fen.parse("k7/8/1K6/8/8/8/8/6NR w - - 0 1")));
+    }
+}
@@ -0,0 +1,115 @@
+package chess.tablebase;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TablebasesTest {
+
+    /**
+     * A KRK table that only knows one position: white mates in one with the rook to h8
+     */
+    private static Tablebases mateInOneFixture() {
+        var values = new byte[Tablebases.Material.KRK.size()];
+        Arrays.fill(values, TablebaseResult.ILLEGAL);
+        var location = Tablebases.locate(Fen.parse("k7/8/1K6/8/8/8/8/7R w - - 0 1").getBoard(), ChessGame.TeamColor.WHITE);
+        values[location.index()] = TablebaseResult.encodeWin(1);
+        var tables = new ByteBuffer[Tablebases.Material.values().length];
+        tables[Tablebases.Material.KRK.ordinal()] = TablebaseGenerator.pack(Tablebases.Material.KRK, values);
+        return new Tablebases(tables);
+    }
+
+    @Test
+    void encodingRoundTrips() {
+        for (int plies = 1; plies <= 253; plies += 2) {
+            assertEquals(new TablebaseResult(TablebaseResult.Outcome.WIN, plies),
+                    TablebaseResult.decode(TablebaseResult.encodeWin(plies)));
+        }
+        for (int plies = 0; plies <= 252; plies += 2) {
+            assertEquals(new TablebaseResult(TablebaseResult.Outcome.LOSS, plies),
+                    TablebaseResult.decode(TablebaseResult.encodeLoss(plies)));
+        }
+        assertEquals(new TablebaseResult(TablebaseResult.Outcome.DRAW, 0), TablebaseResult.decode(TablebaseResult.DRAW));
+    }
+
+    @Test
+    void indexesCoverOnlyPlacementsThatCanOccur() {
+        for (var material : Tablebases.Material.values()) {
+            for (int index = 0; index < material.size(); index++) {
+                var placement = Tablebases.placement(material, index);
+                assertEquals(index, Tablebases.index(material, placement.sideToMove(), placement.strongKing(),
+                        placement.weakKing(), placement.piece()));
+            }
+        }
+//        Touching kings and pawns on the back ranks have no entry
+        assertEquals(-1, Tablebases.index(Tablebases.Material.KRK, 0, 0, 1, 20));
+        assertEquals(-1, Tablebases.index(Tablebases.Material.KPK, 0, 0, 63, 60));
+        assertEquals(2 * 3612 * 48, Tablebases.Material.KPK.size());
+    }
+
+    @Test
+    void packedEntriesReadBack() {
+        var random = new Random(7);
+        var values = new byte[Tablebases.Material.KQK.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(10) == 0 ? TablebaseResult.ILLEGAL : (byte) (random.nextInt(41) - 20);
+        }
+        var table = TablebaseGenerator.pack(Tablebases.Material.KQK, values);
+        assertEquals(6, table.getInt(8));
+        for (int i = 0; i < values.length; i++) {
+            int code = Tablebases.read(table, i);
+            assertEquals(values[i], code == 0 ? TablebaseResult.ILLEGAL : (byte) (table.getInt(12) + code - 1));
+        }
+    }
+
+    @Test
+    void probesAreMirroredForBlack() {
+        var tablebases = mateInOneFixture();
+        var win = new TablebaseResult(TablebaseResult.Outcome.WIN, 1);
+        assertEquals(win, tablebases.probe(Fen.parse("k7/8/1K6/8/8/8/8/7R w - - 0 1")));
+        assertEquals(win, tablebases.probe(Fen.parse("7r/8/8/8/8/1k6/8/K7 b - - 0 1")));
+        assertNull(tablebases.probe(Fen.parse("k7/8/1K6/8/8/8/8/6R1 w - - 0 1")));
+        assertNull(tablebases.probe(new ChessGame()));
+    }
+
+    @Test
+    void gamesOnlyUseTheTablebasesTheyAreGiven() {
+        var game = Fen.parse("k7/8/1K6/8/8/8/8/7R w - - 0 1");
+        assertNull(game.probeTablebase());
+
+        game.setTablebases(mateInOneFixture());
+        assertEquals(TablebaseResult.Outcome.WIN, game.probeTablebase().outcome());
+        assertEquals(TablebaseResult.Outcome.WIN, new ChessGame(game).probeTablebase().outcome());
+        assertNull(Tablebases.none().probe(game));
+    }
+
+    @Test
+    void loadsTablesFromADirectory() throws IOException {
+        var directory = Files.createTempDirectory("tablebases");
+        var file = directory.resolve(Tablebases.Material.KRK.fileName());
+        try {
+            var values = new byte[Tablebases.Material.KRK.size()];
+            Files.write(file, TablebaseGenerator.pack(Tablebases.Material.KRK, values).array());
+            try (var tablebases = Tablebases.load(directory)) {
+                assertTrue(tablebases.isLoaded(Tablebases.Material.KRK));
+                assertFalse(tablebases.isLoaded(Tablebases.Material.KPK));
+                assertEquals(TablebaseResult.Outcome.DRAW,
+                        tablebases.probe(Fen.parse("k7/8/1K6/8/8/8/8/7R w - - 0 1")).outcome());
+            }
+
+//            A file cut short is reported rather than read past its end
+            Files.write(file, Arrays.copyOf(Files.readAllBytes(file), 100));
+            assertThrows(IOException.class, () -> Tablebases.load(directory));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package websocket;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+import websocket.commands.ConnectCommand;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.*;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCodecTest {
+
+    private static final ChessMove E4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+
+    @Test
+    void commandsRoundTrip() {
+        var connect = new ConnectCommand(UserGameCommand.CommandType.CONNECT, "token", 12, null, null, true);
+        var decodedConnect = assertInstanceOf(ConnectCommand.class, BinaryCodec.decodeCommand(BinaryCodec.encode(connect)));
+        assertEquals(connect, decodedConnect);
+        assertTrue(decodedConnect.wantsMoveDeltas());
+        assertFalse(decodedConnect.wantsBinaryFrames());
+
+        var binaryConnect = new ConnectCommand(UserGameCommand.CommandType.CONNECT, "token", 12, null, null, false, true);
+        var decodedBinary = assertInstanceOf(ConnectCommand.class, BinaryCodec.decodeCommand(BinaryCodec.encode(binaryConnect)));
+        assertFalse(decodedBinary.wantsMoveDeltas());
+        assertTrue(decodedBinary.wantsBinaryFrames());
+
+        var move = new MakeMoveCommand(UserGameCommand.CommandType.MAKE_MOVE, "token", 3, E4);
+        var decodedMove = assertInstanceOf(MakeMoveCommand.class, BinaryCodec.decodeCommand(BinaryCodec.encode(move)));
+        assertEquals(E4, decodedMove.getMove());
+
+        var resign = new UserGameCommand(UserGameCommand.CommandType.RESIGN, null, null);
+        assertEquals(resign, BinaryCodec.decodeCommand(BinaryCodec.encode(resign)));
+    }
+
+    @Test
+    void messagesRoundTrip() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(E4);
+        game.makeMove(new ChessMove(new ChessPosition(7, 3), new ChessPosition(5, 3), null));
+        var load = assertInstanceOf(LoadBoardMessage.class, roundTrip(
+                new LoadBoardMessage(ServerMessage.ServerMessageType.LOAD_GAME, game)));
+        assertEquals(game, load.getGame());
+        assertEquals(game.getMoveHistory(), load.getGame().getMoveHistory());
+
+        var error = assertInstanceOf(ServerErrorMessage.class, roundTrip(
+                new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: bad move ♞")));
+        assertEquals("Error: bad move ♞", error.getErrorMessage());
+
+        var notification = assertInstanceOf(ServerNotificationMessage.class, roundTrip(
+                new ServerNotificationMessage(ServerMessage.ServerMessageType.NOTIFICATION, "bob joined")));
+        assertEquals("bob joined", notification.getMessage());
+
+        var analysis = assertInstanceOf(AnalysisMessage.class, roundTrip(
+                new AnalysisMessage(ServerMessage.ServerMessageType.ANALYSIS, E4, -35, 6)));
+        assertEquals(E4, analysis.getBestMove());
+        assertEquals(-35, analysis.getScore());
+        assertEquals(6, analysis.getDepth());
+
+        var applied = assertInstanceOf(MoveAppliedMessage.class, roundTrip(new MoveAppliedMessage(
+                ServerMessage.ServerMessageType.MOVE_APPLIED, E4.pack(), 7, MoveAppliedMessage.GameStatus.CHECK, -42L)));
+        assertEquals(E4.pack(), applied.getMove());
+        assertEquals(7, applied.getSequence());
+        assertEquals(MoveAppliedMessage.GameStatus.CHECK, applied.getStatus());
+        assertEquals(-42L, applied.getHash());
+    }
+
+    @Test
+    void lobbyMessagesRoundTrip() {
+        var games = List.of(new ReturnGameData(1, "bob", null, "first"), new ReturnGameData(9, null, null, "ünïcode"));
+        var lobby = assertInstanceOf(LobbyMessage.class, roundTrip(
+                new LobbyMessage(ServerMessage.ServerMessageType.LOBBY, LobbyMessage.Event.SNAPSHOT, 12, games)));
+        assertEquals(LobbyMessage.Event.SNAPSHOT, lobby.getEvent());
+        assertEquals(12, lobby.getVersion());
+        assertEquals(games, lobby.getGames());
+    }
+
+    @Test
+    void truncatedFrameIsRejected() {
+        var frame = BinaryCodec.encode(new MakeMoveCommand(UserGameCommand.CommandType.MAKE_MOVE, "token", 3, E4));
+        frame.limit(frame.limit() - 1);
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeCommand(frame));
+    }
+
+    private static ServerMessage roundTrip(ServerMessage message) {
+        ByteBuffer frame = BinaryCodec.encode(message);
+        return BinaryCodec.decodeMessage(frame);
+    }
+}
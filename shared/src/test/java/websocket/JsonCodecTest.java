@@ -0,0 +1,63 @@
+package websocket;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Test;
+import websocket.commands.ConnectCommand;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonCodecTest {
+
+    private static final ChessMove E4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+
+    @Test
+    void commandsDecodeToTheirOwnClass() {
+        var move = new MakeMoveCommand(UserGameCommand.CommandType.MAKE_MOVE, "token", 3, E4);
+        var decodedMove = assertInstanceOf(MakeMoveCommand.class, JsonCodec.decodeCommand(JsonCodec.encode(move)));
+        assertEquals(E4, decodedMove.getMove());
+
+        var connect = new ConnectCommand(UserGameCommand.CommandType.CONNECT, "token", 3, null, null, true, true);
+        var decodedConnect = assertInstanceOf(ConnectCommand.class, JsonCodec.decodeCommand(JsonCodec.encode(connect)));
+        assertTrue(decodedConnect.wantsMoveDeltas());
+        assertTrue(decodedConnect.wantsBinaryFrames());
+
+        var leave = new UserGameCommand(UserGameCommand.CommandType.LEAVE, "token", 3);
+        assertEquals(leave, JsonCodec.decodeCommand(JsonCodec.encode(leave)));
+    }
+
+    @Test
+    void typeFieldDoesNotHaveToComeFirst() {
+        var command = JsonCodec.decodeCommand("{\"gameID\": 4, \"move\": {\"startPosition\": {\"row\": 2, \"column\": 5},"
+                + " \"endPosition\": {\"row\": 4, \"column\": 5}}, \"commandType\": \"MAKE_MOVE\", \"authToken\": \"a\"}");
+        assertInstanceOf(MakeMoveCommand.class, command);
+        assertEquals(4, command.getGameID());
+    }
+
+    @Test
+    void unknownTypesFallBack() {
+        var command = JsonCodec.decodeCommand("{\"commandType\": \"DANCE\", \"gameID\": 1}");
+        assertEquals(UserGameCommand.class, command.getClass());
+        assertNull(command.getCommandType());
+        assertNull(JsonCodec.decodeMessage("{\"serverMessageType\": \"DANCE\"}"));
+    }
+
+    @Test
+    void messagesDecodeToTheirOwnClass() {
+        var load = JsonCodec.decodeMessage(JsonCodec.encode(new LoadBoardMessage(ServerMessage.ServerMessageType.LOAD_GAME, new ChessGame())));
+        assertEquals(new ChessGame(), assertInstanceOf(LoadBoardMessage.class, load).getGame());
+
+        var error = JsonCodec.decodeMessage(JsonCodec.encode(new ServerErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: no")));
+        assertEquals("Error: no", assertInstanceOf(ServerErrorMessage.class, error).getErrorMessage());
+    }
+
+    @Test
+    void malformedJsonIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> JsonCodec.decodeCommand("not json"));
+        assertThrows(IllegalArgumentException.class, () -> JsonCodec.decodeCommand("{\"commandType\": \"CONNECT\", \"gameID\": }"));
+    }
+}
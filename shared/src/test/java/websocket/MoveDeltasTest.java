@@ -0,0 +1,67 @@
+package websocket;
+
+import chess.*;
+import org.junit.jupiter.api.Test;
+import websocket.messages.MoveAppliedMessage;
+import websocket.messages.ServerMessage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoveDeltasTest {
+
+    private static final ChessMove E4 = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+    private static final ChessMove E5 = new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null);
+
+    /**
+     * The message the server sends after playing a move on its own copy of the game
+     */
+    private static MoveAppliedMessage played(ChessGame server, ChessMove move) throws InvalidMoveException {
+        server.makeMove(move);
+        return new MoveAppliedMessage(ServerMessage.ServerMessageType.MOVE_APPLIED, move.pack(),
+                server.getMoveHistory().size(), MoveAppliedMessage.GameStatus.IN_PROGRESS, Zobrist.hash(server));
+    }
+
+    @Test
+    void movesInOrderAreApplied() throws Exception {
+        var server = new ChessGame();
+        var client = new ChessGame();
+        assertEquals(MoveDeltas.Outcome.APPLIED, MoveDeltas.apply(client, played(server, E4)));
+        assertEquals(MoveDeltas.Outcome.APPLIED, MoveDeltas.apply(client, played(server, E5)));
+        assertEquals(server.getBoard(), client.getBoard());
+        assertEquals(2, client.getMoveHistory().size());
+    }
+
+    @Test
+    void aMoveTheGameAlreadyHasIsSkipped() throws Exception {
+        var server = new ChessGame();
+        var e4 = played(server, E4);
+        var client = new ChessGame(server);
+        assertEquals(MoveDeltas.Outcome.ALREADY_APPLIED, MoveDeltas.apply(client, e4));
+        assertEquals(1, client.getMoveHistory().size());
+    }
+
+    @Test
+    void aMissedMoveAsksForTheWholeGame() throws Exception {
+        var server = new ChessGame();
+        var client = new ChessGame();
+        played(server, E4);
+        var e5 = played(server, E5);
+        assertEquals(MoveDeltas.Outcome.OUT_OF_SYNC, MoveDeltas.apply(client, e5));
+        assertTrue(client.getMoveHistory().isEmpty());
+        assertEquals(MoveDeltas.Outcome.OUT_OF_SYNC, MoveDeltas.apply(null, e5));
+    }
+
+    @Test
+    void aPositionThatDisagreesAsksForTheWholeGame() throws Exception {
+        var server = new ChessGame();
+        var e4 = played(server, E4);
+        var wrongHash = new MoveAppliedMessage(ServerMessage.ServerMessageType.MOVE_APPLIED, e4.getMove(), e4.getSequence(),
+                e4.getStatus(), e4.getHash() ^ 1);
+        assertEquals(MoveDeltas.Outcome.OUT_OF_SYNC, MoveDeltas.apply(new ChessGame(), wrongHash));
+
+//        A client whose board has drifted can't even play the move
+        var drifted = new ChessGame();
+        drifted.getBoard().addPiece(new ChessPosition(2, 5), null);
+        assertEquals(MoveDeltas.Outcome.OUT_OF_SYNC, MoveDeltas.apply(drifted, e4));
+    }
+}